@@ -10,13 +10,29 @@ import java.util.List;
 import java.util.Scanner;
 
 import model.Blur;
+import model.BoxBlur;
+import model.ColorChain;
+import model.CacheBlocking;
 import model.CheckerBoardImage;
 import model.ColorPixel;
+import model.ComputeBackend;
+import model.Convolution;
+import model.EdgeMode;
+import model.FilterFusion;
+import model.GaussianBlur;
 import model.Grayscale;
 import model.ImageModel;
 import model.ImageOperation;
 import model.Layer;
+import model.LinearFilter;
+import model.Median;
+import model.PointOperation;
 import model.MultiLayer;
+import model.Parallelism;
+import model.Raster;
+import model.RasterLayout;
+import model.RasterView;
+import model.ScratchPolicy;
 import model.Sepia;
 import model.Sharpen;
 import view.ImageViewer;
@@ -32,6 +48,12 @@ public class SimpleImageController implements ImageController {
   protected Readable rd;
   protected ImageViewer view;
   protected MultiLayer model;
+  private String fusion = "on";
+  private boolean exactColors = true;
+  private final List<List<List<Double>>> pendingKernels = new ArrayList<List<List<Double>>>();
+  private EdgeMode pendingEdgeMode = EdgeMode.ZERO;
+  private final List<List<List<Double>>> pendingMatrices = new ArrayList<List<List<Double>>>();
+  private Layer pendingLayer;
 
   /**
    * Constructs the controller for Image model, where the user can create image
@@ -86,6 +108,7 @@ public class SimpleImageController implements ImageController {
         commandSwitch(command, commandLineList);
       }
     }
+    flushPendingOperations();
   }
 
   /**
@@ -108,6 +131,10 @@ public class SimpleImageController implements ImageController {
    * @param commandLineList the list of commands
    */
   protected void commandSwitch(String command, String[] commandLineList) {
+    if (!command.equals("blur") && !command.equals("sharpen") && !command.equals("convolve")
+            && !command.equals("grayscale") && !command.equals("sepia")) {
+      flushPendingOperations();
+    }
     switch (command) {
       case "create":
         createImageHelper(commandLineList);
@@ -125,16 +152,16 @@ public class SimpleImageController implements ImageController {
         saveImageHelper(commandLineList);
         break;
       case "blur":
-        imageOperationHelper("blur");
+        imageOperationHelper("blur", commandLineList);
         break;
       case "grayscale":
-        imageOperationHelper("grayscale");
+        imageOperationHelper("grayscale", commandLineList);
         break;
       case "sharpen":
-        imageOperationHelper("sharpen");
+        imageOperationHelper("sharpen", commandLineList);
         break;
       case "sepia":
-        imageOperationHelper("sepia");
+        imageOperationHelper("sepia", commandLineList);
         break;
       case "invisible":
         visibilityHelper("invisible", commandLineList);
@@ -145,9 +172,41 @@ public class SimpleImageController implements ImageController {
       case "save_all":
         this.saveAllLayer(commandLineList);
         break;
+      case "layout":
+        layoutHelper(commandLineList);
+        break;
+      case "scratch":
+        scratchHelper(commandLineList);
+        break;
+      case "crop":
+        cropHelper(commandLineList);
+        break;
+      case "threads":
+        threadsHelper(commandLineList);
+        break;
+      case "backend":
+        backendHelper(commandLineList);
+        break;
+      case "blocking":
+        blockingHelper(commandLineList);
+        break;
+      case "convolve":
+        convolveHelper(commandLineList);
+        break;
+      case "fusion":
+        fusionHelper(commandLineList);
+        break;
+      case "median":
+        medianHelper(commandLineList);
+        break;
       default:
         this.checkRenderMsgException("No such command exists for layer operations. Try again.");
     }
+    try {
+      model.applyScratchPolicy();
+    } catch (IllegalStateException e) {
+      this.checkRenderMsgException("Scratch file cannot be created.");
+    }
   }
 
   /**
@@ -184,27 +243,518 @@ public class SimpleImageController implements ImageController {
   }
 
   /**
-   * Helps to deal with image operations when they are called in their commands.
+   * Helps to deal with image operations when they are called in their commands. The filters
+   * take an optional {@code edge=<mode>} argument that chooses how the pixels past the edges of
+   * the image are treated. The blur also takes {@code sigma=<s>}, which blurs with a Gaussian of
+   * that standard deviation, or {@code radius=<n>}, which blurs with boxes of that radius, and
+   * {@code passes=<n>}, the number of boxes. Any other argument is ignored.
+   *
+   * @param nameOfOperation the name of the operation
+   * @param commandLineList the list of commands
    */
-  private void imageOperationHelper(String nameOfOperation) {
+  private void imageOperationHelper(String nameOfOperation, String[] commandLineList) {
+    EdgeMode edgeMode;
+    int radius;
+    int passes;
+    double sigma;
+    try {
+      edgeMode = edgeModeOption(commandLineList);
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("No such edge mode exists. Try again.");
+      return;
+    }
+    try {
+      String option = option(commandLineList, "radius=");
+      radius = option == null ? -1 : Integer.parseInt(option);
+      option = option(commandLineList, "passes=");
+      passes = option == null ? BoxBlur.DEFAULT_PASSES : Integer.parseInt(option);
+      option = option(commandLineList, "sigma=");
+      sigma = option == null ? -1 : Double.parseDouble(option);
+      if (radius == 0 || radius < -1 || radius > BoxBlur.MAX_RADIUS || passes < 1
+              || sigma != -1 && !(sigma >= GaussianBlur.MIN_SIGMA
+              && sigma <= GaussianBlur.MAX_SIGMA)) {
+        throw new IllegalArgumentException("Invalid radius, passes or sigma");
+      }
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("Invalid radius, passes or sigma to blur. Try again.");
+      return;
+    }
+    if (nameOfOperation.equals("blur") && (sigma > 0 || radius > 0)) {
+      flushPendingOperations();
+    }
     if (model.isAllInvisibleLayer()) {
       this.checkRenderMsgException("No visible layer to operate. Try again.");
     } else {
+      Raster input = model.getTopMostLayer().layerRaster();
       try {
-        if (nameOfOperation.equals("blur")) {
-          operationModel = new Blur(model.getTopMostLayer().layerImage());
+        if (nameOfOperation.equals("blur") && sigma > 0) {
+          operationModel = new GaussianBlur(input, sigma, edgeMode);
+        } else if (nameOfOperation.equals("blur") && radius > 0) {
+          operationModel = new BoxBlur(input, radius, passes, edgeMode);
+        } else if (nameOfOperation.equals("blur")) {
+          operationModel = new Blur(input, edgeMode);
         } else if (nameOfOperation.equals("grayscale")) {
-          operationModel = new Grayscale(model.getTopMostLayer().layerImage());
+          operationModel = new Grayscale(input);
         } else if (nameOfOperation.equals("sharpen")) {
-          operationModel = new Sharpen(model.getTopMostLayer().layerImage());
+          operationModel = new Sharpen(input, edgeMode);
         } else if (nameOfOperation.equals("sepia")) {
-          operationModel = new Sepia(model.getTopMostLayer().layerImage());
+          operationModel = new Sepia(input);
+        }
+        if (!deferFilter(operationModel) && !deferColors(operationModel)) {
+          model.getTopMostLayer().setLayerRaster(operationModel.applyRaster());
+        }
+        this.checkRenderMsgException("The layer image has been successfully updated!");
+      } catch (IllegalArgumentException e) {
+        this.checkRenderMsgException("Layer doesn't have image.");
+      } finally {
+        if (input != null) {
+          input.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the edge mode given as {@code edge=<mode>} among the arguments of a command.
+   *
+   * @param commandLineList the list of commands
+   * @return the edge mode given, or the black edges if none is given.
+   * @throws IllegalArgumentException if the edge mode given does not exist.
+   */
+  private EdgeMode edgeModeOption(String[] commandLineList) throws IllegalArgumentException {
+    for (int i = 1; i < commandLineList.length; i++) {
+      if (commandLineList[i].startsWith("edge=")) {
+        return EdgeMode.fromName(commandLineList[i].substring("edge=".length()));
+      }
+    }
+    return EdgeMode.ZERO;
+  }
+
+  /**
+   * Finds the value given as {@code <name><value>} among the arguments of a command.
+   *
+   * @param commandLineList the list of commands
+   * @param name            the name of the argument with its equals sign
+   * @return the value given, or null if the argument is not given.
+   */
+  private String option(String[] commandLineList, String name) {
+    for (int i = 1; i < commandLineList.length; i++) {
+      if (commandLineList[i].startsWith(name)) {
+        return commandLineList[i].substring(name.length());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Helps to deal with the layout command, which chooses how the top most visible layer keeps
+   * its image in memory.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void layoutHelper(String[] commandLineList) {
+    if (validCommandLine(commandLineList, "layout")) {
+      if (model.isAllInvisibleLayer()) {
+        this.checkRenderMsgException("No visible layer to set the layout. Try again.");
+      } else {
+        try {
+          RasterLayout layout = RasterLayout.fromName(commandLineList[1]);
+          model.getTopMostLayer().setLayout(layout);
+          this.checkRenderMsgException("The layer layout has been successfully set to "
+                  + layout.getName() + "!");
+        } catch (IllegalArgumentException e) {
+          this.checkRenderMsgException("No such layout exists. Try again.");
+        }
+      }
+    } else {
+      this.checkRenderMsgException("Invalid inputs to set the layout. Try again.");
+    }
+  }
+
+  /**
+   * Helps to deal with the crop command, which keeps only the given region of the image of the
+   * top most visible layer. The region is given by its top row, left column, width and height.
+   * Only the pixels inside of the region are copied.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void cropHelper(String[] commandLineList) {
+    if (!validCommandLine(commandLineList, "crop")) {
+      this.checkRenderMsgException("Invalid inputs to crop the layer image. Try again.");
+    } else if (model.isAllInvisibleLayer()) {
+      this.checkRenderMsgException("No visible layer to crop. Try again.");
+    } else {
+      Layer layer = model.getTopMostLayer();
+      Raster input = layer.layerRaster();
+      if (input == null) {
+        this.checkRenderMsgException("Layer doesn't have image.");
+        return;
+      }
+      try {
+        Raster region = new RasterView(input, Integer.parseInt(commandLineList[1]),
+                Integer.parseInt(commandLineList[2]), Integer.parseInt(commandLineList[3]),
+                Integer.parseInt(commandLineList[4]));
+        layer.setLayerRaster(region.copy());
+        this.checkRenderMsgException("The layer image has been successfully cropped!");
+      } catch (IllegalArgumentException e) {
+        this.checkRenderMsgException("Invalid inputs to crop the layer image. Try again.");
+      } finally {
+        input.release();
+      }
+    }
+  }
+
+  /**
+   * Helps to deal with the scratch command, which chooses the policy that decides which layers
+   * keep their images in scratch files.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void scratchHelper(String[] commandLineList) {
+    if (validCommandLine(commandLineList, "scratch")) {
+      try {
+        ScratchPolicy policy = ScratchPolicy.fromName(commandLineList[1]);
+        model.setScratchPolicy(policy);
+        this.checkRenderMsgException("The scratch policy has been successfully set to "
+                + policy.getName() + "!");
+      } catch (IllegalArgumentException e) {
+        this.checkRenderMsgException("No such scratch policy exists. Try again.");
+      }
+    } else {
+      this.checkRenderMsgException("Invalid inputs to set the scratch policy. Try again.");
+    }
+  }
+
+  /**
+   * Helps to deal with the threads command, which chooses how many threads the image
+   * operations use on large images.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void threadsHelper(String[] commandLineList) {
+    try {
+      if (!validCommandLine(commandLineList, "threads")) {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      int count = Integer.parseInt(commandLineList[1]);
+      Parallelism.setParallelism(count);
+      this.checkRenderMsgException("The number of threads has been successfully set to "
+              + count + "!");
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("Invalid inputs to set the number of threads. Try again.");
+    }
+  }
+
+  /**
+   * Helps to deal with the backend command, which reports the backend the image operations run
+   * on, or selects another one if its name is given.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void backendHelper(String[] commandLineList) {
+    if (!validCommandLine(commandLineList, "backend")) {
+      this.checkRenderMsgException("Invalid inputs to set the backend. Try again.");
+    } else if (commandLineList.length == 1) {
+      this.checkRenderMsgException(ComputeBackend.report());
+    } else {
+      try {
+        ComputeBackend backend = ComputeBackend.fromName(commandLineList[1]);
+        ComputeBackend.select(backend);
+        this.checkRenderMsgException("The backend has been successfully set to "
+                + backend.getName() + "!");
+      } catch (IllegalArgumentException e) {
+        this.checkRenderMsgException("No such backend exists. Try again.");
+      }
+    }
+  }
+
+  /**
+   * Helps to deal with the blocking command, which turns the cache tiles of the filters off,
+   * lets their size be computed from the cache, or sets their width and height.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void blockingHelper(String[] commandLineList) {
+    try {
+      if (!validCommandLine(commandLineList, "blocking")) {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      if (commandLineList.length == 3) {
+        CacheBlocking.setTileSize(Integer.parseInt(commandLineList[1]),
+                Integer.parseInt(commandLineList[2]));
+        CacheBlocking.setEnabled(true);
+      } else if (commandLineList[1].equals("auto")) {
+        CacheBlocking.setTileSize(0, CacheBlocking.DEFAULT_TILE_HEIGHT);
+        CacheBlocking.setEnabled(true);
+      } else if (commandLineList[1].equals("off")) {
+        CacheBlocking.setEnabled(false);
+      } else {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      this.checkRenderMsgException("The cache blocking has been successfully set!");
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("Invalid inputs to set the cache blocking. Try again.");
+    }
+  }
+
+  /**
+   * Helps to deal with the convolve command, which filters the top most visible layer with a
+   * kernel loaded from a file and reports how the kernel was applied. Like the other filters,
+   * it takes an optional {@code edge=<mode>} argument, and any other argument is ignored.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void convolveHelper(String[] commandLineList) {
+    if (!validCommandLine(commandLineList, "convolve")) {
+      this.checkRenderMsgException("Invalid inputs to convolve. Try again.");
+      return;
+    }
+    EdgeMode edgeMode;
+    List<List<Double>> kernel;
+    try {
+      edgeMode = edgeModeOption(commandLineList);
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("No such edge mode exists. Try again.");
+      return;
+    }
+    try {
+      kernel = readKernelFile(commandLineList[1]);
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException(e.getMessage());
+      return;
+    }
+    if (model.isAllInvisibleLayer()) {
+      this.checkRenderMsgException("No visible layer to operate. Try again.");
+    } else {
+      Raster input = model.getTopMostLayer().layerRaster();
+      try {
+        Convolution convolution = new Convolution(input, kernel, edgeMode);
+        operationModel = convolution;
+        if (!deferFilter(convolution)) {
+          model.getTopMostLayer().setLayerRaster(convolution.applyRaster());
         }
-        model.getTopMostLayer().setLayerImageToAnotherImage(operationModel.apply());
+        this.checkRenderMsgException("The layer image has been successfully updated! "
+                + convolution.describe());
+      } catch (IllegalArgumentException e) {
+        this.checkRenderMsgException("Layer doesn't have image.");
+      } finally {
+        if (input != null) {
+          input.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Helps to deal with the median command, which replaces every pixel of the top most visible
+   * layer with the median of the square of the given {@code radius=<n>} around it. Like the
+   * other filters, it takes an optional {@code edge=<mode>} argument, and any other argument is
+   * ignored.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void medianHelper(String[] commandLineList) {
+    EdgeMode edgeMode;
+    int radius;
+    try {
+      edgeMode = edgeModeOption(commandLineList);
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("No such edge mode exists. Try again.");
+      return;
+    }
+    try {
+      String option = option(commandLineList, "radius=");
+      if (!validCommandLine(commandLineList, "median") || option == null) {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      radius = Integer.parseInt(option);
+      if (radius < 1 || radius > Median.MAX_RADIUS) {
+        throw new IllegalArgumentException("Invalid radius");
+      }
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("Invalid radius to median. Try again.");
+      return;
+    }
+    if (model.isAllInvisibleLayer()) {
+      this.checkRenderMsgException("No visible layer to operate. Try again.");
+    } else {
+      Raster input = model.getTopMostLayer().layerRaster();
+      try {
+        operationModel = new Median(input, radius, edgeMode);
+        model.getTopMostLayer().setLayerRaster(operationModel.applyRaster());
         this.checkRenderMsgException("The layer image has been successfully updated!");
       } catch (IllegalArgumentException e) {
         this.checkRenderMsgException("Layer doesn't have image.");
+      } finally {
+        if (input != null) {
+          input.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps a linear filter to run together with the linear filters right after it, unless the
+   * fusion is off. The filters kept so far run first if they treat the edges another way or
+   * belong to another layer. The filter is kept for the top most visible layer, whose image is
+   * checked now, so running it later cannot fail after its command was reported as done.
+   *
+   * @param operation the operation of the command
+   * @return whether the operation is kept to run later.
+   * @throws IllegalArgumentException if the top most visible layer does not have an image.
+   */
+  private boolean deferFilter(ImageOperation operation) throws IllegalArgumentException {
+    if (fusion.equals("off") || !(operation instanceof LinearFilter)) {
+      return false;
+    }
+    LinearFilter filter = (LinearFilter) operation;
+    Layer layer = pendingTarget();
+    flushColors();
+    if (!pendingKernels.isEmpty()
+            && (pendingEdgeMode != filter.getEdgeMode() || pendingLayer != layer)) {
+      flushFilters();
+    }
+    pendingKernels.add(filter.getKernel());
+    pendingEdgeMode = filter.getEdgeMode();
+    pendingLayer = layer;
+    return true;
+  }
+
+  /**
+   * Keeps a color transformation to run together with the color transformations right after
+   * it, unless the fusion is off. The transformations kept so far run first if they belong to
+   * another layer. The transformation is kept for the top most visible layer, whose image is
+   * checked now, so running it later cannot fail after its command was reported as done.
+   *
+   * @param operation the operation of the command
+   * @return whether the operation is kept to run later.
+   * @throws IllegalArgumentException if the top most visible layer does not have an image.
+   */
+  private boolean deferColors(ImageOperation operation) throws IllegalArgumentException {
+    if (fusion.equals("off") || !(operation instanceof PointOperation)) {
+      return false;
+    }
+    Layer layer = pendingTarget();
+    flushFilters();
+    if (!pendingMatrices.isEmpty() && pendingLayer != layer) {
+      flushColors();
+    }
+    pendingMatrices.add(((PointOperation) operation).getMatrix());
+    pendingLayer = layer;
+    return true;
+  }
+
+  /**
+   * Finds the layer an operation kept to run later runs on.
+   *
+   * @return the top most visible layer.
+   * @throws IllegalArgumentException if the layer does not have an image.
+   */
+  private Layer pendingTarget() throws IllegalArgumentException {
+    Layer layer = model.getTopMostLayer();
+    if (!layer.hasImage()) {
+      throw new IllegalArgumentException("Layer doesn't have image.");
+    }
+    return layer;
+  }
+
+  /**
+   * Runs the operations kept so far to run together on the top most visible layer.
+   */
+  protected void flushPendingOperations() {
+    flushFilters();
+    flushColors();
+  }
+
+  /**
+   * Runs the color transformations kept so far on the layer they were kept for in one pass,
+   * either exactly as one by one or as their combined matrix. In verbose mode, reports how they
+   * were run.
+   */
+  private void flushColors() {
+    if (pendingMatrices.isEmpty()) {
+      return;
+    }
+    List<List<List<Double>>> matrices = new ArrayList<List<List<Double>>>(pendingMatrices);
+    pendingMatrices.clear();
+    Layer layer = pendingLayer;
+    if (!layer.hasImage()) {
+      return;
+    }
+    Raster input = layer.layerRaster();
+    try {
+      ColorChain colors = new ColorChain(input, matrices, exactColors);
+      operationModel = colors;
+      layer.setLayerRaster(colors.applyRaster());
+      if (fusion.equals("verbose") && matrices.size() > 1) {
+        this.checkRenderMsgException(colors.describe());
       }
+    } finally {
+      input.release();
+    }
+  }
+
+  /**
+   * Runs the linear filters kept so far on the layer they were kept for, combined into as few
+   * passes as the tolerance of the fusion allows. In verbose mode, reports how they were
+   * combined.
+   */
+  private void flushFilters() {
+    if (pendingKernels.isEmpty()) {
+      return;
+    }
+    List<List<List<Double>>> kernels = new ArrayList<List<List<Double>>>(pendingKernels);
+    pendingKernels.clear();
+    Layer layer = pendingLayer;
+    if (!layer.hasImage()) {
+      return;
+    }
+    Raster input = layer.layerRaster();
+    try {
+      FilterFusion filters = new FilterFusion(input, kernels, pendingEdgeMode);
+      operationModel = filters;
+      layer.setLayerRaster(filters.applyRaster());
+      if (fusion.equals("verbose") && kernels.size() > 1) {
+        this.checkRenderMsgException(filters.describe());
+      }
+    } finally {
+      input.release();
+    }
+  }
+
+  /**
+   * Helps to deal with the fusion command, which turns the fusion of consecutive linear filters
+   * and of consecutive color transformations on, off or on with reports, sets how much the
+   * fusion of filters may change a channel of a pixel, or chooses whether color
+   * transformations are fused exactly or into one matrix.
+   *
+   * @param commandLineList the list of commands
+   */
+  private void fusionHelper(String[] commandLineList) {
+    try {
+      if (!validCommandLine(commandLineList, "fusion")) {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      if (commandLineList.length == 3 && commandLineList[1].equals("tolerance")) {
+        FilterFusion.setTolerance(Double.parseDouble(commandLineList[2]));
+      } else if (commandLineList.length == 3 && commandLineList[1].equals("colors")) {
+        if (!commandLineList[2].equals("exact") && !commandLineList[2].equals("fused")) {
+          this.checkRenderMsgException("Invalid inputs to set the color fusion. Try again.");
+          return;
+        }
+        exactColors = commandLineList[2].equals("exact");
+        this.checkRenderMsgException("The color fusion has been successfully set to "
+                + commandLineList[2] + "!");
+        return;
+      } else if (commandLineList.length == 2 && (commandLineList[1].equals("on")
+              || commandLineList[1].equals("off") || commandLineList[1].equals("verbose"))) {
+        fusion = commandLineList[1];
+      } else {
+        throw new IllegalArgumentException("Invalid inputs");
+      }
+      this.checkRenderMsgException("The filter fusion has been successfully set!");
+    } catch (IllegalArgumentException e) {
+      this.checkRenderMsgException("Invalid inputs to set the filter fusion. Try again.");
     }
   }
 
@@ -264,14 +814,14 @@ public class SimpleImageController implements ImageController {
     int tileSize = Integer.parseInt(commandLine[2]);
     int width = Integer.parseInt(commandLine[3]);
     int length = Integer.parseInt(commandLine[4]);
-    ColorPixel firstColor = new ColorPixel(Integer.parseInt(commandLine[5]),
+    ColorPixel firstColor = ColorPixel.of(Integer.parseInt(commandLine[5]),
             Integer.parseInt(commandLine[6]), Integer.parseInt(commandLine[7]));
-    ColorPixel secondColor = new ColorPixel(Integer.parseInt(commandLine[8]),
+    ColorPixel secondColor = ColorPixel.of(Integer.parseInt(commandLine[8]),
             Integer.parseInt(commandLine[9]), Integer.parseInt(commandLine[10]));
     List<ColorPixel> colors = Arrays.asList(firstColor, secondColor);
     try {
       ImageModel imageModel = new CheckerBoardImage(tileSize, width, length, colors);
-      layer.setLayerImageToAnotherImage(imageModel.createImageProgram());
+      layer.setLayerRaster(imageModel.createImageRaster());
       this.checkRenderMsgException("Checkerboard image has been successfully loaded to layer!");
     } catch (IllegalArgumentException e) {
       this.checkRenderMsgException("Invalid inputs for creating checkerboard image.");
@@ -331,6 +881,33 @@ public class SimpleImageController implements ImageController {
       case "save":
         result = commandLine.length == 2;
         break;
+      case "layout":
+        result = commandLine.length == 2;
+        break;
+      case "scratch":
+        result = commandLine.length == 2;
+        break;
+      case "crop":
+        result = commandLine.length == 5;
+        break;
+      case "threads":
+        result = commandLine.length == 2;
+        break;
+      case "backend":
+        result = commandLine.length == 1 || commandLine.length == 2;
+        break;
+      case "blocking":
+        result = commandLine.length == 2 || commandLine.length == 3;
+        break;
+      case "convolve":
+        result = commandLine.length >= 2;
+        break;
+      case "fusion":
+        result = commandLine.length == 2 || commandLine.length == 3;
+        break;
+      case "median":
+        result = commandLine.length >= 2;
+        break;
       case "visible":
         result = visibleHelper(commandLine);
         break;
@@ -417,6 +994,48 @@ public class SimpleImageController implements ImageController {
     return order;
   }
 
+  /**
+   * Reads a kernel from a text file. Every line that is not blank holds the weights of one row
+   * of the kernel separated by spaces, and the lines starting with # are comments.
+   *
+   * @param fileName the provided name of the kernel file in string form.
+   * @return the kernel in matrix form.
+   * @throws IllegalArgumentException if the provided file does not exist or it does not hold a
+   *                                  square kernel of odd size.
+   */
+  private List<List<Double>> readKernelFile(String fileName) throws IllegalArgumentException {
+    Scanner sc;
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    try {
+      sc = new Scanner(new FileInputStream(fileName));
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("File " + fileName + " not found!");
+    }
+    while (sc.hasNextLine()) {
+      String line = sc.nextLine().trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      List<Double> row = new ArrayList<Double>();
+      for (String weight : line.split("\\s+")) {
+        try {
+          row.add(Double.parseDouble(weight));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid kernel file!");
+        }
+      }
+      kernel.add(row);
+    }
+    boolean square = kernel.size() % 2 == 1;
+    for (List<Double> row : kernel) {
+      square = square && row.size() == kernel.size();
+    }
+    if (!square) {
+      throw new IllegalArgumentException("The kernel should be a square of odd size!");
+    }
+    return kernel;
+  }
+
   /**
    * Determines if provided list of layer numbers are valid index of the list of layers in the
    * controller.
@@ -474,6 +1093,8 @@ public class SimpleImageController implements ImageController {
         Layer layer = model.getLayer(i);
         if (!(layer.isCurrentLayer(commandLineList[2]))) {
           newState.add(layer);
+        } else {
+          layer.releaseImage();
         }
       }
       model.setState(newState);
@@ -14,6 +14,7 @@ import javax.swing.JFileChooser;
 import model.ImageUtil;
 import model.Layer;
 import model.MultiLayer;
+import model.Raster;
 import view.ISwingViewer;
 
 /**
@@ -61,6 +62,7 @@ public class SwingController extends SimpleImageController implements ActionList
       return;
     }
     actionSwitcher(e);
+    flushPendingOperations();
     stateChange();
   }
 
@@ -185,7 +187,7 @@ public class SwingController extends SimpleImageController implements ActionList
    */
   private BufferedImage getBufferedImage(Layer layer) {
     BufferedImage result = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
-    if (layer.layerImage().size() == 0) {
+    if (!layer.hasImage()) {
       Color white = new Color(255, 255, 255);
       int rgb = white.getRGB();
       for (int i = 0; i < 50; i++) {
@@ -194,7 +196,9 @@ public class SwingController extends SimpleImageController implements ActionList
         }
       }
     } else {
-      result = ImageUtil.produceImage(layer.layerImage());
+      Raster image = layer.layerRaster();
+      result = ImageUtil.produceImageFromRaster(image);
+      image.release();
     }
     return result;
   }
@@ -267,6 +271,23 @@ public class SwingController extends SimpleImageController implements ActionList
   private void applyHelper() {
     try {
       String combined = currentOperation + " " + selectedLayerName;
+      if ("convolve".equals(currentOperation)) {
+        String kernelInput = swingView.askInfo("Please enter the name of the kernel txt file,"
+                + " and edge=<mode> if the edges should not be black");
+        if (kernelInput == null || kernelInput.trim().isEmpty()) {
+          swingView.sendMessage("Invalid kernel file. Try again");
+          return;
+        }
+        combined = currentOperation + " " + kernelInput.trim() + " " + selectedLayerName;
+      } else if ("median".equals(currentOperation)) {
+        String radiusInput = swingView.askInfo("Please enter the radius of the square,"
+                + " and edge=<mode> if the edges should not be black");
+        if (radiusInput == null || radiusInput.trim().isEmpty()) {
+          swingView.sendMessage("Invalid radius. Try again");
+          return;
+        }
+        combined = currentOperation + " radius=" + radiusInput.trim() + " " + selectedLayerName;
+      }
       String[] commandLine = combined.split("\\s+");
       commandOperation = commandLine;
       super.commandSwitch(commandLine[0], commandLine);
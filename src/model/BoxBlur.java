@@ -0,0 +1,240 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This class represents one of the operations for filtering. It blurs the image with a box of
+ * any radius, each pixel becoming the average of the square around it, and repeats the box a
+ * few times so the blur approaches a Gaussian one. The averages are kept as running sums that
+ * slide along the rows and then down the columns, so every pixel costs the same few additions
+ * whatever the radius is.
+ *
+ * <p>Every average is a channel again, so the channels are kept in planes of bytes, two bytes
+ * for every channel of a pixel. A band of rows down the columns starts by summing the
+ * {@code 2 * radius + 1} rows around its first row, so the bands are at least that many rows,
+ * which keeps the start of a band within the work of the band itself.</p>
+ */
+public class BoxBlur implements ImageOperation {
+  /**
+   * The number of boxes of the blur unless it is given. Three boxes in a row are within a few
+   * percent of a Gaussian blur.
+   */
+  public static final int DEFAULT_PASSES = 3;
+
+  /**
+   * The largest radius of the box.
+   */
+  public static final int MAX_RADIUS = 1 << 16;
+
+  private final Raster image;
+  private final int radius;
+  private final int passes;
+  private final EdgeMode edgeMode;
+
+  /**
+   * Constructs a blur operation with a box of the given radius repeated
+   * {@link #DEFAULT_PASSES} times, treating the pixels past the edges as black.
+   *
+   * @param image  the image to be blurred.
+   * @param radius the number of pixels on each side of a pixel in its box.
+   * @throws IllegalArgumentException if the image is null or the radius is not between 1 and
+   *                                  {@link #MAX_RADIUS}.
+   */
+  public BoxBlur(Raster image, int radius) throws IllegalArgumentException {
+    this(image, radius, DEFAULT_PASSES, EdgeMode.ZERO);
+  }
+
+  /**
+   * Constructs a blur operation with a box of the given radius repeated the given number of
+   * times, treating the pixels past the edges of the image as the given edge mode says.
+   *
+   * @param image    the image to be blurred.
+   * @param radius   the number of pixels on each side of a pixel in its box.
+   * @param passes   the number of times the box is applied, at least 1.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null, the radius is not
+   *                                  between 1 and {@link #MAX_RADIUS} or the number of passes
+   *                                  is not positive.
+   */
+  public BoxBlur(Raster image, int radius, int passes, EdgeMode edgeMode)
+          throws IllegalArgumentException {
+    if (image == null || edgeMode == null || radius < 1 || radius > MAX_RADIUS || passes < 1) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    this.image = image;
+    this.radius = radius;
+    this.passes = passes;
+    this.edgeMode = edgeMode;
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    Raster blurred = image.newRaster(image.getWidth(), image.getHeight());
+    blur(blurred);
+    return blurred;
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null || target.getWidth() != image.getWidth()
+            || target.getHeight() != image.getHeight()) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    blur(target);
+  }
+
+  /**
+   * Blurs the image into the given image. The channels are unpacked into one plane of bytes
+   * per channel first, so the image may also be the one written into.
+   *
+   * @param target the image of the same size to write into.
+   */
+  private void blur(final Raster target) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final byte[][] planes = new byte[3][width * height];
+    final byte[][] blurred = new byte[3][width * height];
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          image.readRow(i, line);
+          for (int j = 0; j < width; j++) {
+            planes[0][i * width + j] = (byte) (line[j] >> 16);
+            planes[1][i * width + j] = (byte) (line[j] >> 8);
+            planes[2][i * width + j] = (byte) line[j];
+          }
+        }
+      }
+    });
+    final int[] rowTable = edgeMode.table(height, radius);
+    final int[] columnTable = edgeMode.table(width, radius);
+    for (int pass = 0; pass < passes; pass++) {
+      Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+        @Override
+        public void run(int first, int last) {
+          for (int c = 0; c < 3; c++) {
+            for (int i = first; i < last; i++) {
+              slideAlongRow(planes[c], blurred[c], i * width, columnTable);
+            }
+          }
+        }
+      });
+      Parallelism.forEachBand(height, width, height, 2 * radius + 1, new Parallelism.Band() {
+        @Override
+        public void run(int first, int last) {
+          for (int c = 0; c < 3; c++) {
+            slideDownColumns(blurred[c], planes[c], width, first, last, rowTable);
+          }
+        }
+      });
+    }
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          for (int j = 0; j < width; j++) {
+            line[j] = ColorPixel.packRGB(planes[0][i * width + j] & 0xFF,
+                    planes[1][i * width + j] & 0xFF, planes[2][i * width + j] & 0xFF);
+          }
+          Parallelism.writeRow(target, i, line);
+        }
+      }
+    });
+  }
+
+  /**
+   * Averages every pixel of one row of a channel over the box along the row. The sum of the
+   * box is kept and moved one pixel at a time, adding the pixel that enters and taking away the
+   * one that leaves.
+   *
+   * @param source      the channel to read.
+   * @param destination the channel to write.
+   * @param offset      the index of the first pixel of the row.
+   * @param columnTable the columns used for every column from {@code -radius} on.
+   */
+  private void slideAlongRow(byte[] source, byte[] destination, int offset, int[] columnTable) {
+    int width = columnTable.length - 2 * radius;
+    int size = 2 * radius + 1;
+    int sum = 0;
+    for (int k = 0; k < size; k++) {
+      sum = sum + value(source, offset, columnTable[k]);
+    }
+    for (int j = 0; j < width; j++) {
+      destination[offset + j] = (byte) ((sum + radius) / size);
+      if (j + 1 < width) {
+        sum = sum + value(source, offset, columnTable[j + size])
+                - value(source, offset, columnTable[j]);
+      }
+    }
+  }
+
+  /**
+   * Averages every pixel of a band of rows of a channel over the box down the column. The sums
+   * of all columns start with the box of the first row of the band and are moved one row at a
+   * time, adding the row that enters and taking away the one that leaves, so the rows are read
+   * in order.
+   *
+   * @param source      the channel to read.
+   * @param destination the channel to write.
+   * @param width       the number of pixels of a row.
+   * @param first       the first row of the band.
+   * @param last        the row after the last row of the band.
+   * @param rowTable    the rows used for every row from {@code -radius} on.
+   */
+  private void slideDownColumns(byte[] source, byte[] destination, int width, int first,
+                                int last, int[] rowTable) {
+    int size = 2 * radius + 1;
+    int[] sums = new int[width];
+    for (int k = 0; k < size; k++) {
+      int row = rowTable[first + k];
+      if (row >= 0) {
+        int offset = row * width;
+        for (int j = 0; j < width; j++) {
+          sums[j] = sums[j] + (source[offset + j] & 0xFF);
+        }
+      }
+    }
+    for (int i = first; i < last; i++) {
+      int offset = i * width;
+      for (int j = 0; j < width; j++) {
+        destination[offset + j] = (byte) ((sums[j] + radius) / size);
+      }
+      if (i + 1 < last) {
+        int entering = rowTable[i + size];
+        int leaving = rowTable[i];
+        if (entering >= 0) {
+          int enteringOffset = entering * width;
+          for (int j = 0; j < width; j++) {
+            sums[j] = sums[j] + (source[enteringOffset + j] & 0xFF);
+          }
+        }
+        if (leaving >= 0) {
+          int leavingOffset = leaving * width;
+          for (int j = 0; j < width; j++) {
+            sums[j] = sums[j] - (source[leavingOffset + j] & 0xFF);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the value of a channel at the given column of a row, or 0 past the black edges.
+   *
+   * @param channel the channel to read.
+   * @param offset  the index of the first pixel of the row.
+   * @param column  the column to read, or -1 for a black pixel.
+   * @return the value of the channel.
+   */
+  private static int value(byte[] channel, int offset, int column) {
+    return column < 0 ? 0 : channel[offset + column] & 0xFF;
+  }
+}
@@ -0,0 +1,147 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * This class holds how the filters split wide images into tiles that fit into the second level
+ * cache. A filter that sweeps whole rows keeps the rows of its kernel in the cache only while
+ * they are narrow. A wide image is therefore filtered in strips of columns, each strip with the
+ * halo the kernel needs on both sides, and a band of rows at a time, so the rows of the kernel
+ * stay in the cache from one output row to the next.
+ *
+ * <p>The width of the tiles is computed from the size of the cache unless it is set. On Linux
+ * the size of the cache is read from the system, and elsewhere it is assumed to be
+ * {@link #DEFAULT_CACHE_BYTES}.</p>
+ */
+public final class CacheBlocking {
+  /**
+   * The number of bytes of the second level cache assumed when it cannot be found out.
+   */
+  public static final long DEFAULT_CACHE_BYTES = 256 * 1024;
+
+  /**
+   * The number of rows of a tile unless it is set.
+   */
+  public static final int DEFAULT_TILE_HEIGHT = 64;
+
+  // the narrowest strip worth the cost of its halo
+  private static final int MIN_TILE_WIDTH = 64;
+
+  private static final long CACHE_BYTES = detectCacheBytes();
+
+  private static boolean enabled = true;
+  private static int tileWidth = 0;
+  private static int tileHeight = DEFAULT_TILE_HEIGHT;
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private CacheBlocking() {
+  }
+
+  /**
+   * Turns the tiles on or off. When they are off, every image is swept row by row.
+   *
+   * @param on whether wide images are split into tiles.
+   */
+  public static synchronized void setEnabled(boolean on) {
+    enabled = on;
+  }
+
+  /**
+   * Determines whether wide images are split into tiles.
+   *
+   * @return whether the tiles are on.
+   */
+  public static synchronized boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets the size of the tiles, without the halo. A width of 0 lets the width be computed from
+   * the size of the cache.
+   *
+   * @param width  the number of columns of a tile, or 0.
+   * @param height the positive number of rows of a tile.
+   * @throws IllegalArgumentException if the width is negative or the height is not positive.
+   */
+  public static synchronized void setTileSize(int width, int height)
+          throws IllegalArgumentException {
+    if (width < 0 || height < 1) {
+      throw new IllegalArgumentException("Invalid tile size");
+    }
+    tileWidth = width;
+    tileHeight = height;
+  }
+
+  /**
+   * Gets the number of columns of a tile for a kernel of the given size. Unless it is set, the
+   * width is chosen so that the rows of the kernel of one strip take half of the cache.
+   *
+   * @param kernelSize the number of rows and columns of the kernel.
+   * @return the number of columns of a tile.
+   */
+  public static synchronized int getTileWidth(int kernelSize) {
+    if (tileWidth > 0) {
+      return tileWidth;
+    }
+    // every column of a strip holds three channels of every kernel row and a few sums
+    long bytesPerColumn = 4L * (3 * kernelSize + 7);
+    return (int) Math.max(MIN_TILE_WIDTH,
+            Math.min(Integer.MAX_VALUE, CACHE_BYTES / 2 / bytesPerColumn));
+  }
+
+  /**
+   * Gets the number of rows of a tile.
+   *
+   * @return the number of rows of a tile.
+   */
+  public static synchronized int getTileHeight() {
+    return tileHeight;
+  }
+
+  /**
+   * Gets the number of bytes of the second level cache the tiles are sized for.
+   *
+   * @return the size of the cache.
+   */
+  public static long getCacheBytes() {
+    return CACHE_BYTES;
+  }
+
+  /**
+   * Finds out the size of the second level cache of the first processor.
+   *
+   * @return the size of the cache, or {@link #DEFAULT_CACHE_BYTES} if it cannot be found out.
+   */
+  private static long detectCacheBytes() {
+    String size;
+    try (BufferedReader reader = new BufferedReader(
+            new FileReader("/sys/devices/system/cpu/cpu0/cache/index2/size"))) {
+      size = reader.readLine();
+    } catch (IOException | SecurityException e) {
+      return DEFAULT_CACHE_BYTES;
+    }
+    if (size == null || size.trim().isEmpty()) {
+      return DEFAULT_CACHE_BYTES;
+    }
+    size = size.trim();
+    long unit = 1;
+    if (size.endsWith("K")) {
+      unit = 1024;
+    } else if (size.endsWith("M")) {
+      unit = 1024 * 1024;
+    }
+    if (unit > 1) {
+      size = size.substring(0, size.length() - 1);
+    }
+    try {
+      long bytes = Long.parseLong(size) * unit;
+      return bytes > 0 ? bytes : DEFAULT_CACHE_BYTES;
+    } catch (NumberFormatException e) {
+      return DEFAULT_CACHE_BYTES;
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package model;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -45,22 +44,34 @@ public class CheckerBoardImage implements ImageModel {
    * @return the sequence of pixels that represents a check board image.
    */
   public List<List<Pixel>> createImageProgram() {
+    return new RasterAdapter(createImageRaster());
+  }
+
+  /**
+   * Creates the check board image programmatically with given each square tile size, num of tiles,
+   * and possible colors to use.
+   *
+   * @return the raster that represents a check board image, stored with a palette or as runs
+   *         of colors, whichever is smaller.
+   */
+  public Raster createImageRaster() {
     boolean isWidthEven = false;
     if (width % 2 == 0) {
       isWidthEven = true;
     }
-    List<List<Pixel>> checkBoard = new ArrayList<List<Pixel>>();
+    int[] colors = {possibleColorPixels.get(0).getRGB(), possibleColorPixels.get(1).getRGB()};
+    Raster checkBoard = new PaletteRaster(width * tileSize, length * tileSize, colors);
+    int[] row = new int[width * tileSize];
     int colorIndex = 0;
     for (int i = 1; i <= length * tileSize; i++) {
-      List<Pixel> row = new ArrayList<Pixel>();
       colorIndex = changeColor(colorIndex, tileSize, i, true);
       for (int j = 1; j <= width * tileSize; j++) {
         colorIndex = changeColor(colorIndex, tileSize, j, isWidthEven);
-        row.add(new Pixel(new PositionPixel(i, j), possibleColorPixels.get(colorIndex)));
+        row[j - 1] = colors[colorIndex];
       }
-      checkBoard.add(row);
+      checkBoard.writeRow(i - 1, row);
     }
-    return checkBoard;
+    return RasterCompactor.compact(checkBoard);
   }
 
   /**
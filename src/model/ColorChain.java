@@ -0,0 +1,132 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents consecutive color transformations run in one pass over the image.
+ * Every transformation multiplies the color of a pixel by a matrix and may add a number to each
+ * channel, so a chain of them is one such matrix of three rows of four numbers.
+ *
+ * <p>Running the transformations one by one rounds and clamps the colors between them, and the
+ * combined matrix does not. An exact chain still runs as the combined matrix when no color
+ * between the transformations can be clamped, and runs the few colors the rounding could change
+ * one by one. Otherwise it runs every matrix on a pixel in turn, clamping in between. Either
+ * way it gives the images of running them one by one, with one pass over the image.</p>
+ */
+public class ColorChain extends ColorTransformation implements ImageOperation {
+  private final int count;
+  private final boolean exact;
+  private final boolean clampFree;
+  private final List<List<List<Double>>> steps;
+  private final List<List<Double>> combined;
+
+  /**
+   * Constructs the operation that runs the given color transformations one after another.
+   *
+   * @param image    the image to be transformed.
+   * @param matrices the color transformations in matrix form in the order they run, each of
+   *                 three rows of three weights and an optional number added to the channel.
+   * @param exact    whether the colors are rounded and clamped between the transformations
+   *                 like running them one by one does.
+   * @throws IllegalArgumentException if the image is null, there is no matrix or a matrix does
+   *                                  not have three rows of three or four numbers.
+   */
+  public ColorChain(Raster image, List<List<List<Double>>> matrices, boolean exact)
+          throws IllegalArgumentException {
+    super(image);
+    if (matrices == null || matrices.isEmpty()) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    double[][] product = {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}};
+    this.steps = new ArrayList<List<List<Double>>>();
+    ColorMatrix[] compiled = new ColorMatrix[matrices.size()];
+    for (int m = 0; m < matrices.size(); m++) {
+      double[][] rows = toRows(matrices.get(m));
+      this.steps.add(toList(rows));
+      compiled[m] = ColorMatrix.compile(rows);
+      product = ColorMatrix.compose(rows, product);
+    }
+    this.count = matrices.size();
+    this.exact = exact;
+    this.clampFree = compiled.length > 1 && ColorMatrix.combine(compiled) != null;
+    this.combined = toList(product);
+  }
+
+  /**
+   * Gets the single matrix the transformations combine into.
+   *
+   * @return the three rows of three weights and the number added to the channel.
+   */
+  public List<List<Double>> getCombinedMatrix() {
+    return toList(toRows(this.combined));
+  }
+
+  /**
+   * Describes how the transformations are run.
+   *
+   * @return the description of the pass.
+   */
+  public String describe() {
+    String transformations = this.count + (this.count == 1 ? " color transformation"
+            : " color transformations");
+    if (this.exact && this.clampFree) {
+      return "Ran " + transformations + " as one 3 by 4 matrix in one pass, never clamping "
+              + "between them.";
+    }
+    if (this.exact) {
+      return "Ran " + transformations + " in one pass, clamping between them.";
+    }
+    return "Fused " + transformations + " into one 3 by 4 matrix in one pass.";
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    return transformingChain(run(), null);
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    transformingChain(run(), target);
+  }
+
+  /**
+   * Gets the matrices the pass runs, every one of an exact chain or the combined one.
+   *
+   * @return the matrices in the order they run.
+   */
+  private List<List<List<Double>>> run() {
+    if (this.exact) {
+      return this.steps;
+    }
+    List<List<List<Double>>> single = new ArrayList<List<List<Double>>>();
+    single.add(this.combined);
+    return single;
+  }
+
+  /**
+   * Converts the rows of a matrix as arrays into matrix form.
+   *
+   * @param rows the rows of the matrix as arrays.
+   * @return the matrix in matrix form.
+   */
+  private static List<List<Double>> toList(double[][] rows) {
+    List<List<Double>> result = new ArrayList<List<Double>>();
+    for (double[] row : rows) {
+      List<Double> list = new ArrayList<Double>();
+      for (double number : row) {
+        list.add(number);
+      }
+      result.add(list);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,345 @@
+package model;
+
+/**
+ * This class represents a color transformation matrix prepared once for the loops over the
+ * pixels. Every term of the matrix depends on a single channel of 8 bits, so each term is kept
+ * as a table of its 256 products, scaled into integers with 16 fraction bits. A channel of the
+ * result is then three lookups, two additions and a shift. A matrix may also have a fourth
+ * column, added to each channel of the result, which is folded into the tables of red.
+ *
+ * <p>Each product in a table is within half a unit of {@code 2^-16} of the product as a
+ * double, so the sum of three is within two units of the sum of the doubles. Rounding it half
+ * up gives what {@code Math.round} gives unless it is within three units of a half, and those
+ * few sums are computed again as doubles, so the results are always the same as the ones of
+ * the matrix as doubles. Matrices with weights too large for the integers keep the weights as
+ * doubles.</p>
+ *
+ * <p>A whole row of channels is computed with the weights themselves scaled into integers
+ * instead, as a multiply and add for every pixel with no lookups. Each weight is within half a
+ * unit of {@code 2^-16}, so a sum is within 383 units, and the sums that close to a half are
+ * computed again as doubles.</p>
+ *
+ * <p>Consecutive matrices can also be combined into one, which gives the colors of running
+ * them one by one as long as no color between them is clamped. The rounding between them still
+ * moves the sums a little, so the combined matrix knows how far, and the sums that close to a
+ * half are computed again by running the matrices one by one.</p>
+ */
+final class ColorMatrix {
+  /**
+   * The number of fraction bits of the integer products.
+   */
+  static final int FRACTION_BITS = 16;
+
+  // the distance from a half, in 2^-16, within which a sum is computed again as doubles
+  private static final int NEAR_HALF = 3;
+
+  // the distance from a half, in 2^-16, within which a sum of a row is computed again as doubles
+  private static final int ROW_NEAR_HALF = 3 * 255 / 2 + 1;
+
+  private static final int HALF = 1 << (FRACTION_BITS - 1);
+  private static final int FRACTION_MASK = (1 << FRACTION_BITS) - 1;
+
+  private final double[][] rows;
+  private final int[][] tables;
+  private final int[][] weights;
+  // the matrices a combined matrix stands for, or null
+  private final ColorMatrix[] steps;
+  // how far, in 2^-16, the rounding between the matrices may move a sum of every channel
+  private final int[] slack;
+
+  /**
+   * Constructs a matrix from its prepared parts.
+   *
+   * @param rows    the weights as doubles.
+   * @param tables  the nine tables of the integer products, or null if they would not fit.
+   * @param weights the integer weights and offset of every row, or null if they would not fit.
+   * @param steps   the matrices this matrix combines, or null if it is a single matrix.
+   * @param slack   how far the rounding between the matrices may move a sum of every channel,
+   *                or null if it is a single matrix.
+   */
+  private ColorMatrix(double[][] rows, int[][] tables, int[][] weights, ColorMatrix[] steps,
+                      int[] slack) {
+    this.rows = rows;
+    this.tables = tables;
+    this.weights = weights;
+    this.steps = steps;
+    this.slack = slack;
+  }
+
+  /**
+   * Prepares the given matrix for the loops over the pixels.
+   *
+   * @param rows the three rows of the matrix, each of three weights and an optional offset.
+   * @return the prepared matrix.
+   */
+  static ColorMatrix compile(double[][] rows) {
+    // no sum of a row may get near the largest integer, also with the half added to round it
+    double limit = (double) (Integer.MAX_VALUE - HALF) / (1 << FRACTION_BITS) - 1;
+    for (double[] row : rows) {
+      double largest = Math.abs(offset(row));
+      for (int k = 0; k < 3; k++) {
+        largest = largest + 255 * Math.abs(row[k]);
+      }
+      if (!(largest <= limit)) {
+        return new ColorMatrix(rows, null, null, null, null);
+      }
+    }
+    int[][] tables = new int[9][256];
+    int[][] weights = new int[3][4];
+    for (int c = 0; c < 3; c++) {
+      weights[c][3] = (int) Math.round(offset(rows[c]) * (1 << FRACTION_BITS));
+      for (int k = 0; k < 3; k++) {
+        weights[c][k] = (int) Math.round(rows[c][k] * (1 << FRACTION_BITS));
+        double offset = k == 0 ? offset(rows[c]) : 0.0;
+        for (int value = 0; value < 256; value++) {
+          tables[3 * c + k][value] =
+                  (int) Math.round((value * rows[c][k] + offset) * (1 << FRACTION_BITS));
+        }
+      }
+    }
+    return new ColorMatrix(rows, tables, weights, null, null);
+  }
+
+  /**
+   * Combines the given matrices into one that gives the same colors. That holds when no color
+   * between them can leave the range of a channel, so they are never clamped, and when the
+   * sums the rounding between them may move across a half are computed again one by one.
+   *
+   * @param steps the prepared matrices in the order they run.
+   * @return the combined matrix, or null if a color between the matrices may be clamped, the
+   *         weights would not fit the integers or every sum would be computed again.
+   */
+  static ColorMatrix combine(ColorMatrix[] steps) {
+    double[][] product = {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}};
+    double[] low = {0, 0, 0};
+    double[] high = {255, 255, 255};
+    for (int k = 0; k < steps.length; k++) {
+      product = compose(steps[k].rows, product);
+      if (k == steps.length - 1) {
+        break;
+      }
+      double[] nextLow = new double[3];
+      double[] nextHigh = new double[3];
+      for (int c = 0; c < 3; c++) {
+        double[] row = steps[k].rows[c];
+        nextLow[c] = offset(row);
+        nextHigh[c] = offset(row);
+        for (int j = 0; j < 3; j++) {
+          nextLow[c] = nextLow[c] + Math.min(row[j] * low[j], row[j] * high[j]);
+          nextHigh[c] = nextHigh[c] + Math.max(row[j] * low[j], row[j] * high[j]);
+        }
+        // a sum rounding to 0 or 255 is not clamped
+        if (!(nextLow[c] > -0.5 + 1e-9 && nextHigh[c] < 255.5 - 1e-9)) {
+          return null;
+        }
+        nextLow[c] = Math.max(0, Math.floor(nextLow[c]));
+        nextHigh[c] = Math.min(255, Math.ceil(nextHigh[c]));
+      }
+      low = nextLow;
+      high = nextHigh;
+    }
+    // the rounding after a matrix moves every channel by at most a half, unless the matrix
+    // keeps integers, and the matrices after it scale that by the absolute values of their rows
+    double[] error = new double[3];
+    double[][] after = {{1, 0, 0, 0}, {0, 1, 0, 0}, {0, 0, 1, 0}};
+    for (int k = steps.length - 2; k >= 0; k--) {
+      after = compose(after, steps[k + 1].rows);
+      if (!steps[k].isIntegral()) {
+        for (int c = 0; c < 3; c++) {
+          for (int j = 0; j < 3; j++) {
+            error[c] = error[c] + 0.5 * Math.abs(after[c][j]);
+          }
+        }
+      }
+    }
+    ColorMatrix combined = compile(product);
+    if (combined.tables == null) {
+      return null;
+    }
+    int[] slack = new int[3];
+    for (int c = 0; c < 3; c++) {
+      slack[c] = (int) Math.ceil(error[c] * (1 << FRACTION_BITS)) + 1;
+      if (slack[c] + ROW_NEAR_HALF >= HALF) {
+        return null;
+      }
+    }
+    return new ColorMatrix(product, combined.tables, combined.weights, steps, slack);
+  }
+
+  /**
+   * Computes one channel of the transformed color of a pixel, rounded but not clamped.
+   *
+   * @param channel the channel of the result, 0 for red, 1 for green and 2 for blue.
+   * @param red     the red channel of the pixel.
+   * @param green   the green channel of the pixel.
+   * @param blue    the blue channel of the pixel.
+   * @return the channel of the transformed color.
+   */
+  int channel(int channel, int red, int green, int blue) {
+    if (tables == null) {
+      return exact(rows[channel], red, green, blue);
+    }
+    int sum = tables[3 * channel][red] + tables[3 * channel + 1][green]
+            + tables[3 * channel + 2][blue];
+    if (Math.abs((sum & FRACTION_MASK) - HALF) <= NEAR_HALF + slack(channel)) {
+      return exact(channel, red, green, blue);
+    }
+    return (sum + HALF) >> FRACTION_BITS;
+  }
+
+  /**
+   * Computes one channel of the transformed colors of a row of pixels, rounded but not clamped.
+   * The channels of the pixels are given as one array each.
+   *
+   * @param channel the channel of the result, 0 for red, 1 for green and 2 for blue.
+   * @param red     the red channels of the pixels.
+   * @param green   the green channels of the pixels.
+   * @param blue    the blue channels of the pixels.
+   * @param result  the array to write the channels of the transformed colors into.
+   * @param width   the number of pixels.
+   */
+  void channelRow(int channel, int[] red, int[] green, int[] blue, int[] result, int width) {
+    double[] row = rows[channel];
+    if (weights == null) {
+      for (int j = 0; j < width; j++) {
+        result[j] = exact(row, red[j], green[j], blue[j]);
+      }
+      return;
+    }
+    int redWeight = weights[channel][0];
+    int greenWeight = weights[channel][1];
+    int blueWeight = weights[channel][2];
+    int offset = weights[channel][3] + HALF;
+    int near = ROW_NEAR_HALF + slack(channel);
+    for (int j = 0; j < width; j++) {
+      result[j] = red[j] * redWeight + green[j] * greenWeight + blue[j] * blueWeight + offset;
+    }
+    for (int j = 0; j < width; j++) {
+      int sum = result[j];
+      if (((sum + near) & FRACTION_MASK) <= 2 * near) {
+        result[j] = exact(channel, red[j], green[j], blue[j]);
+      } else {
+        result[j] = sum >> FRACTION_BITS;
+      }
+    }
+  }
+
+  /**
+   * Transforms the color of a pixel.
+   *
+   * @param rgb the color of the pixel packed as {@code 0xRRGGBB}.
+   * @return the transformed color, clamped and packed the same way.
+   */
+  int transform(int rgb) {
+    int red = (rgb >> 16) & 0xFF;
+    int green = (rgb >> 8) & 0xFF;
+    int blue = rgb & 0xFF;
+    return ColorPixel.packRGB(channel(0, red, green, blue), channel(1, red, green, blue),
+            channel(2, red, green, blue));
+  }
+
+  /**
+   * Transforms the color of a pixel by every given matrix in turn, clamping the color between
+   * them like running them one by one does.
+   *
+   * @param matrices the matrices in the order they run.
+   * @param rgb      the color of the pixel packed as {@code 0xRRGGBB}.
+   * @return the transformed color, clamped and packed the same way.
+   */
+  static int transform(ColorMatrix[] matrices, int rgb) {
+    int color = rgb;
+    for (ColorMatrix matrix : matrices) {
+      color = matrix.transform(color);
+    }
+    return color;
+  }
+
+  /**
+   * Combines a matrix that runs after the given one with it.
+   *
+   * @param after  the rows of the matrix that runs second.
+   * @param before the rows of the matrix that runs first.
+   * @return the three rows of four numbers of both together.
+   */
+  static double[][] compose(double[][] after, double[][] before) {
+    double[][] result = new double[3][4];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 4; j++) {
+        for (int k = 0; k < 3; k++) {
+          result[i][j] = result[i][j] + after[i][k] * (j < 3 ? before[k][j] : offset(before[k]));
+        }
+      }
+      result[i][3] = result[i][3] + offset(after[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the offset of a row of a matrix.
+   *
+   * @param row the weights of the row and its optional offset.
+   * @return the offset, or 0 if the row has none.
+   */
+  static double offset(double[] row) {
+    return row.length > 3 ? row[3] : 0.0;
+  }
+
+  /**
+   * Determines whether this matrix turns colors into colors without rounding, because all of
+   * its weights and offsets are integers.
+   *
+   * @return whether the weights and offsets are integers.
+   */
+  private boolean isIntegral() {
+    for (double[] row : rows) {
+      for (double number : row) {
+        if (number != Math.rint(number)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets how far the rounding between the matrices this matrix combines may move a sum of the
+   * given channel.
+   *
+   * @param channel the channel of the result.
+   * @return the distance in {@code 2^-16}, or 0 for a single matrix.
+   */
+  private int slack(int channel) {
+    return slack == null ? 0 : slack[channel];
+  }
+
+  /**
+   * Computes one channel of the transformed color of a pixel the slow and exact way, with the
+   * weights as doubles, or by running the matrices this matrix combines one by one.
+   *
+   * @param channel the channel of the result, 0 for red, 1 for green and 2 for blue.
+   * @param red     the red channel of the pixel.
+   * @param green   the green channel of the pixel.
+   * @param blue    the blue channel of the pixel.
+   * @return the channel of the transformed color.
+   */
+  private int exact(int channel, int red, int green, int blue) {
+    if (steps == null) {
+      return exact(rows[channel], red, green, blue);
+    }
+    int rgb = transform(steps, (red << 16) | (green << 8) | blue);
+    return (rgb >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  /**
+   * Computes one channel of the transformed color with the weights as doubles.
+   *
+   * @param row   the weights of the channel.
+   * @param red   the red channel of the pixel.
+   * @param green the green channel of the pixel.
+   * @param blue  the blue channel of the pixel.
+   * @return the channel of the transformed color.
+   */
+  private static int exact(double[] row, int red, int green, int blue) {
+    return (int) Math.round(red * row[0] + green * row[1] + blue * row[2] + offset(row));
+  }
+}
@@ -1,14 +1,20 @@
 package model;
 
-import java.util.List;
 import java.util.Objects;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The {@code model.Color} represents a color of the pixel. The color is represented in RGB value,
  * where each red, green, and blue are represented as integers from 0 to 255.
  */
 public final class ColorPixel {
+  private static final int CACHE_SIZE = 4096;
+  private static final AtomicReferenceArray<ColorPixel> CACHE =
+          new AtomicReferenceArray<ColorPixel>(CACHE_SIZE);
+  private static final LongAdder HITS = new LongAdder();
+  private static final LongAdder MISSES = new LongAdder();
+
   private final int red;
   private final int green;
   private final int blue;
@@ -26,6 +32,80 @@ public final class ColorPixel {
     this.blue = setValue(blue);
   }
 
+  /**
+   * Produces the color with the given channels considering the clamping. Colors are shared, so
+   * the same instance is usually returned for the same channels, which saves memory for images
+   * with few distinct colors.
+   *
+   * @param red   the integer value of the red color channel in a range 0 to 255.
+   * @param green the integer value of the green color channel in a range 0 to 255.
+   * @param blue  the integer value of the blue color channel in a range 0 to 255.
+   * @return the color with the given channels.
+   */
+  public static ColorPixel of(int red, int green, int blue) {
+    return fromRGB(packRGB(red, green, blue));
+  }
+
+  /**
+   * Produces the color from a packed RGB value in the form 0xRRGGBB. Colors are shared, so the
+   * same instance is usually returned for the same value.
+   *
+   * @param rgb the packed RGB value.
+   * @return the color with the channels of the packed value.
+   */
+  public static ColorPixel fromRGB(int rgb) {
+    rgb &= 0xFFFFFF;
+    // each value has one slot, a different color in the slot is simply replaced
+    int slot = ((rgb * 0x9E3779B1) >>> 20) & (CACHE_SIZE - 1);
+    ColorPixel cached = CACHE.get(slot);
+    if (cached != null && cached.getRGB() == rgb) {
+      HITS.increment();
+      return cached;
+    }
+    MISSES.increment();
+    ColorPixel color = new ColorPixel((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    CACHE.lazySet(slot, color);
+    return color;
+  }
+
+  /**
+   * Gets the number of times a shared color was found by {@code of} or {@code fromRGB}.
+   *
+   * @return the number of cache hits since the last reset.
+   */
+  public static long getCacheHits() {
+    return HITS.sum();
+  }
+
+  /**
+   * Gets the number of times {@code of} or {@code fromRGB} had to create a new color.
+   *
+   * @return the number of cache misses since the last reset.
+   */
+  public static long getCacheMisses() {
+    return MISSES.sum();
+  }
+
+  /**
+   * Resets the cache hit and miss counts to zero.
+   */
+  public static void resetCacheStatistics() {
+    HITS.reset();
+    MISSES.reset();
+  }
+
+  /**
+   * Packs the given channels into one RGB value in the form 0xRRGGBB considering the clamping.
+   *
+   * @param red   the value of the red color channel.
+   * @param green the value of the green color channel.
+   * @param blue  the value of the blue color channel.
+   * @return the packed RGB value.
+   */
+  public static int packRGB(int red, int green, int blue) {
+    return (setValue(red) << 16) | (setValue(green) << 8) | setValue(blue);
+  }
+
   /**
    * Returns the value for the color channel considering the clamping. If the given color value is
    * less than 0, then the color is set to be 0. if it is greater than 255,
@@ -34,7 +114,7 @@ public final class ColorPixel {
    * @param colorValue the given color value.
    * @return the clamped color value.
    */
-  private static int setValue(int colorValue) {
+  static int setValue(int colorValue) {
     if (colorValue < 0) {
       return 0;
     } else if (colorValue > 255) {
@@ -44,28 +124,6 @@ public final class ColorPixel {
     }
   }
 
-  /**
-   * Constructs a new color with updated RGB values.
-   *
-   * @param matrix the color transformation in matrix format.
-   * @return a new color with updated RGB values.
-   */
-  protected ColorPixel updateRGB(List<List<Double>> matrix) {
-    return new ColorPixel(this.updateColorValue(matrix.get(0)),
-            this.updateColorValue(matrix.get(1)), this.updateColorValue(matrix.get(2)));
-  }
-
-  /**
-   * Constructs a new color value with given color transformation in row format.
-   *
-   * @param row a list of doubles that is picked from color transformation in matrix format.
-   * @return a new color value after transforming the color.
-   */
-  private int updateColorValue(List<Double> row) {
-    return (int) Math.round((this.red * row.get(0) + this.green * row.get(1)
-            + this.blue * row.get(2)));
-  }
-
   /**
    * Gets the red channel/value of this color.
    *
@@ -94,36 +152,12 @@ public final class ColorPixel {
   }
 
   /**
-   * Computes new RGB value by multiplying each RGB with given value.
+   * Gets this color as one packed RGB value in the form 0xRRGGBB.
    *
-   * @param value the given value used to compute new RGB values.
-   * @return a sequence of updated RGB values.
+   * @return the packed RGB value of this color.
    */
-  protected List<Double> getNewColor(double value) {
-    List<Double> newRGB = new ArrayList<Double>();
-    newRGB.add(this.red * value);
-    newRGB.add(this.green * value);
-    newRGB.add(this.blue * value);
-    return newRGB;
-  }
-
-  /**
-   * Sums each RGB values individually in given list of RGB values.
-   *
-   * @param colors the sequence of RGB values.
-   * @return the sum of RGB values.
-   */
-  protected static ColorPixel sumChannels(List<List<Double>> colors) {
-    double sumRedValue = 0.0;
-    double sumGreenValue = 0.0;
-    double sumBlueValue = 0.0;
-    for (List<Double> rgb : colors) {
-      sumRedValue = sumRedValue + rgb.get(0);
-      sumGreenValue = sumGreenValue + rgb.get(1);
-      sumBlueValue = sumBlueValue + rgb.get(2);
-    }
-    return new ColorPixel((int) Math.round(sumRedValue),
-            (int) Math.round(sumGreenValue), (int) Math.round(sumBlueValue));
+  public int getRGB() {
+    return (this.red << 16) | (this.green << 8) | this.blue;
   }
 
   @Override
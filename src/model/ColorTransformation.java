@@ -1,14 +1,19 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * This class represents a color transformation operation with images.
  * A color transformation modifies the color of a pixel based on its own color.
+ *
+ * <p>The matrix of every transformation is prepared once as a {@link ColorMatrix}, so the
+ * pixels are transformed with table lookups, with the same results as the matrix as
+ * doubles.</p>
  */
 public abstract class ColorTransformation {
-  private final List<List<Pixel>> image;
+  private final Raster image;
 
   /**
    * Constructs an image operation color transformation.
@@ -17,7 +22,19 @@ public abstract class ColorTransformation {
    * @throws IllegalArgumentException if any of the parameters is null or contains null
    */
   public ColorTransformation(List<List<Pixel>> image) throws IllegalArgumentException {
-    validate(image);
+    this.image = RasterAdapter.toRaster(image);
+  }
+
+  /**
+   * Constructs an image operation color transformation.
+   *
+   * @param image the image to apply color transformation on
+   * @throws IllegalArgumentException if the image is null
+   */
+  public ColorTransformation(Raster image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
     this.image = image;
   }
 
@@ -27,7 +44,7 @@ public abstract class ColorTransformation {
    * @return the current image state in sequence of pixels
    */
   public List<List<Pixel>> imageObserver() {
-    return this.image;
+    return new RasterAdapter(this.image);
   }
 
   /**
@@ -36,25 +53,315 @@ public abstract class ColorTransformation {
    * @param matrix a color transformation in matrix form.
    * @return a new color transformed image.
    */
-  protected List<List<Pixel>> transformingImage(List<List<Double>> matrix) {
-    List<List<Pixel>> transformedImage = new ArrayList<List<Pixel>>();
-    for (List<Pixel> lop : image) {
-      List<Pixel> transformedRow = new ArrayList<Pixel>();
-      for (Pixel pixel : lop) {
-        transformedRow.add(pixel.transformColor(matrix));
+  protected Raster transformingImage(List<List<Double>> matrix) {
+    return transformingImage(matrix, null);
+  }
+
+  /**
+   * Transforms the colors of the image with given color transformation in matrix form and
+   * writes the result into the given image, for example a view of a region of a larger image.
+   *
+   * @param matrix a color transformation in matrix form.
+   * @param target the image of the same size to write into, or null to create a new image.
+   * @return the color transformed image, which is the target if one was given.
+   * @throws IllegalArgumentException if the target does not have the size of the image.
+   */
+  protected Raster transformingImage(List<List<Double>> matrix, Raster target)
+          throws IllegalArgumentException {
+    List<List<List<Double>>> matrices = new ArrayList<List<List<Double>>>();
+    matrices.add(matrix);
+    return transformingChain(matrices, target);
+  }
+
+  /**
+   * Transforms the colors of the image with the given color transformations one after
+   * another in a single pass over the image, clamping the colors between them like running
+   * them one by one does. When no color between them can be clamped, they run as their
+   * combined matrix, which gives the same colors. Every matrix has three rows of three weights,
+   * and a row may have a fourth number added to its channel.
+   *
+   * @param matrices the color transformations in matrix form in the order they run.
+   * @param target   the image of the same size to write into, or null to create a new image.
+   * @return the color transformed image, which is the target if one was given.
+   * @throws IllegalArgumentException if there is no matrix, a matrix does not have three rows
+   *                                  of three or four numbers, or the target does not have the
+   *                                  size of the image.
+   */
+  protected Raster transformingChain(List<List<List<Double>>> matrices, Raster target)
+          throws IllegalArgumentException {
+    if (matrices == null || matrices.isEmpty()) {
+      throw new IllegalArgumentException("Invalid matrices");
+    }
+    final double[][][] weights = new double[matrices.size()][][];
+    ColorMatrix[] steps = new ColorMatrix[matrices.size()];
+    for (int m = 0; m < matrices.size(); m++) {
+      weights[m] = toRows(matrices.get(m));
+      steps[m] = ColorMatrix.compile(weights[m]);
+    }
+    // matrices that never clamp the colors between them run as one, with the same results
+    ColorMatrix combined = steps.length > 1 ? ColorMatrix.combine(steps) : null;
+    if (combined != null) {
+      steps = new ColorMatrix[] {combined};
+    }
+    if (target != null) {
+      if (target.getWidth() != image.getWidth() || target.getHeight() != image.getHeight()) {
+        throw new IllegalArgumentException("Target size does not match the image");
+      }
+      // the bands on other threads read rows that may already be written when the target is
+      // the image
+      Raster source = Parallelism.isParallel(image.getWidth(), image.getHeight())
+              ? image.copy() : image;
+      try {
+        return transformRows(source, steps, target);
+      } finally {
+        if (source != image) {
+          source.release();
+        }
+      }
+    }
+    Raster stored = CopyOnWriteRaster.unwrap(image);
+    if (stored instanceof PlanarRaster) {
+      return transformPlanes((PlanarRaster) stored, steps);
+    }
+    if (stored instanceof TiledRaster) {
+      return transformTiles((TiledRaster) stored, steps);
+    }
+    if (stored instanceof FloatRaster) {
+      return transformFloats((FloatRaster) stored, weights);
+    }
+    return transformRows(image, steps, image.newRaster(image.getWidth(), image.getHeight()));
+  }
+
+  /**
+   * Copies a color transformation in matrix form into arrays.
+   *
+   * @param matrix the color transformation in matrix form.
+   * @return the three rows of three weights and an optional offset.
+   * @throws IllegalArgumentException if the matrix does not have three rows of three or four
+   *                                  numbers.
+   */
+  static double[][] toRows(List<List<Double>> matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.size() != 3) {
+      throw new IllegalArgumentException("Invalid matrix");
+    }
+    double[][] rows = new double[3][];
+    for (int i = 0; i < 3; i++) {
+      List<Double> row = matrix.get(i);
+      if (row == null || row.size() < 3 || row.size() > 4) {
+        throw new IllegalArgumentException("Invalid matrix");
+      }
+      rows[i] = new double[row.size()];
+      for (int j = 0; j < row.size(); j++) {
+        if (row.get(j) == null) {
+          throw new IllegalArgumentException("Invalid matrix");
+        }
+        rows[i][j] = row.get(j);
       }
-      transformedImage.add(transformedRow);
     }
+    return rows;
+  }
+
+  /**
+   * Transforms the image row by row into the given image.
+   *
+   * @param source           the image to transform.
+   * @param steps            the prepared color transformations in the order they run.
+   * @param transformedImage the image of the same size to write into.
+   * @return the color transformed image.
+   */
+  private static Raster transformRows(final Raster source, final ColorMatrix[] steps,
+                                      final Raster transformedImage) {
+    final boolean lanes = ComputeBackend.getSelected() == ComputeBackend.LANES;
+    Parallelism.forEachBand(source.getHeight(), source.getWidth(), source.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            if (lanes) {
+              transformLaneBand(source, steps, transformedImage, first, last);
+            } else {
+              transformRowBand(source, steps, transformedImage, first, last);
+            }
+          }
+        });
     return transformedImage;
   }
 
   /**
-   * Validates the constructor of the class by verifying that all arguments are valid.
+   * Transforms a band of rows of the image one pixel at a time.
+   *
+   * @param source           the image to transform.
+   * @param steps            the prepared color transformations in the order they run.
+   * @param transformedImage the image of the same size to write into.
+   * @param first            the first row of the band.
+   * @param last             the row after the last row of the band.
+   */
+  private static void transformRowBand(Raster source, ColorMatrix[] steps,
+                                       Raster transformedImage, int first, int last) {
+    int[] row = new int[source.getWidth()];
+    for (int i = first; i < last; i++) {
+      source.readRow(i, row);
+      for (int j = 0; j < row.length; j++) {
+        row[j] = ColorMatrix.transform(steps, row[j]);
+      }
+      Parallelism.writeRow(transformedImage, i, row);
+    }
+  }
+
+  /**
+   * Transforms a band of rows of the image on the lanes backend. Every row is split into one
+   * array per channel, and every channel of the result is computed over the whole row as a
+   * multiply and add with integer weights. Each transformation runs over the row in turn while
+   * the row is still in the cache.
+   *
+   * @param source           the image to transform.
+   * @param steps            the prepared color transformations in the order they run.
+   * @param transformedImage the image of the same size to write into.
+   * @param first            the first row of the band.
+   * @param last             the row after the last row of the band.
+   */
+  private static void transformLaneBand(Raster source, ColorMatrix[] steps,
+                                        Raster transformedImage, int first, int last) {
+    int width = source.getWidth();
+    int[] row = new int[width];
+    int[][] channels = new int[3][width];
+    int[][] results = new int[3][width];
+    for (int i = first; i < last; i++) {
+      source.readRow(i, row);
+      for (ColorMatrix matrix : steps) {
+        for (int j = 0; j < width; j++) {
+          channels[0][j] = (row[j] >> 16) & 0xFF;
+          channels[1][j] = (row[j] >> 8) & 0xFF;
+          channels[2][j] = row[j] & 0xFF;
+        }
+        for (int c = 0; c < 3; c++) {
+          matrix.channelRow(c, channels[0], channels[1], channels[2], results[c], width);
+        }
+        for (int j = 0; j < width; j++) {
+          row[j] = ColorPixel.packRGB(results[0][j], results[1][j], results[2][j]);
+        }
+      }
+      Parallelism.writeRow(transformedImage, i, row);
+    }
+  }
+
+  /**
+   * Transforms a planar image by streaming through the three planes side by side.
+   *
+   * @param planar the planar image to transform.
+   * @param steps  the prepared color transformations in the order they run.
+   * @return the transformed image in planar form.
+   */
+  private static Raster transformPlanes(PlanarRaster planar, final ColorMatrix[] steps) {
+    final int width = planar.getWidth();
+    final int size = width * planar.getHeight();
+    PlanarRaster transformedImage = new PlanarRaster(width, planar.getHeight());
+    final byte[] source = planar.getPlanes();
+    final byte[] target = transformedImage.getPlanes();
+    Parallelism.forEachBand(planar.getHeight(), width, planar.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            for (int i = first * width; i < last * width; i++) {
+              int rgb = ColorMatrix.transform(steps, ((source[i] & 0xFF) << 16)
+                      | ((source[size + i] & 0xFF) << 8) | (source[2 * size + i] & 0xFF));
+              target[i] = (byte) (rgb >> 16);
+              target[size + i] = (byte) (rgb >> 8);
+              target[2 * size + i] = (byte) rgb;
+            }
+          }
+        });
+    return transformedImage;
+  }
+
+  /**
+   * Transforms an image with floating point channels. The results are kept as they are,
+   * without rounding or clamping, also between the transformations.
+   *
+   * @param floats the image to transform.
+   * @param steps  the color transformations in the order they run.
+   * @return the transformed image with floating point channels.
+   */
+  private static Raster transformFloats(FloatRaster floats, final double[][][] steps) {
+    final int width = floats.getWidth();
+    FloatRaster transformedImage = new FloatRaster(width, floats.getHeight());
+    final float[] source = floats.getSamples();
+    final float[] target = transformedImage.getSamples();
+    Parallelism.forEachBand(floats.getHeight(), width, floats.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            double[] color = new double[3];
+            for (int i = 3 * first * width; i < 3 * last * width; i += 3) {
+              double red = source[i];
+              double green = source[i + 1];
+              double blue = source[i + 2];
+              for (double[][] matrix : steps) {
+                for (int channel = 0; channel < 3; channel++) {
+                  color[channel] = red * matrix[channel][0] + green * matrix[channel][1]
+                          + blue * matrix[channel][2] + ColorMatrix.offset(matrix[channel]);
+                }
+                red = color[0];
+                green = color[1];
+                blue = color[2];
+              }
+              target[i] = (float) red;
+              target[i + 1] = (float) green;
+              target[i + 2] = (float) blue;
+            }
+          }
+        });
+    return transformedImage;
+  }
+
+  /**
+   * Transforms a tiled image one tile at a time. The tiles that are not allocated are black,
+   * so they are skipped when the transformations keep black, and filled with the transformed
+   * black otherwise. The bands are made of whole rows of tiles, so no two bands share a tile.
+   *
+   * @param tiled the tiled image to transform.
+   * @param steps the prepared color transformations in the order they run.
+   * @return the transformed image in tiled form.
+   */
+  private static Raster transformTiles(final TiledRaster tiled, final ColorMatrix[] steps) {
+    final TiledRaster transformedImage = new TiledRaster(tiled.getWidth(), tiled.getHeight(),
+            tiled.getTileSize());
+    final int black = ColorMatrix.transform(steps, 0);
+    Parallelism.forEachBand(tiled.getTilesDown(), tiled.getWidth(), tiled.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            for (int tileRow = first; tileRow < last; tileRow++) {
+              for (int tileColumn = 0; tileColumn < tiled.getTilesAcross(); tileColumn++) {
+                int[] source = tiled.existingTile(tileRow, tileColumn);
+                if (source == null && black == 0) {
+                  continue;
+                }
+                int[] target = transformedImage.tile(tileRow, tileColumn);
+                if (source == null) {
+                  Arrays.fill(target, black);
+                  continue;
+                }
+                for (int i = 0; i < source.length; i++) {
+                  target[i] = ColorMatrix.transform(steps, source[i]);
+                }
+              }
+            }
+          }
+        });
+    return transformedImage;
+  }
+
+  /**
+   * Validates the constructor of the class by verifying that all arguments are valid. An image
+   * that adapts a raster is valid by construction and is not scanned again.
    *
    * @param img the image to check
    * @throws IllegalArgumentException if any of the arguments is null (inside the list and pixel)
    */
   protected static void validate(List<List<Pixel>> img) throws IllegalArgumentException {
+    if (img instanceof RasterAdapter) {
+      return;
+    }
     if (img == null || img.size() < 1) {
       throw new IllegalArgumentException("Invalid argument");
     }
@@ -0,0 +1,235 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This class represents a filter kernel prepared once for the filter loops. The weights are
+ * copied into primitive arrays and, when that is exact, scaled into integers with 16 fraction
+ * bits, so the loops multiply and add integers. A kernel that is the outer product of a column
+ * and a row is also split into the two.
+ *
+ * <p>The integer weights are only used when every weight is a multiple of {@code 2^-16}, like
+ * the weights of the blur and sharpen kernels. Then the sums are the same numbers the sums of
+ * the weights as doubles give, and rounding them half up gives what {@code Math.round} gives.
+ * Other kernels keep the weights as doubles.</p>
+ */
+final class CompiledKernel {
+  /**
+   * The number of fraction bits of the integer weights.
+   */
+  static final int FRACTION_BITS = 16;
+
+  private final double[][] weights;
+  private final int[][] fixed;
+  private final int[] column;
+  private final int[] row;
+
+  /**
+   * Constructs a kernel from its prepared parts.
+   *
+   * @param weights the weights as doubles.
+   * @param fixed   the integer weights, or null if they are not exact.
+   * @param column  the integer column of a separable kernel, or null.
+   * @param row     the integer row of a separable kernel, or null.
+   */
+  private CompiledKernel(double[][] weights, int[][] fixed, int[] column, int[] row) {
+    this.weights = weights;
+    this.fixed = fixed;
+    this.column = column;
+    this.row = row;
+  }
+
+  /**
+   * Checks that the given kernel can be prepared for the filter loops.
+   *
+   * @param kernel the kernel in matrix form.
+   * @throws IllegalArgumentException if the kernel is not a square of odd size of finite
+   *                                  weights.
+   */
+  static void validate(List<List<Double>> kernel) throws IllegalArgumentException {
+    if (kernel == null || kernel.size() % 2 == 0) {
+      throw new IllegalArgumentException("Invalid kernel");
+    }
+    for (List<Double> row : kernel) {
+      if (row == null || row.size() != kernel.size()) {
+        throw new IllegalArgumentException("Invalid kernel");
+      }
+      for (Double weight : row) {
+        if (weight == null || weight.isNaN() || weight.isInfinite()) {
+          throw new IllegalArgumentException("Invalid kernel");
+        }
+      }
+    }
+  }
+
+  /**
+   * Prepares the given kernel for the filter loops.
+   *
+   * @param kernel the square kernel of odd size in matrix form.
+   * @return the prepared kernel.
+   */
+  static CompiledKernel compile(List<List<Double>> kernel) {
+    double[][] weights = new double[kernel.size()][];
+    for (int i = 0; i < kernel.size(); i++) {
+      weights[i] = new double[kernel.get(i).size()];
+      for (int j = 0; j < weights[i].length; j++) {
+        weights[i][j] = kernel.get(i).get(j);
+      }
+    }
+    int[][] fixed = scale(weights);
+    int[] column = null;
+    int[] row = null;
+    double[][] factors = fixed == null ? null : separate(weights);
+    if (factors != null) {
+      column = scale(factors[0]);
+      row = scale(factors[1]);
+      if (column == null || row == null) {
+        column = null;
+        row = null;
+      }
+    }
+    return new CompiledKernel(weights, fixed, column, row);
+  }
+
+  /**
+   * Gets the weights of this kernel as doubles.
+   *
+   * @return the weights of this kernel.
+   */
+  double[][] getWeights() {
+    return this.weights;
+  }
+
+  /**
+   * Gets the weights of this kernel as integers with {@link #FRACTION_BITS} fraction bits.
+   *
+   * @return the integer weights, or null if they would not be exact.
+   */
+  int[][] getFixed() {
+    return this.fixed;
+  }
+
+  /**
+   * Determines whether this kernel is split into a column and a row of integer weights.
+   *
+   * @return whether this kernel is separable.
+   */
+  boolean isSeparable() {
+    return this.row != null;
+  }
+
+  /**
+   * Gets the column of a separable kernel as integers with {@link #FRACTION_BITS} fraction bits.
+   *
+   * @return the column of this kernel, or null if it is not separable.
+   */
+  int[] getColumn() {
+    return this.column;
+  }
+
+  /**
+   * Gets the row of a separable kernel as integers with {@link #FRACTION_BITS} fraction bits.
+   *
+   * @return the row of this kernel, or null if it is not separable.
+   */
+  int[] getRow() {
+    return this.row;
+  }
+
+  /**
+   * Gets the number of rows and columns of this kernel.
+   *
+   * @return the size of this kernel.
+   */
+  int size() {
+    return this.weights.length;
+  }
+
+  /**
+   * Rounds a sum with the given number of fraction bits half up to an integer, the way
+   * {@code Math.round} rounds.
+   *
+   * @param sum          the sum to round.
+   * @param fractionBits the number of fraction bits of the sum.
+   * @return the rounded sum.
+   */
+  static int round(long sum, int fractionBits) {
+    return (int) ((sum + (1L << (fractionBits - 1))) >> fractionBits);
+  }
+
+  /**
+   * Scales the given weights into integers with {@link #FRACTION_BITS} fraction bits.
+   *
+   * @param weights the weights to scale.
+   * @return the integer weights, or null if a weight is not a multiple of {@code 2^-16} or a
+   *         sum of channels times the weights may not fit into an integer.
+   */
+  private static int[][] scale(double[][] weights) {
+    int[][] result = new int[weights.length][];
+    double total = 0.0;
+    for (int i = 0; i < weights.length; i++) {
+      result[i] = new int[weights[i].length];
+      for (int j = 0; j < weights[i].length; j++) {
+        double scaled = weights[i][j] * (1 << FRACTION_BITS);
+        if (scaled != Math.rint(scaled) || Math.abs(scaled) > Integer.MAX_VALUE) {
+          return null;
+        }
+        result[i][j] = (int) scaled;
+        total = total + Math.abs(scaled);
+      }
+    }
+    if (total * 255 > Integer.MAX_VALUE) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Scales the given weights into integers with {@link #FRACTION_BITS} fraction bits.
+   *
+   * @param weights the weights to scale.
+   * @return the integer weights, or null if they would not be exact.
+   */
+  private static int[] scale(double[] weights) {
+    int[][] result = scale(new double[][]{weights});
+    return result == null ? null : result[0];
+  }
+
+  /**
+   * Splits a kernel into a column and a row whose outer product is exactly the kernel, so the
+   * image can be filtered by one pass along the rows and one pass along the columns. This takes
+   * {@code 2k} multiplications per channel of a pixel instead of {@code k * k}.
+   *
+   * @param kernel the square kernel.
+   * @return the column and the row of the kernel, or null if the kernel is not separable.
+   */
+  private static double[][] separate(double[][] kernel) {
+    int pivotRow = 0;
+    int pivotColumn = 0;
+    for (int i = 0; i < kernel.length; i++) {
+      for (int j = 0; j < kernel.length; j++) {
+        if (Math.abs(kernel[i][j]) > Math.abs(kernel[pivotRow][pivotColumn])) {
+          pivotRow = i;
+          pivotColumn = j;
+        }
+      }
+    }
+    double pivot = kernel[pivotRow][pivotColumn];
+    if (pivot == 0.0) {
+      return null;
+    }
+    double[] row = kernel[pivotRow].clone();
+    double[] column = new double[kernel.length];
+    for (int i = 0; i < kernel.length; i++) {
+      column[i] = kernel[i][pivotColumn] / pivot;
+    }
+    for (int i = 0; i < kernel.length; i++) {
+      for (int j = 0; j < kernel.length; j++) {
+        if (column[i] * row[j] != kernel[i][j]) {
+          return null;
+        }
+      }
+    }
+    return new double[][]{column, row};
+  }
+}
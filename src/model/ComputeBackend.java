@@ -0,0 +1,112 @@
+package model;
+
+/**
+ * This enum represents the ways the filters and color transformations run their inner loops.
+ * Every backend gives exactly the same images, only the speed differs.
+ *
+ * <p>The lanes backend unpacks every row into one array per channel and runs every weight over
+ * the whole row at once. These are plain Java loops with no branches that read and write with
+ * unit stride, which the just-in-time compiler may or may not vectorize on its own. No backend
+ * uses the incubating vector module of the platform, even when it is present. The sums are
+ * integers, or doubles added in the same order as in the scalar loops, so the results are the
+ * same as the ones of the scalar backend.</p>
+ */
+public enum ComputeBackend {
+  /**
+   * Every pixel is computed on its own, one weight after another.
+   */
+  SCALAR("scalar"),
+
+  /**
+   * Every row is computed one weight at a time over arrays of channels, in plain loops.
+   */
+  LANES("lanes");
+
+  private static volatile ComputeBackend selected = LANES;
+
+  private final String name;
+
+  /**
+   * Constructs a backend with the name used for it in the commands.
+   *
+   * @param name the name of the backend.
+   */
+  ComputeBackend(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name of this backend as it is used in the commands.
+   *
+   * @return the name of this backend.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Gets the backend the operations use.
+   *
+   * @return the selected backend.
+   */
+  public static ComputeBackend getSelected() {
+    return selected;
+  }
+
+  /**
+   * Selects the backend the operations use.
+   *
+   * @param backend the backend to use.
+   * @throws IllegalArgumentException if the backend is null.
+   */
+  public static void select(ComputeBackend backend) throws IllegalArgumentException {
+    if (backend == null) {
+      throw new IllegalArgumentException("Backend cannot be null");
+    }
+    selected = backend;
+  }
+
+  /**
+   * Determines whether the incubating vector module of the platform can be loaded. No backend
+   * uses it, and this is only reported.
+   *
+   * @return whether the vector module is available.
+   */
+  public static boolean isVectorModuleAvailable() {
+    try {
+      Class.forName("jdk.incubator.vector.IntVector");
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Describes the selected backend and the platform it runs on. The description says plainly
+   * that the vector module is not used, whether or not it was detected.
+   *
+   * @return the description of the selected backend.
+   */
+  public static String report() {
+    return "Backend: " + selected.getName() + " (plain Java loops), vector module: "
+            + (isVectorModuleAvailable() ? "detected but not used" : "not detected")
+            + ", processors: " + Runtime.getRuntime().availableProcessors()
+            + ", architecture: " + System.getProperty("os.arch") + ".";
+  }
+
+  /**
+   * Finds the backend with the given name.
+   *
+   * @param name the name of the backend.
+   * @return the backend with the given name.
+   * @throws IllegalArgumentException if there is no backend with the given name.
+   */
+  public static ComputeBackend fromName(String name) throws IllegalArgumentException {
+    for (ComputeBackend backend : values()) {
+      if (backend.name.equals(name)) {
+        return backend;
+      }
+    }
+    throw new IllegalArgumentException("No such backend: " + name);
+  }
+}
@@ -0,0 +1,96 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents one of the operations for filtering. It contains the method that filters
+ * the image with a kernel given by the user, like one loaded from a file.
+ */
+public class Convolution extends Filter implements ImageOperation, LinearFilter {
+  private final List<List<Double>> kernel;
+
+  /**
+   * Constructs a convolution operation with the given kernel and an image.
+   *
+   * @param image  the image to be filtered.
+   * @param kernel the square kernel of odd size in matrix form.
+   * @throws IllegalArgumentException if the image is null or the kernel is not a square of odd
+   *                                  size of finite weights.
+   */
+  public Convolution(Raster image, List<List<Double>> kernel) throws IllegalArgumentException {
+    this(image, kernel, EdgeMode.ZERO);
+  }
+
+  /**
+   * Constructs a convolution operation with the given kernel and an image, treating the pixels
+   * past the edges of the image as the given edge mode says.
+   *
+   * @param image    the image to be filtered.
+   * @param kernel   the square kernel of odd size in matrix form.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null or the kernel is not
+   *                                  a square of odd size of finite weights.
+   */
+  public Convolution(Raster image, List<List<Double>> kernel, EdgeMode edgeMode)
+          throws IllegalArgumentException {
+    super(image, edgeMode);
+    this.kernel = copyKernel(kernel);
+  }
+
+  @Override
+  public List<List<Double>> getKernel() {
+    List<List<Double>> copy = new ArrayList<List<Double>>();
+    for (List<Double> row : kernel) {
+      copy.add(new ArrayList<Double>(row));
+    }
+    return copy;
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    return filter(kernel);
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    filter(kernel, target);
+  }
+
+  /**
+   * Describes how the image is convolved with the kernel, directly, in separable passes or
+   * through the fast Fourier transform, and the estimated cost.
+   *
+   * @return the description of the chosen strategy.
+   */
+  public String describe() {
+    return describe(kernel);
+  }
+
+  /**
+   * Checks the given kernel and copies it, so later changes to the given lists do not change
+   * this operation.
+   *
+   * @param kernel the square kernel of odd size in matrix form.
+   * @return the copy of the kernel.
+   * @throws IllegalArgumentException if the kernel is not a square of odd size of finite
+   *                                  weights.
+   */
+  private static List<List<Double>> copyKernel(List<List<Double>> kernel)
+          throws IllegalArgumentException {
+    CompiledKernel.validate(kernel);
+    List<List<Double>> copy = new ArrayList<List<Double>>();
+    for (List<Double> row : kernel) {
+      copy.add(new ArrayList<Double>(row));
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,226 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents a snapshot of an image that shares its pixels with other snapshots of
+ * the same image. Taking a snapshot does not copy any pixels. A row is copied only the first
+ * time it is changed through a snapshot, so the change is never seen by the other snapshots.
+ *
+ * <p>The shared image is released when the last snapshot that uses it is released.</p>
+ */
+public final class CopyOnWriteRaster implements Raster {
+  private final Shared shared;
+  private int[][] rows;
+  private boolean released;
+
+  /**
+   * Constructs a snapshot of the given shared image.
+   *
+   * @param shared the shared image, already counting this snapshot.
+   * @param rows   the rows changed through this snapshot, or null if none was changed.
+   */
+  private CopyOnWriteRaster(Shared shared, int[][] rows) {
+    this.shared = shared;
+    this.rows = rows;
+    this.released = false;
+  }
+
+  /**
+   * Produces a snapshot that takes over the given image. The image should not be changed
+   * directly afterwards, since its pixels are shared by every snapshot made from the result. If
+   * the image is already a snapshot, it is returned as is.
+   *
+   * @param image the image to take over.
+   * @return a snapshot of the image.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static CopyOnWriteRaster share(Raster image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (image instanceof CopyOnWriteRaster) {
+      return (CopyOnWriteRaster) image;
+    }
+    return new CopyOnWriteRaster(new Shared(image), null);
+  }
+
+  /**
+   * Gets the image whose pixels can be read in place of the given image. For a snapshot without
+   * changed rows this is the shared image, which must only be read, otherwise it is the given
+   * image itself.
+   *
+   * @param image the image to read.
+   * @return the image to read instead.
+   */
+  static Raster unwrap(Raster image) {
+    if (image instanceof CopyOnWriteRaster) {
+      CopyOnWriteRaster snapshot = (CopyOnWriteRaster) image;
+      if (snapshot.rows == null) {
+        return snapshot.base();
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Determines whether this snapshot shares its pixels with another snapshot.
+   *
+   * @return whether another snapshot uses the same image.
+   */
+  public boolean isShared() {
+    return this.shared.references.get() > 1;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.shared.image.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return this.shared.image.getHeight();
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return this.shared.image.getLayout();
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    Raster base = this.base();
+    if (this.rows != null && row >= 0 && row < this.rows.length && this.rows[row] != null) {
+      if (column < 0 || column >= this.rows[row].length) {
+        throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+      }
+      return this.rows[row][column];
+    }
+    return base.getRGB(row, column);
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    if (column < 0 || column >= this.getWidth()) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    this.ownRow(row)[column] = rgb & 0xFFFFFF;
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    Raster base = this.base();
+    if (this.rows != null && row >= 0 && row < this.rows.length && this.rows[row] != null) {
+      System.arraycopy(this.rows[row], 0, dest, 0, this.rows[row].length);
+    } else {
+      base.readRow(row, dest);
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    int[] target = this.ownRow(row);
+    for (int j = 0; j < target.length; j++) {
+      target[j] = src[j] & 0xFFFFFF;
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return this.base().newRaster(width, height);
+  }
+
+  /**
+   * Takes another snapshot of the same image. Only the rows changed through this snapshot are
+   * copied, all other pixels are shared.
+   *
+   * @return a new snapshot with the same pixels as this snapshot.
+   * @throws IllegalStateException if this snapshot was released.
+   */
+  @Override
+  public Raster copy() {
+    this.base();
+    int[][] copiedRows = null;
+    if (this.rows != null) {
+      copiedRows = new int[this.rows.length][];
+      for (int i = 0; i < this.rows.length; i++) {
+        if (this.rows[i] != null) {
+          copiedRows[i] = this.rows[i].clone();
+        }
+      }
+    }
+    this.shared.references.incrementAndGet();
+    return new CopyOnWriteRaster(this.shared, copiedRows);
+  }
+
+  /**
+   * Releases this snapshot. The shared image is released when no other snapshot uses it.
+   * Releasing a snapshot more than once does nothing.
+   */
+  @Override
+  public void release() {
+    if (this.released) {
+      return;
+    }
+    this.released = true;
+    this.rows = null;
+    if (this.shared.references.decrementAndGet() == 0) {
+      this.shared.image.release();
+    }
+  }
+
+  /**
+   * Gets the shared image of this snapshot.
+   *
+   * @return the shared image.
+   * @throws IllegalStateException if this snapshot was released.
+   */
+  private Raster base() {
+    if (this.released) {
+      throw new IllegalStateException("Image has been released");
+    }
+    return this.shared.image;
+  }
+
+  /**
+   * Gets the private copy of the given row, copying it from the shared image the first time.
+   *
+   * @param row the row number.
+   * @return the row that belongs to this snapshot only.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   * @throws IllegalStateException     if this snapshot was released.
+   */
+  private int[] ownRow(int row) {
+    Raster base = this.base();
+    if (row < 0 || row >= base.getHeight()) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    if (this.rows == null) {
+      this.rows = new int[base.getHeight()][];
+    }
+    if (this.rows[row] == null) {
+      int[] copied = new int[base.getWidth()];
+      base.readRow(row, copied);
+      this.rows[row] = copied;
+    }
+    return this.rows[row];
+  }
+
+  /**
+   * This class holds an image together with the number of snapshots that use it.
+   */
+  private static final class Shared {
+    private final Raster image;
+    private final AtomicInteger references;
+
+    /**
+     * Constructs the holder of an image used by one snapshot.
+     *
+     * @param image the shared image.
+     */
+    private Shared(Raster image) {
+      this.image = image;
+      this.references = new AtomicInteger(1);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package model;
+
+/**
+ * This enum represents the ways a filter can treat the pixels past the edges of an image. Each
+ * mode maps a row or column outside of the image to one inside of it, or to none at all.
+ */
+public enum EdgeMode {
+  /**
+   * The pixels outside of the image are black.
+   */
+  ZERO("zero") {
+    @Override
+    public int map(int index, int size) {
+      return index >= 0 && index < size ? index : -1;
+    }
+  },
+
+  /**
+   * The pixels outside of the image repeat the nearest pixel on the edge.
+   */
+  CLAMP("clamp") {
+    @Override
+    public int map(int index, int size) {
+      return Math.min(Math.max(index, 0), size - 1);
+    }
+  },
+
+  /**
+   * The image is reflected at its edges, without repeating the pixel on the edge.
+   */
+  MIRROR("mirror") {
+    @Override
+    public int map(int index, int size) {
+      if (size == 1) {
+        return 0;
+      }
+      int period = 2 * (size - 1);
+      int position = Math.abs(index) % period;
+      return position < size ? position : period - position;
+    }
+  },
+
+  /**
+   * The image repeats itself, so the pixels past one edge come from the opposite edge.
+   */
+  WRAP("wrap") {
+    @Override
+    public int map(int index, int size) {
+      return ((index % size) + size) % size;
+    }
+  };
+
+  private final String name;
+
+  /**
+   * Constructs an edge mode with the name used for it in the commands.
+   *
+   * @param name the name of the edge mode.
+   */
+  EdgeMode(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Maps a row or column number, possibly outside of the image, to the one whose pixel is used.
+   *
+   * @param index the row or column number.
+   * @param size  the positive number of rows or columns in the image.
+   * @return the row or column number inside of the image, or -1 if the pixel is black.
+   */
+  public abstract int map(int index, int size);
+
+  /**
+   * Maps every position from {@code -border} to {@code size + border - 1}. The result at index
+   * {@code k} is the mapping of position {@code k - border}.
+   *
+   * @param size   the positive number of rows or columns in the image.
+   * @param border the number of positions past each edge.
+   * @return the mapped positions, -1 for black pixels.
+   */
+  int[] table(int size, int border) {
+    int[] result = new int[size + 2 * border];
+    for (int k = 0; k < result.length; k++) {
+      result[k] = this.map(k - border, size);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the name of this edge mode as it is used in the commands.
+   *
+   * @return the name of this edge mode.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Finds the edge mode with the given name.
+   *
+   * @param name the name of the edge mode.
+   * @return the edge mode with the given name.
+   * @throws IllegalArgumentException if there is no edge mode with the given name.
+   */
+  public static EdgeMode fromName(String name) throws IllegalArgumentException {
+    for (EdgeMode mode : values()) {
+      if (mode.name.equals(name)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("No such edge mode: " + name);
+  }
+}
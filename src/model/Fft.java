@@ -0,0 +1,118 @@
+package model;
+
+/**
+ * This class represents a fast Fourier transform of one power of two size. It transforms
+ * complex values kept as separate arrays of real and imaginary parts, in place, with the
+ * iterative radix-2 algorithm.
+ */
+final class Fft {
+  private final int size;
+  private final int[] reversed;
+  private final double[] cosines;
+  private final double[] sines;
+
+  /**
+   * Constructs a transform of the given size and computes its tables.
+   *
+   * @param size the number of values of the transform, a power of two.
+   * @throws IllegalArgumentException if the size is not a power of two.
+   */
+  Fft(int size) throws IllegalArgumentException {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("Size should be a power of two");
+    }
+    this.size = size;
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      this.reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+    this.cosines = new double[size / 2];
+    this.sines = new double[size / 2];
+    for (int i = 0; i < size / 2; i++) {
+      this.cosines[i] = Math.cos(2 * Math.PI * i / size);
+      this.sines[i] = Math.sin(2 * Math.PI * i / size);
+    }
+  }
+
+  /**
+   * Gets the number of values of this transform.
+   *
+   * @return the size of this transform.
+   */
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Transforms the values at the given offset and stride in place. The inverse transform is
+   * not scaled.
+   *
+   * @param real      the real parts.
+   * @param imaginary the imaginary parts.
+   * @param offset    the index of the first value.
+   * @param stride    the distance between two values.
+   * @param inverse   whether to compute the inverse transform.
+   */
+  void transform(double[] real, double[] imaginary, int offset, int stride, boolean inverse) {
+    for (int i = 0; i < this.size; i++) {
+      int j = this.reversed[i];
+      if (j > i) {
+        int a = offset + i * stride;
+        int b = offset + j * stride;
+        double swap = real[a];
+        real[a] = real[b];
+        real[b] = swap;
+        swap = imaginary[a];
+        imaginary[a] = imaginary[b];
+        imaginary[b] = swap;
+      }
+    }
+    double sign = inverse ? 1.0 : -1.0;
+    for (int length = 2; length <= this.size; length <<= 1) {
+      int half = length >> 1;
+      int step = this.size / length;
+      for (int start = 0; start < this.size; start += length) {
+        for (int k = 0; k < half; k++) {
+          double cos = this.cosines[k * step];
+          double sin = sign * this.sines[k * step];
+          int a = offset + (start + k) * stride;
+          int b = offset + (start + k + half) * stride;
+          double re = real[b] * cos - imaginary[b] * sin;
+          double im = real[b] * sin + imaginary[b] * cos;
+          real[b] = real[a] - re;
+          imaginary[b] = imaginary[a] - im;
+          real[a] = real[a] + re;
+          imaginary[a] = imaginary[a] + im;
+        }
+      }
+    }
+  }
+
+  /**
+   * Transforms a square of values stored row after row in place, first every row and then
+   * every column. The inverse transform is scaled, so it undoes the forward transform.
+   *
+   * @param real      the real parts of the square.
+   * @param imaginary the imaginary parts of the square.
+   * @param rows      the number of rows from the top that may not be zero, all others are zero
+   *                  in the forward transform and are skipped.
+   * @param inverse   whether to compute the inverse transform.
+   */
+  void transform2d(double[] real, double[] imaginary, int rows, boolean inverse) {
+    int count = inverse ? this.size : Math.min(rows, this.size);
+    for (int i = 0; i < count; i++) {
+      this.transform(real, imaginary, i * this.size, 1, inverse);
+    }
+    for (int j = 0; j < this.size; j++) {
+      this.transform(real, imaginary, j, this.size, inverse);
+    }
+    if (inverse) {
+      double scale = 1.0 / ((double) this.size * this.size);
+      for (int i = 0; i < real.length; i++) {
+        real[i] *= scale;
+        imaginary[i] *= scale;
+      }
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class holds when the filters convolve through the fast Fourier transform instead of
+ * summing the kernel at every pixel. Summing costs {@code k * k} multiplications per channel of
+ * a pixel, while the transform costs about the logarithm of the size of a tile, so from some
+ * kernel size on the transform is faster. The filters consider it for the kernels at least
+ * {@link #getThreshold()} large and use it when {@link KernelPlan} estimates it is the
+ * cheapest, except for the kernels with exact integer weights, which are always summed exactly.
+ *
+ * <p>The image is split into square tiles. Every tile is read with the halo the kernel needs,
+ * padded with zeros to a power of two, transformed, multiplied by the transform of the kernel
+ * and transformed back, and the part of the result the halo makes exact is kept. The red and
+ * green channels are transformed together as the real and imaginary parts of one transform,
+ * which is possible because the kernel is real. The pixels past the edges are read as the edge
+ * mode says, so the result is the one of the direct sums up to the rounding of doubles, which
+ * may move a channel by one where the exact sum is halfway between two integers.</p>
+ */
+public final class FftConvolution {
+  /**
+   * The smallest kernel size convolved through the transform unless it is set. Below it,
+   * summing the kernel was measured to be faster.
+   */
+  public static final int DEFAULT_THRESHOLD = 11;
+
+  // the largest side of the transform of one tile
+  private static final int MAX_TRANSFORM_SIZE = 512;
+
+  private static int threshold = DEFAULT_THRESHOLD;
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private FftConvolution() {
+  }
+
+  /**
+   * Sets the smallest kernel size convolved through the transform. A threshold larger than any
+   * kernel turns the transform off.
+   *
+   * @param size the smallest kernel size, at least 1.
+   * @throws IllegalArgumentException if the size is not positive.
+   */
+  public static synchronized void setThreshold(int size) throws IllegalArgumentException {
+    if (size < 1) {
+      throw new IllegalArgumentException("Threshold should be positive");
+    }
+    threshold = size;
+  }
+
+  /**
+   * Gets the smallest kernel size convolved through the transform.
+   *
+   * @return the smallest kernel size.
+   */
+  public static synchronized int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Chooses the side of the transform of a tile for a kernel of the given size, the power of
+   * two that takes the fewest operations per pixel kept.
+   *
+   * @param kernelSize the number of rows and columns of the kernel.
+   * @return the side of the transform.
+   */
+  static int transformSize(int kernelSize) {
+    int best = Integer.highestOneBit(2 * kernelSize - 1) << 1;
+    double bestCost = Double.MAX_VALUE;
+    for (int size = best; size <= Math.max(best, MAX_TRANSFORM_SIZE); size <<= 1) {
+      int kept = size - kernelSize + 1;
+      double cost = (double) size * size * Integer.numberOfTrailingZeros(size)
+              / ((double) kept * kept);
+      if (cost < bestCost) {
+        bestCost = cost;
+        best = size;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Convolves the image with the given kernel into the given image. The image must not be the
+   * image written into, because the rows around a tile are read after the tiles above are
+   * written.
+   *
+   * @param source   the image to filter.
+   * @param kernel   the square kernel of odd size.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @param target   the image of the same size to write into.
+   * @return the filtered image.
+   */
+  static Raster convolve(final Raster source, double[][] kernel, EdgeMode edgeMode,
+                         final Raster target) {
+    final int width = source.getWidth();
+    final int height = source.getHeight();
+    final int size = kernel.length;
+    final int half = size / 2;
+    final int transformSize = transformSize(size);
+    final int kept = transformSize - 2 * half;
+    final Fft fft = new Fft(transformSize);
+    // the kernel is turned around so the transform computes the same sums as the direct loops
+    final double[] kernelReal = new double[transformSize * transformSize];
+    final double[] kernelImaginary = new double[transformSize * transformSize];
+    for (int a = 0; a < size; a++) {
+      for (int b = 0; b < size; b++) {
+        int row = (half - a + transformSize) % transformSize;
+        int column = (half - b + transformSize) % transformSize;
+        kernelReal[row * transformSize + column] = kernel[a][b];
+      }
+    }
+    fft.transform2d(kernelReal, kernelImaginary, transformSize, false);
+    final int[] rowTable = edgeMode.table(height, half);
+    final int[] columnTable = edgeMode.table(width, half);
+    int tilesDown = (height + kept - 1) / kept;
+    Parallelism.forEachBand(tilesDown, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int area = transformSize * transformSize;
+        double[] red = new double[area];
+        double[] green = new double[area];
+        double[] blue = new double[area];
+        double[] zero = new double[area];
+        int[][] rows = new int[kept + 2 * half][width];
+        int[][] result = new int[kept][width];
+        for (int tileRow = first; tileRow < last; tileRow++) {
+          int top = tileRow * kept;
+          int count = Math.min(kept, height - top);
+          int rowsRead = Math.min(kept + 2 * half, count + 2 * half);
+          boolean[] black = new boolean[rowsRead];
+          for (int u = 0; u < rowsRead; u++) {
+            int index = rowTable[top + u];
+            black[u] = index < 0;
+            if (!black[u]) {
+              source.readRow(index, rows[u]);
+            }
+          }
+          for (int left = 0; left < width; left += kept) {
+            int columns = Math.min(kept, width - left);
+            int columnsRead = columns + 2 * half;
+            Arrays.fill(red, 0.0);
+            Arrays.fill(green, 0.0);
+            Arrays.fill(blue, 0.0);
+            Arrays.fill(zero, 0.0);
+            for (int u = 0; u < rowsRead; u++) {
+              if (black[u]) {
+                continue;
+              }
+              int[] row = rows[u];
+              int offset = u * transformSize;
+              for (int v = 0; v < columnsRead; v++) {
+                int column = columnTable[left + v];
+                if (column >= 0) {
+                  int rgb = row[column];
+                  red[offset + v] = (rgb >> 16) & 0xFF;
+                  green[offset + v] = (rgb >> 8) & 0xFF;
+                  blue[offset + v] = rgb & 0xFF;
+                }
+              }
+            }
+            fft.transform2d(red, green, rowsRead, false);
+            fft.transform2d(blue, zero, rowsRead, false);
+            for (int p = 0; p < area; p++) {
+              double re = red[p];
+              double im = green[p];
+              red[p] = re * kernelReal[p] - im * kernelImaginary[p];
+              green[p] = re * kernelImaginary[p] + im * kernelReal[p];
+              re = blue[p];
+              im = zero[p];
+              blue[p] = re * kernelReal[p] - im * kernelImaginary[p];
+              zero[p] = re * kernelImaginary[p] + im * kernelReal[p];
+            }
+            fft.transform2d(red, green, transformSize, true);
+            fft.transform2d(blue, zero, transformSize, true);
+            for (int i = 0; i < count; i++) {
+              int offset = (i + half) * transformSize + half;
+              for (int j = 0; j < columns; j++) {
+                result[i][left + j] = ColorPixel.packRGB(
+                        (int) Math.round(red[offset + j]),
+                        (int) Math.round(green[offset + j]),
+                        (int) Math.round(blue[offset + j]));
+              }
+            }
+          }
+          for (int i = 0; i < count; i++) {
+            Parallelism.writeRow(target, top + i, result[i]);
+          }
+        }
+      }
+    });
+    return target;
+  }
+}
@@ -1,6 +1,6 @@
 package model;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -8,7 +8,8 @@ import java.util.List;
  * every channel of every pixel in the image given the kernel.
  */
 public abstract class Filter {
-  private final List<List<Pixel>> image;
+  private final Raster image;
+  private final EdgeMode edgeMode;
 
   /**
    * Constructs an image operation filter.
@@ -17,8 +18,43 @@ public abstract class Filter {
    * @throws IllegalArgumentException if any of the parameters is null or contains null.
    */
   public Filter(List<List<Pixel>> image) throws IllegalArgumentException {
-    ColorTransformation.validate(image);
+    this.image = RasterAdapter.toRaster(image);
+    this.edgeMode = EdgeMode.ZERO;
+  }
+
+  /**
+   * Constructs an image operation filter.
+   *
+   * @param image the given image to filter.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public Filter(Raster image) throws IllegalArgumentException {
+    this(image, EdgeMode.ZERO);
+  }
+
+  /**
+   * Constructs an image operation filter that treats the pixels past the edges of the image
+   * as the given edge mode says.
+   *
+   * @param image    the given image to filter.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null.
+   */
+  public Filter(Raster image, EdgeMode edgeMode) throws IllegalArgumentException {
+    if (image == null || edgeMode == null) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
     this.image = image;
+    this.edgeMode = edgeMode;
+  }
+
+  /**
+   * Gets the way this filter treats the pixels past the edges of the image.
+   *
+   * @return the edge mode of this filter.
+   */
+  public EdgeMode getEdgeMode() {
+    return this.edgeMode;
   }
 
   /**
@@ -27,87 +63,1023 @@ public abstract class Filter {
    * @return the current image state in sequence of
    */
   public List<List<Pixel>> imageObserver() {
-    return this.image;
+    return new RasterAdapter(this.image);
   }
 
   /**
-   * Filters the image based on the kernel given.
+   * Filters the image based on the kernel given. The pixels outside of the image are treated as
+   * the edge mode of this filter says. The kernel is summed directly, split into separable
+   * passes or convolved through the fast Fourier transform, whichever {@link KernelPlan} finds
+   * cheapest.
    *
-   * @param kernel the kernel needed for filter computation.
+   * @param kernel the square kernel of odd size needed for filter computation.
    * @return the filtered image.
    */
-  protected List<List<Pixel>> filter(List<List<Double>> kernel) {
-    ColorPixel pixelColorPixel;
-    List<List<Pixel>> filteredImage = new ArrayList<List<Pixel>>();
-    for (int i = 0; i < image.size(); i++) {
-      List<Pixel> filteredRow = new ArrayList<Pixel>();
-      for (int j = 0; j < image.get(i).size(); j++) {
-        pixelColorPixel = constructNewColor(createImageMatrix(kernel, i, j), kernel);
-        filteredRow.add(new Pixel(new PositionPixel(i, j), pixelColorPixel));
+  protected Raster filter(List<List<Double>> kernel) {
+    return filter(kernel, null);
+  }
+
+  /**
+   * Filters the image based on the kernel given and writes the result into the given image,
+   * for example a view of a region of a larger image. The pixels outside of the image are
+   * treated as the edge mode of this filter says.
+   *
+   * @param kernel the square kernel of odd size needed for filter computation.
+   * @param target the image of the same size to write into, or null to create a new image.
+   * @return the filtered image, which is the target if one was given.
+   * @throws IllegalArgumentException if the target does not have the size of the image.
+   */
+  protected Raster filter(List<List<Double>> kernel, Raster target)
+          throws IllegalArgumentException {
+    CompiledKernel compiled = CompiledKernel.compile(kernel);
+    KernelPlan plan = plan(compiled);
+    boolean transformed = plan.getStrategy() == KernelPlan.Strategy.TRANSFORM;
+    boolean lowRank = plan.getStrategy() == KernelPlan.Strategy.LOW_RANK;
+    if (target != null) {
+      if (target.getWidth() != image.getWidth() || target.getHeight() != image.getHeight()) {
+        throw new IllegalArgumentException("Target size does not match the image");
       }
-      filteredImage.add(filteredRow);
+      // the other modes, the bands on other threads and the tiles of the transform read rows
+      // that may already be written when the target is the image
+      Raster source = this.edgeMode == EdgeMode.ZERO && !transformed
+              && !Parallelism.isParallel(image.getWidth(), image.getHeight())
+              ? image : image.copy();
+      try {
+        if (transformed) {
+          return FftConvolution.convolve(source, compiled.getWeights(), this.edgeMode, target);
+        }
+        if (lowRank) {
+          return filterLowRank(source, plan, target);
+        }
+        return filterRows(source, compiled, target, false);
+      } finally {
+        if (source != image) {
+          source.release();
+        }
+      }
+    }
+    if (transformed) {
+      return FftConvolution.convolve(image, compiled.getWeights(), this.edgeMode,
+              image.newRaster(image.getWidth(), image.getHeight()));
+    }
+    if (lowRank) {
+      return filterLowRank(image, plan, image.newRaster(image.getWidth(), image.getHeight()));
+    }
+    Raster stored = CopyOnWriteRaster.unwrap(image);
+    if (stored instanceof PlanarRaster) {
+      return filterPlanes((PlanarRaster) stored, compiled, this.edgeMode);
     }
+    if (stored instanceof TiledRaster && this.edgeMode == EdgeMode.ZERO) {
+      return filterTiles((TiledRaster) stored, compiled.getWeights());
+    }
+    if (stored instanceof FloatRaster) {
+      return filterFloats((FloatRaster) stored, compiled.getWeights(), this.edgeMode);
+    }
+    return filterRows(image, compiled, image.newRaster(image.getWidth(), image.getHeight()),
+            true);
+  }
+
+  /**
+   * Describes how the image is convolved with the given kernel and the estimated cost.
+   *
+   * @param kernel the square kernel of odd size.
+   * @return the description of the chosen strategy.
+   */
+  protected String describe(List<List<Double>> kernel) {
+    return plan(CompiledKernel.compile(kernel)).describe();
+  }
+
+  /**
+   * Chooses how the image is convolved with the given kernel. The images of doubles are always
+   * summed directly, since they keep the sums exactly.
+   *
+   * @param kernel the prepared kernel.
+   * @return the chosen plan.
+   */
+  private KernelPlan plan(CompiledKernel kernel) {
+    if (CopyOnWriteRaster.unwrap(image) instanceof FloatRaster) {
+      return KernelPlan.direct(kernel);
+    }
+    return KernelPlan.choose(kernel);
+  }
+
+  /**
+   * Filters the image with the terms of a low-rank plan into the given image, in bands of rows.
+   *
+   * @param source        the image to filter.
+   * @param plan          the low-rank plan.
+   * @param filteredImage the image of the same size to write into.
+   * @return the filtered image.
+   */
+  private Raster filterLowRank(final Raster source, final KernelPlan plan,
+                               final Raster filteredImage) {
+    Parallelism.forEachBand(source.getHeight(), source.getWidth(), source.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            filterLowRankBand(source, plan.getColumns(), plan.getRows(), filteredImage, first,
+                    last);
+          }
+        });
     return filteredImage;
   }
 
   /**
-   * Constructs a sequence of pixel in a matrix form that has same size with given kernel.
-   * This matrix is used to construct new RGB values after computing them with values from kernel.
+   * Filters a band of rows of the image with a sum of columns times rows into the given image.
+   * Every row read is filtered along the rows of all terms into sums kept for the rows of the
+   * kernel, and every row written combines those sums along the columns of the terms. The rows
+   * are read in the same order as {@code filterRowBand}, so with black edges and a single band
+   * the result can be written into the image itself.
    *
-   * @param kernel the sequence of values in matrix form for the math operations.
-   * @param rows   the row number of the pixel in the image.
-   * @param column the column number of the pixel in the image.
-   * @return the sequence of pixel in matrix form for computing new list of RGB values.
+   * @param source        the image to filter.
+   * @param columns       the columns of the terms.
+   * @param rows          the rows of the terms.
+   * @param filteredImage the image of the same size to write into.
+   * @param first         the first row of the band.
+   * @param last          the row after the last row of the band.
    */
-  private List<List<Pixel>> createImageMatrix(List<List<Double>> kernel, int rows, int column) {
-    int startingRow = rows - (int) (kernel.size() / 2.0);
-    int startingColumn = column - (int) (kernel.size() / 2.0);
+  private void filterLowRankBand(Raster source, double[][] columns, double[][] rows,
+                                 Raster filteredImage, int first, int last) {
+    int size = columns[0].length;
+    int half = size / 2;
+    int width = source.getWidth();
+    int rank = columns.length;
+    int[] rowTable = this.edgeMode.table(source.getHeight(), half);
+    int[] columnTable = this.edgeMode.table(width, half);
+    // sums[k] holds the red, green and blue sums of every term along row i - half + k
+    double[][] sums = new double[size][3 * width * rank];
+    int[] line = new int[width];
+    int[] filteredRow = new int[width];
+    for (int k = 0; k < size; k++) {
+      if (rowTable[first + k] >= 0) {
+        source.readRow(rowTable[first + k], line);
+        filterAlong(line, rows, columnTable, sums[k]);
+      }
+    }
+    for (int i = first; i < last; i++) {
+      int firstRow = 0;
+      while (rowTable[i + firstRow] < 0) {
+        firstRow++;
+      }
+      int lastRow = size;
+      while (rowTable[i + lastRow - 1] < 0) {
+        lastRow--;
+      }
+      for (int j = 0; j < width; j++) {
+        double sumRedValue = 0.0;
+        double sumGreenValue = 0.0;
+        double sumBlueValue = 0.0;
+        for (int t = 0; t < rank; t++) {
+          double[] column = columns[t];
+          int offset = 3 * (t * width + j);
+          for (int k = firstRow; k < lastRow; k++) {
+            double[] sum = sums[k];
+            sumRedValue = sumRedValue + column[k] * sum[offset];
+            sumGreenValue = sumGreenValue + column[k] * sum[offset + 1];
+            sumBlueValue = sumBlueValue + column[k] * sum[offset + 2];
+          }
+        }
+        filteredRow[j] = ColorPixel.packRGB((int) Math.round(sumRedValue),
+                (int) Math.round(sumGreenValue), (int) Math.round(sumBlueValue));
+      }
+      Parallelism.writeRow(filteredImage, i, filteredRow);
+      double[] oldest = sums[0];
+      System.arraycopy(sums, 1, sums, 0, size - 1);
+      sums[size - 1] = oldest;
+      if (i + 1 < last && rowTable[i + size] >= 0) {
+        source.readRow(rowTable[i + size], line);
+        filterAlong(line, rows, columnTable, oldest);
+      }
+    }
+  }
+
+  /**
+   * Filters one row of packed colors along the rows of every term, keeping the red, green and
+   * blue sums of every pixel for every term. Only the columns near the edges look up the edge
+   * mode.
+   *
+   * @param line        the packed colors of the row.
+   * @param rows        the rows of the terms.
+   * @param columnTable the columns used for every column from {@code -half} on.
+   * @param sums        the array to write the three sums of every pixel of every term into.
+   */
+  private static void filterAlong(int[] line, double[][] rows, int[] columnTable,
+                                  double[] sums) {
+    int half = rows[0].length / 2;
+    int width = line.length;
+    for (int t = 0; t < rows.length; t++) {
+      double[] row = rows[t];
+      for (int j = 0; j < width; j++) {
+        double sumRedValue = 0.0;
+        double sumGreenValue = 0.0;
+        double sumBlueValue = 0.0;
+        boolean interior = j >= half && j < width - half;
+        for (int l = 0; l < row.length; l++) {
+          int source = interior ? j - half + l : columnTable[j + l];
+          if (source >= 0) {
+            int rgb = line[source];
+            sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * row[l];
+            sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * row[l];
+            sumBlueValue = sumBlueValue + (rgb & 0xFF) * row[l];
+          }
+        }
+        int offset = 3 * (t * width + j);
+        sums[offset] = sumRedValue;
+        sums[offset + 1] = sumGreenValue;
+        sums[offset + 2] = sumBlueValue;
+      }
+    }
+  }
+
+  /**
+   * Filters a band of rows of the image with a separable kernel into the given image. Every
+   * row read is first filtered along the row into sums kept for the rows of the kernel, and
+   * every row written combines those sums along the column. The rows are read in the same order
+   * as {@code filterRowBand}, so with black edges and a single band the result can be written
+   * into the image itself.
+   *
+   * <p>The sums along the rows have 16 fraction bits and the sums along the columns 32, and
+   * both are exact, so the result is the same as the one of the full kernel.</p>
+   *
+   * @param source        the image to filter.
+   * @param column        the integer column of the kernel.
+   * @param row           the integer row of the kernel.
+   * @param filteredImage the image of the same size to write into.
+   * @param first         the first row of the band.
+   * @param last          the row after the last row of the band.
+   */
+  private void filterSeparableBand(Raster source, int[] column, int[] row,
+                                   Raster filteredImage, int first, int last) {
+    int size = column.length;
+    int half = size / 2;
+    int width = source.getWidth();
+    int[] rowTable = this.edgeMode.table(source.getHeight(), half);
+    int[] columnTable = this.edgeMode.table(width, half);
+    // sums[k] holds the red, green and blue sums along row i - half + k
+    int[][] sums = new int[size][3 * width];
+    int[] line = new int[width];
+    int[] filteredRow = new int[width];
+    for (int k = 0; k < size; k++) {
+      if (rowTable[first + k] >= 0) {
+        source.readRow(rowTable[first + k], line);
+        filterAlong(line, row, columnTable, sums[k]);
+      }
+    }
+    for (int i = first; i < last; i++) {
+      int firstRow = 0;
+      while (rowTable[i + firstRow] < 0) {
+        firstRow++;
+      }
+      int lastRow = size;
+      while (rowTable[i + lastRow - 1] < 0) {
+        lastRow--;
+      }
+      for (int j = 0; j < width; j++) {
+        long sumRedValue = 0;
+        long sumGreenValue = 0;
+        long sumBlueValue = 0;
+        for (int k = firstRow; k < lastRow; k++) {
+          int[] sum = sums[k];
+          sumRedValue = sumRedValue + (long) column[k] * sum[3 * j];
+          sumGreenValue = sumGreenValue + (long) column[k] * sum[3 * j + 1];
+          sumBlueValue = sumBlueValue + (long) column[k] * sum[3 * j + 2];
+        }
+        filteredRow[j] = ColorPixel.packRGB(
+                CompiledKernel.round(sumRedValue, 2 * CompiledKernel.FRACTION_BITS),
+                CompiledKernel.round(sumGreenValue, 2 * CompiledKernel.FRACTION_BITS),
+                CompiledKernel.round(sumBlueValue, 2 * CompiledKernel.FRACTION_BITS));
+      }
+      Parallelism.writeRow(filteredImage, i, filteredRow);
+      int[] oldest = sums[0];
+      System.arraycopy(sums, 1, sums, 0, size - 1);
+      sums[size - 1] = oldest;
+      if (i + 1 < last && rowTable[i + size] >= 0) {
+        source.readRow(rowTable[i + size], line);
+        filterAlong(line, row, columnTable, oldest);
+      }
+    }
+  }
 
-    List<List<Pixel>> imageMatrix = new ArrayList<List<Pixel>>();
-    for (int i = 0; i < kernel.size(); i++) {
-      List<Pixel> row = new ArrayList<Pixel>();
-      for (int j = 0; j < kernel.size(); j++) {
-        try {
-          row.add(this.getPixel(image.get(startingRow + i).get(startingColumn + j)));
-        } catch (IndexOutOfBoundsException e) {
-          row.add(this.getPixel(null));
+  /**
+   * Filters one row of packed colors along the row, keeping the red, green and blue sums of
+   * every pixel with 16 fraction bits. Only the columns near the edges look up the edge mode.
+   *
+   * @param line        the packed colors of the row.
+   * @param row         the integer row of the kernel.
+   * @param columnTable the columns used for every column from {@code -half} on.
+   * @param sums        the array to write the three sums of every pixel into.
+   */
+  private static void filterAlong(int[] line, int[] row, int[] columnTable, int[] sums) {
+    int half = row.length / 2;
+    int width = line.length;
+    for (int j = 0; j < width; j++) {
+      int sumRedValue = 0;
+      int sumGreenValue = 0;
+      int sumBlueValue = 0;
+      boolean interior = j >= half && j < width - half;
+      for (int l = 0; l < row.length; l++) {
+        int source = interior ? j - half + l : columnTable[j + l];
+        if (source >= 0) {
+          int rgb = line[source];
+          sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * row[l];
+          sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * row[l];
+          sumBlueValue = sumBlueValue + (rgb & 0xFF) * row[l];
         }
       }
-      imageMatrix.add(row);
+      sums[3 * j] = sumRedValue;
+      sums[3 * j + 1] = sumGreenValue;
+      sums[3 * j + 2] = sumBlueValue;
     }
-    return imageMatrix;
   }
 
   /**
-   * Validates the pixel provided. If the pixel is invalid, returns a dummy pixel. Otherwise,
-   * returns a valid pixel given.
+   * Filters a band of rows of the image into the given image on the lanes backend. If the
+   * image is interleaved and wider than a tile, the band is filtered one tile at a time, so the
+   * rows of the kernel stay in the cache.
    *
-   * @param other the given pixel to check.
-   * @return the valid pixel.
+   * @param source        the image to filter.
+   * @param kernel        the square kernel of odd size with integer weights.
+   * @param filteredImage the image of the same size to write into.
+   * @param first         the first row of the band.
+   * @param last          the row after the last row of the band.
+   * @param blocked       whether the band may be split into tiles.
    */
-  private Pixel getPixel(Pixel other) {
-    if (other == null) {
-      return new Pixel(new PositionPixel(0, 0), new ColorPixel(0, 0, 0));
-    } else {
-      return other;
+  private void filterLaneBand(Raster source, CompiledKernel kernel, Raster filteredImage,
+                              int first, int last, boolean blocked) {
+    int width = source.getWidth();
+    int tileWidth = CacheBlocking.getTileWidth(kernel.size());
+    if (!blocked || !CacheBlocking.isEnabled() || width <= tileWidth
+            || !(filteredImage instanceof PackedRaster)
+            || !(CopyOnWriteRaster.unwrap(source) instanceof PackedRaster)) {
+      filterLaneTile(source, kernel, filteredImage, first, last, 0, width);
+      return;
+    }
+    int tileHeight = CacheBlocking.getTileHeight();
+    for (int top = first; top < last; top += tileHeight) {
+      for (int left = 0; left < width; left += tileWidth) {
+        filterLaneTile(source, kernel, filteredImage, top, Math.min(top + tileHeight, last),
+                left, Math.min(left + tileWidth, width));
+      }
     }
   }
 
   /**
-   * Collects all the RGB values to compute pixel's updated RGB value after filtering, and
-   * construct a new RGB value.
+   * Filters a tile of the image into the given image on the lanes backend. Every row read is
+   * split into one array per channel over the columns of the tile and its halo, padded with the
+   * columns the edge mode uses past the edges, so the loops over a row have no branches. A
+   * separable kernel keeps the sums along the rows instead of the channels. The sums are
+   * integers, so adding them one weight at a time gives exactly the sums of
+   * {@code filterRowBand} and {@code filterSeparableBand}.
+   *
+   * <p>A tile as wide as the image reads every row before any row below it is written, so with
+   * black edges and a single band the result can be written into the image itself.</p>
    *
-   * @param imageMatrix the sequence of pixel in matrix form.
-   * @param kernel      the sequence of values in matrix form.
+   * @param source        the image to filter.
+   * @param kernel        the square kernel of odd size with integer weights.
+   * @param filteredImage the image of the same size to write into.
+   * @param first         the first row of the tile.
+   * @param last          the row after the last row of the tile.
+   * @param left          the first column of the tile.
+   * @param right         the column after the last column of the tile.
+   */
+  private void filterLaneTile(Raster source, CompiledKernel kernel, Raster filteredImage,
+                              int first, int last, int left, int right) {
+    int size = kernel.size();
+    int half = size / 2;
+    int width = source.getWidth();
+    int tileWidth = right - left;
+    boolean separable = kernel.isSeparable();
+    int[] rowTable = this.edgeMode.table(source.getHeight(), half);
+    int[] columnTable = this.edgeMode.table(width, half);
+    Raster stored = CopyOnWriteRaster.unwrap(source);
+    int[] pixels = stored instanceof PackedRaster ? ((PackedRaster) stored).getPixels() : null;
+    int[] target = filteredImage instanceof PackedRaster
+            ? ((PackedRaster) filteredImage).getPixels() : null;
+    // lanes[k][c] holds channel c of row i - half + k, or its sums along the row
+    int[][][] lanes = new int[size][3][separable ? tileWidth : tileWidth + 2 * half];
+    int[] line = pixels == null ? new int[width] : null;
+    int[][] sums = new int[3][];
+    long[][] wideSums = new long[3][];
+    for (int c = 0; c < 3; c++) {
+      sums[c] = new int[tileWidth];
+      wideSums[c] = new long[tileWidth];
+    }
+    int[][] channels = separable ? new int[3][tileWidth + 2 * half] : null;
+    int[] filteredRow = new int[tileWidth];
+    for (int k = 0; k < size; k++) {
+      if (rowTable[first + k] >= 0) {
+        loadLanes(source, pixels, rowTable[first + k], line, columnTable, left,
+                kernel.getRow(), channels, lanes[k]);
+      }
+    }
+    for (int i = first; i < last; i++) {
+      int firstRow = 0;
+      while (rowTable[i + firstRow] < 0) {
+        firstRow++;
+      }
+      int lastRow = size;
+      while (rowTable[i + lastRow - 1] < 0) {
+        lastRow--;
+      }
+      if (separable) {
+        int[] column = kernel.getColumn();
+        for (int c = 0; c < 3; c++) {
+          long[] sum = wideSums[c];
+          Arrays.fill(sum, 0L);
+          for (int k = firstRow; k < lastRow; k++) {
+            long weight = column[k];
+            int[] lane = lanes[k][c];
+            for (int j = 0; j < tileWidth; j++) {
+              sum[j] += weight * lane[j];
+            }
+          }
+        }
+        for (int j = 0; j < tileWidth; j++) {
+          filteredRow[j] = ColorPixel.packRGB(
+                  CompiledKernel.round(wideSums[0][j], 2 * CompiledKernel.FRACTION_BITS),
+                  CompiledKernel.round(wideSums[1][j], 2 * CompiledKernel.FRACTION_BITS),
+                  CompiledKernel.round(wideSums[2][j], 2 * CompiledKernel.FRACTION_BITS));
+        }
+      } else {
+        int[][] fixed = kernel.getFixed();
+        for (int c = 0; c < 3; c++) {
+          int[] sum = sums[c];
+          Arrays.fill(sum, 0);
+          for (int k = firstRow; k < lastRow; k++) {
+            int[] lane = lanes[k][c];
+            for (int l = 0; l < size; l++) {
+              int weight = fixed[k][l];
+              if (weight == 0) {
+                continue;
+              }
+              for (int j = 0; j < tileWidth; j++) {
+                sum[j] += lane[j + l] * weight;
+              }
+            }
+          }
+        }
+        for (int j = 0; j < tileWidth; j++) {
+          filteredRow[j] = ColorPixel.packRGB(
+                  CompiledKernel.round(sums[0][j], CompiledKernel.FRACTION_BITS),
+                  CompiledKernel.round(sums[1][j], CompiledKernel.FRACTION_BITS),
+                  CompiledKernel.round(sums[2][j], CompiledKernel.FRACTION_BITS));
+        }
+      }
+      if (target != null) {
+        System.arraycopy(filteredRow, 0, target, i * width + left, tileWidth);
+      } else {
+        Parallelism.writeRow(filteredImage, i, filteredRow);
+      }
+      int[][] oldest = lanes[0];
+      System.arraycopy(lanes, 1, lanes, 0, size - 1);
+      lanes[size - 1] = oldest;
+      if (i + 1 < last && rowTable[i + size] >= 0) {
+        loadLanes(source, pixels, rowTable[i + size], line, columnTable, left,
+                kernel.getRow(), channels, oldest);
+      }
+    }
+  }
+
+  /**
+   * Splits a row of the image into one array per channel over the columns of a tile and its
+   * halo, padded with the columns the edge mode uses past the edges. If a row of a separable
+   * kernel is given, the arrays get the sums of the channels along the row instead.
+   *
+   * @param source      the image to read.
+   * @param pixels      the packed colors of an interleaved image, or null to read the row.
+   * @param row         the row to read.
+   * @param line        the array to read the row into when there are no packed colors.
+   * @param columnTable the columns used for every column from {@code -half} on.
+   * @param left        the first column of the tile.
+   * @param kernelRow   the integer row of a separable kernel, or null.
+   * @param channels    the padded arrays for the channels when a kernel row is given, or null.
+   * @param lanes       the three arrays to write the channels or the sums into.
+   */
+  private static void loadLanes(Raster source, int[] pixels, int row, int[] line,
+                                int[] columnTable, int left, int[] kernelRow,
+                                int[][] channels, int[][] lanes) {
+    int[] data = pixels;
+    int offset = row * source.getWidth();
+    if (pixels == null) {
+      source.readRow(row, line);
+      data = line;
+      offset = 0;
+    }
+    int[][] padded = kernelRow == null ? lanes : channels;
+    for (int p = 0; p < padded[0].length; p++) {
+      int column = columnTable[left + p];
+      int rgb = column >= 0 ? data[offset + column] : 0;
+      padded[0][p] = (rgb >> 16) & 0xFF;
+      padded[1][p] = (rgb >> 8) & 0xFF;
+      padded[2][p] = rgb & 0xFF;
+    }
+    if (kernelRow == null) {
+      return;
+    }
+    for (int c = 0; c < 3; c++) {
+      int[] sum = lanes[c];
+      int[] channel = padded[c];
+      Arrays.fill(sum, 0);
+      for (int l = 0; l < kernelRow.length; l++) {
+        int weight = kernelRow[l];
+        for (int j = 0; j < sum.length; j++) {
+          sum[j] += channel[j + l] * weight;
+        }
+      }
+    }
+  }
+
+  /**
+   * Filters the image row by row into the given image, with two passes if the kernel is
+   * separable. Kernels with integer weights run on the lanes backend when it is selected.
+   *
+   * @param source        the image to filter.
+   * @param kernel        the square kernel of odd size.
+   * @param filteredImage the image of the same size to write into.
+   * @param blocked       whether the image may be split into tiles, which needs the filtered
+   *                      image to be another image than the source.
+   * @return the filtered image.
+   */
+  private Raster filterRows(final Raster source, final CompiledKernel kernel,
+                            final Raster filteredImage, final boolean blocked) {
+    final boolean lanes = ComputeBackend.getSelected() == ComputeBackend.LANES
+            && kernel.getFixed() != null;
+    Parallelism.forEachBand(source.getHeight(), source.getWidth(), source.getHeight(),
+        new Parallelism.Band() {
+          @Override
+          public void run(int first, int last) {
+            if (lanes) {
+              filterLaneBand(source, kernel, filteredImage, first, last, blocked);
+            } else if (kernel.isSeparable()) {
+              filterSeparableBand(source, kernel.getColumn(), kernel.getRow(), filteredImage,
+                      first, last);
+            } else {
+              filterRowBand(source, kernel, filteredImage, first, last);
+            }
+          }
+        });
+    return filteredImage;
+  }
+
+  /**
+   * Filters a band of rows of the image into the given image. Every row of the band is read
+   * once, before any row below it is written, so with black edges and a single band the result
+   * can be written into the image itself. The columns away from the edges are computed without
+   * looking up the edge mode, and only the columns near the edges go through it.
+   *
+   * @param source        the image to filter.
+   * @param kernel        the square kernel of odd size.
+   * @param filteredImage the image of the same size to write into.
+   * @param first         the first row of the band.
+   * @param last          the row after the last row of the band.
+   */
+  private void filterRowBand(Raster source, CompiledKernel kernel, Raster filteredImage,
+                             int first, int last) {
+    int size = kernel.size();
+    int half = size / 2;
+    int width = source.getWidth();
+    int[][] fixed = kernel.getFixed();
+    double[][] weights = kernel.getWeights();
+    int[] rowTable = this.edgeMode.table(source.getHeight(), half);
+    int[] columnTable = this.edgeMode.table(width, half);
+    // rows[k] holds the row that the edge mode uses for row i - half + k
+    int[][] rows = new int[size][width];
+    int[] filteredRow = new int[width];
+    for (int k = 0; k < size; k++) {
+      if (rowTable[first + k] >= 0) {
+        source.readRow(rowTable[first + k], rows[k]);
+      }
+    }
+    for (int i = first; i < last; i++) {
+      int firstRow = 0;
+      while (rowTable[i + firstRow] < 0) {
+        firstRow++;
+      }
+      int lastRow = size;
+      while (rowTable[i + lastRow - 1] < 0) {
+        lastRow--;
+      }
+      for (int j = 0; j < width; j++) {
+        boolean interior = j >= half && j < width - half;
+        if (fixed != null) {
+          filteredRow[j] = interior ? interiorColor(rows, fixed, firstRow, lastRow, j - half)
+                  : borderColor(rows, fixed, firstRow, lastRow, columnTable, j);
+        } else {
+          filteredRow[j] = interior ? interiorColor(rows, weights, firstRow, lastRow, j - half)
+                  : borderColor(rows, weights, firstRow, lastRow, columnTable, j);
+        }
+      }
+      Parallelism.writeRow(filteredImage, i, filteredRow);
+      int[] oldest = rows[0];
+      System.arraycopy(rows, 1, rows, 0, size - 1);
+      rows[size - 1] = oldest;
+      if (i + 1 < last && rowTable[i + size] >= 0) {
+        source.readRow(rowTable[i + size], oldest);
+      }
+    }
+  }
+
+  /**
+   * Filters a planar image one channel at a time, so every pass reads and writes a single plane
+   * with unit stride. The pixels outside of the image are treated as the edge mode says.
+   *
+   * @param planar   the planar image to filter.
+   * @param kernel   the square kernel of odd size.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @return the filtered image in planar form.
+   */
+  private static Raster filterPlanes(PlanarRaster planar, CompiledKernel kernel,
+                                     EdgeMode edgeMode) {
+    if (kernel.isSeparable()) {
+      return filterPlanesSeparable(planar, kernel.getColumn(), kernel.getRow(), edgeMode);
+    }
+    final int width = planar.getWidth();
+    final int height = planar.getHeight();
+    final int size = width * height;
+    final int length = kernel.size();
+    final int[][] fixed = kernel.getFixed();
+    final double[][] weights = kernel.getWeights();
+    final int[] rowTable = edgeMode.table(height, length / 2);
+    final int[] columnTable = edgeMode.table(width, length / 2);
+    PlanarRaster filteredImage = new PlanarRaster(width, height);
+    final byte[] source = planar.getPlanes();
+    final byte[] target = filteredImage.getPlanes();
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        for (int plane = 0; plane < 3 * size; plane += size) {
+          for (int i = first; i < last; i++) {
+            for (int j = 0; j < width; j++) {
+              long fixedSum = 0;
+              double sum = 0.0;
+              for (int k = 0; k < length; k++) {
+                int row = rowTable[i + k];
+                if (row < 0) {
+                  continue;
+                }
+                int offset = plane + row * width;
+                for (int l = 0; l < length; l++) {
+                  int column = columnTable[j + l];
+                  if (column < 0) {
+                    continue;
+                  }
+                  if (fixed != null) {
+                    fixedSum = fixedSum + (source[offset + column] & 0xFF) * fixed[k][l];
+                  } else {
+                    sum = sum + (source[offset + column] & 0xFF) * weights[k][l];
+                  }
+                }
+              }
+              int value = fixed != null
+                      ? CompiledKernel.round(fixedSum, CompiledKernel.FRACTION_BITS)
+                      : (int) Math.round(sum);
+              target[plane + i * width + j] = (byte) ColorPixel.setValue(value);
+            }
+          }
+        }
+      }
+    });
+    return filteredImage;
+  }
+
+  /**
+   * Filters a planar image with a separable kernel one channel at a time. Every plane is first
+   * filtered along its rows into a buffer of sums with 16 fraction bits, and then along its
+   * columns.
+   *
+   * @param planar   the planar image to filter.
+   * @param column   the integer column of the kernel.
+   * @param row      the integer row of the kernel.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @return the filtered image in planar form.
+   */
+  private static Raster filterPlanesSeparable(PlanarRaster planar, final int[] column,
+                                              final int[] row, EdgeMode edgeMode) {
+    final int width = planar.getWidth();
+    final int height = planar.getHeight();
+    final int half = row.length / 2;
+    int size = width * height;
+    final int[] rowTable = edgeMode.table(height, half);
+    final int[] columnTable = edgeMode.table(width, half);
+    PlanarRaster filteredImage = new PlanarRaster(width, height);
+    final byte[] source = planar.getPlanes();
+    final byte[] target = filteredImage.getPlanes();
+    final int[] sums = new int[size];
+    for (int start = 0; start < 3 * size; start += size) {
+      final int plane = start;
+      // every band along the columns needs the sums of the rows of its neighbor bands
+      Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+        @Override
+        public void run(int first, int last) {
+          for (int i = first; i < last; i++) {
+            int offset = plane + i * width;
+            for (int j = 0; j < width; j++) {
+              boolean interior = j >= half && j < width - half;
+              int sum = 0;
+              for (int l = 0; l < row.length; l++) {
+                int index = interior ? j - half + l : columnTable[j + l];
+                if (index >= 0) {
+                  sum = sum + (source[offset + index] & 0xFF) * row[l];
+                }
+              }
+              sums[i * width + j] = sum;
+            }
+          }
+        }
+      });
+      Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+        @Override
+        public void run(int first, int last) {
+          for (int i = first; i < last; i++) {
+            for (int j = 0; j < width; j++) {
+              long sum = 0;
+              for (int k = 0; k < column.length; k++) {
+                int index = rowTable[i + k];
+                if (index >= 0) {
+                  sum = sum + (long) column[k] * sums[index * width + j];
+                }
+              }
+              target[plane + i * width + j] = (byte) ColorPixel.setValue(
+                      CompiledKernel.round(sum, 2 * CompiledKernel.FRACTION_BITS));
+            }
+          }
+        }
+      });
+    }
+    return filteredImage;
+  }
+
+  /**
+   * Filters an image with floating point channels. The sums are kept as they are, without
+   * rounding or clamping, so that the next operation works on the exact values. The pixels
+   * outside of the image are treated as the edge mode says.
+   *
+   * @param floats   the image to filter.
+   * @param kernel   the square kernel of odd size.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @return the filtered image with floating point channels.
+   */
+  private static Raster filterFloats(FloatRaster floats, final double[][] kernel,
+                                     EdgeMode edgeMode) {
+    final int width = floats.getWidth();
+    int height = floats.getHeight();
+    int half = kernel.length / 2;
+    final int[] rowTable = edgeMode.table(height, half);
+    final int[] columnTable = edgeMode.table(width, half);
+    FloatRaster filteredImage = new FloatRaster(width, height);
+    final float[] source = floats.getSamples();
+    final float[] target = filteredImage.getSamples();
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        for (int i = first; i < last; i++) {
+          for (int j = 0; j < width; j++) {
+            double sumRedValue = 0.0;
+            double sumGreenValue = 0.0;
+            double sumBlueValue = 0.0;
+            for (int k = 0; k < kernel.length; k++) {
+              int row = rowTable[i + k];
+              if (row < 0) {
+                continue;
+              }
+              for (int l = 0; l < kernel.length; l++) {
+                int column = columnTable[j + l];
+                if (column >= 0) {
+                  int offset = 3 * (row * width + column);
+                  sumRedValue = sumRedValue + source[offset] * kernel[k][l];
+                  sumGreenValue = sumGreenValue + source[offset + 1] * kernel[k][l];
+                  sumBlueValue = sumBlueValue + source[offset + 2] * kernel[k][l];
+                }
+              }
+            }
+            int offset = 3 * (i * width + j);
+            target[offset] = (float) sumRedValue;
+            target[offset + 1] = (float) sumGreenValue;
+            target[offset + 2] = (float) sumBlueValue;
+          }
+        }
+      }
+    });
+    return filteredImage;
+  }
+
+  /**
+   * Filters a tiled image one tile at a time. Every tile is computed from a window of the image
+   * that adds a halo of half the kernel size around the tile. A tile whose window is black
+   * stays black without being allocated. The pixels outside of the image are treated as black
+   * pixels. The bands are made of whole rows of tiles, so no two bands share a tile.
+   *
+   * @param tiled  the tiled image to filter.
+   * @param kernel the square kernel of odd size.
+   * @return the filtered image in tiled form.
+   */
+  private static Raster filterTiles(final TiledRaster tiled, final double[][] kernel) {
+    final int width = tiled.getWidth();
+    final int height = tiled.getHeight();
+    final int tileSize = tiled.getTileSize();
+    final int half = kernel.length / 2;
+    final TiledRaster filteredImage = new TiledRaster(width, height, tileSize);
+    Parallelism.forEachBand(tiled.getTilesDown(), width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[][] window = new int[tileSize + 2 * half][tileSize + 2 * half];
+        for (int tileRow = first; tileRow < last; tileRow++) {
+          int top = tileRow * tileSize;
+          int tileHeight = tiled.tileHeight(tileRow);
+          for (int tileColumn = 0; tileColumn < tiled.getTilesAcross(); tileColumn++) {
+            int left = tileColumn * tileSize;
+            int tileWidth = tiled.tileWidth(tileColumn);
+            if (tiled.isBlank(top - half, top + tileHeight - 1 + half, left - half,
+                    left + tileWidth - 1 + half)) {
+              continue;
+            }
+            int windowLeft = Math.max(0, left - half);
+            int windowRight = Math.min(width, left + tileWidth + half);
+            for (int k = 0; k < tileHeight + 2 * half; k++) {
+              int row = top - half + k;
+              if (row >= 0 && row < height) {
+                tiled.readRowSegment(row, windowLeft, windowRight - windowLeft, window[k],
+                        windowLeft - (left - half));
+              }
+            }
+            int[] target = filteredImage.tile(tileRow, tileColumn);
+            int[][] rows = new int[kernel.length][];
+            for (int i = 0; i < tileHeight; i++) {
+              System.arraycopy(window, i, rows, 0, kernel.length);
+              for (int j = 0; j < tileWidth; j++) {
+                target[i * tileWidth + j] = constructNewColor(rows, kernel, top + i - half,
+                        left + j - half, left - half, height, width);
+              }
+            }
+          }
+        }
+      }
+    });
+    return filteredImage;
+  }
+
+  /**
+   * Computes the filtered color of a pixel whose kernel lies inside of the image from left to
+   * right, so no column has to be checked.
+   *
+   * @param rows           the rows covered by the kernel.
+   * @param kernel         the square kernel.
+   * @param firstRow       the first kernel row to use.
+   * @param lastRow        the kernel row after the last one to use.
+   * @param startingColumn the column in the image of the first kernel column.
+   * @return the filtered packed color.
+   */
+  private static int interiorColor(int[][] rows, double[][] kernel, int firstRow, int lastRow,
+                                   int startingColumn) {
+    double sumRedValue = 0.0;
+    double sumGreenValue = 0.0;
+    double sumBlueValue = 0.0;
+    for (int i = firstRow; i < lastRow; i++) {
+      int[] row = rows[i];
+      double[] weights = kernel[i];
+      for (int j = 0; j < weights.length; j++) {
+        int rgb = row[startingColumn + j];
+        sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * weights[j];
+        sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * weights[j];
+        sumBlueValue = sumBlueValue + (rgb & 0xFF) * weights[j];
+      }
+    }
+    return ColorPixel.packRGB((int) Math.round(sumRedValue),
+            (int) Math.round(sumGreenValue), (int) Math.round(sumBlueValue));
+  }
+
+  /**
+   * Computes the filtered color of a pixel whose kernel reaches past the left or right edge of
+   * the image. Every column is looked up in the table of the edge mode, and the black ones are
+   * skipped.
+   *
+   * @param rows        the rows covered by the kernel.
+   * @param kernel      the square kernel.
+   * @param firstRow    the first kernel row to use.
+   * @param lastRow     the kernel row after the last one to use.
+   * @param columnTable the columns used for every column from {@code -half} on.
+   * @param column      the column of the pixel.
+   * @return the filtered packed color.
+   */
+  private static int borderColor(int[][] rows, double[][] kernel, int firstRow, int lastRow,
+                                 int[] columnTable, int column) {
+    double sumRedValue = 0.0;
+    double sumGreenValue = 0.0;
+    double sumBlueValue = 0.0;
+    for (int i = firstRow; i < lastRow; i++) {
+      for (int j = 0; j < kernel.length; j++) {
+        int source = columnTable[column + j];
+        if (source >= 0) {
+          int rgb = rows[i][source];
+          sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * kernel[i][j];
+          sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * kernel[i][j];
+          sumBlueValue = sumBlueValue + (rgb & 0xFF) * kernel[i][j];
+        }
+      }
+    }
+    return ColorPixel.packRGB((int) Math.round(sumRedValue),
+            (int) Math.round(sumGreenValue), (int) Math.round(sumBlueValue));
+  }
+
+  /**
+   * Computes the filtered color of a pixel whose kernel lies inside of the image from left to
+   * right with integer weights of 16 fraction bits.
+   *
+   * @param rows           the rows covered by the kernel.
+   * @param kernel         the square kernel of integer weights.
+   * @param firstRow       the first kernel row to use.
+   * @param lastRow        the kernel row after the last one to use.
+   * @param startingColumn the column in the image of the first kernel column.
+   * @return the filtered packed color.
+   */
+  private static int interiorColor(int[][] rows, int[][] kernel, int firstRow, int lastRow,
+                                   int startingColumn) {
+    int sumRedValue = 0;
+    int sumGreenValue = 0;
+    int sumBlueValue = 0;
+    for (int i = firstRow; i < lastRow; i++) {
+      int[] row = rows[i];
+      int[] weights = kernel[i];
+      for (int j = 0; j < weights.length; j++) {
+        int rgb = row[startingColumn + j];
+        sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * weights[j];
+        sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * weights[j];
+        sumBlueValue = sumBlueValue + (rgb & 0xFF) * weights[j];
+      }
+    }
+    return ColorPixel.packRGB(CompiledKernel.round(sumRedValue, CompiledKernel.FRACTION_BITS),
+            CompiledKernel.round(sumGreenValue, CompiledKernel.FRACTION_BITS),
+            CompiledKernel.round(sumBlueValue, CompiledKernel.FRACTION_BITS));
+  }
+
+  /**
+   * Computes the filtered color of a pixel whose kernel reaches past the left or right edge of
+   * the image with integer weights of 16 fraction bits.
+   *
+   * @param rows        the rows covered by the kernel.
+   * @param kernel      the square kernel of integer weights.
+   * @param firstRow    the first kernel row to use.
+   * @param lastRow     the kernel row after the last one to use.
+   * @param columnTable the columns used for every column from {@code -half} on.
+   * @param column      the column of the pixel.
+   * @return the filtered packed color.
+   */
+  private static int borderColor(int[][] rows, int[][] kernel, int firstRow, int lastRow,
+                                 int[] columnTable, int column) {
+    int sumRedValue = 0;
+    int sumGreenValue = 0;
+    int sumBlueValue = 0;
+    for (int i = firstRow; i < lastRow; i++) {
+      for (int j = 0; j < kernel.length; j++) {
+        int source = columnTable[column + j];
+        if (source >= 0) {
+          int rgb = rows[i][source];
+          sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * kernel[i][j];
+          sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * kernel[i][j];
+          sumBlueValue = sumBlueValue + (rgb & 0xFF) * kernel[i][j];
+        }
+      }
+    }
+    return ColorPixel.packRGB(CompiledKernel.round(sumRedValue, CompiledKernel.FRACTION_BITS),
+            CompiledKernel.round(sumGreenValue, CompiledKernel.FRACTION_BITS),
+            CompiledKernel.round(sumBlueValue, CompiledKernel.FRACTION_BITS));
+  }
+
+  /**
+   * Collects all the RGB values around the pixel to compute its updated RGB value after
+   * filtering. The taps that fall outside of the image are skipped, since a black pixel does not
+   * add anything to the sums.
+   *
+   * @param rows           the rows of the image covered by the kernel.
+   * @param kernel         the sequence of values in matrix form.
+   * @param startingRow    the row number in the image of the first kernel row.
+   * @param startingColumn the column number in the image of the first kernel column.
+   * @param firstColumn    the column number in the image of the first value in every row.
+   * @param height         the height of the image.
+   * @param width          the width of the image.
    * @return a new updated RGB value of the pixel after filtering.
    */
-  private ColorPixel constructNewColor(List<List<Pixel>> imageMatrix, List<List<Double>> kernel) {
-    List<List<Double>> updatedColors = new ArrayList<List<Double>>();
-    for (int i = 0; i < kernel.size(); i++) {
-      for (int j = 0; j < kernel.size(); j++) {
-        updatedColors.add(imageMatrix.get(i).get(j).calculateNewColor(kernel.get(i).get(j)));
+  private static int constructNewColor(int[][] rows, double[][] kernel, int startingRow,
+                                       int startingColumn, int firstColumn, int height,
+                                       int width) {
+    double sumRedValue = 0.0;
+    double sumGreenValue = 0.0;
+    double sumBlueValue = 0.0;
+    for (int i = 0; i < kernel.length; i++) {
+      if (startingRow + i < 0 || startingRow + i >= height) {
+        continue;
+      }
+      for (int j = 0; j < kernel.length; j++) {
+        int column = startingColumn + j;
+        if (column >= 0 && column < width) {
+          int rgb = rows[i][column - firstColumn];
+          sumRedValue = sumRedValue + ((rgb >> 16) & 0xFF) * kernel[i][j];
+          sumGreenValue = sumGreenValue + ((rgb >> 8) & 0xFF) * kernel[i][j];
+          sumBlueValue = sumBlueValue + (rgb & 0xFF) * kernel[i][j];
+        }
       }
     }
-    return ColorPixel.sumChannels(updatedColors);
+    return ColorPixel.packRGB((int) Math.round(sumRedValue),
+            (int) Math.round(sumGreenValue), (int) Math.round(sumBlueValue));
   }
 }
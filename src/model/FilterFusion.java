@@ -0,0 +1,461 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents consecutive linear filters run as few passes as possible. Filtering
+ * with one kernel and then another is the same as filtering once with the convolution of the
+ * two kernels, so consecutive filters are combined into one kernel and the image is swept once.
+ *
+ * <p>Running the filters one by one rounds and clamps the image between them, and the combined
+ * kernel does not. Filters are only combined when no image between them can be clamped, which
+ * holds when every filter but the last has weights that are not negative and sum to at most
+ * one, and when the rounding between them cannot move a channel by more than the tolerance.
+ * Each rounding moves a channel by at most one half, unless the filter before it has integer
+ * weights, and the filters after it multiply that by the sum of the absolute values of their
+ * combined kernel. The result is rounded once more, so any change before it may move a channel
+ * by a whole level, and so may the doubles of a combined kernel convolved through the fast
+ * Fourier transform or split into terms. The filters that cannot be combined start a new
+ * pass.</p>
+ *
+ * <p>The tolerance is one level unless it is set with {@link #setTolerance(double)}, and a
+ * tolerance of 0 only combines filters when that gives the same image.</p>
+ *
+ * <p>The pixels near the edges see the edges once per filter when the filters run one by one,
+ * so unless the edges wrap around, the strips along the edges are filtered one by one again.</p>
+ */
+public class FilterFusion implements ImageOperation {
+  /**
+   * The largest change of a channel of a pixel combining filters may cause unless it is set.
+   */
+  public static final double DEFAULT_TOLERANCE = 1.0;
+
+  private static double tolerance = DEFAULT_TOLERANCE;
+
+  private final Raster image;
+  private final List<double[][]> kernels;
+  private final EdgeMode edgeMode;
+  // the index of the first filter of every pass, and the number of filters at the end
+  private final List<Integer> passes;
+  // the largest change of a channel in levels of every pass
+  private final List<Double> errors;
+  // the change in levels adding the next filter to every pass would allow, or -1 if the image
+  // before it could be clamped
+  private final List<Double> refusals;
+
+  /**
+   * Constructs the operation that runs the given filters one after another on the image.
+   *
+   * @param image    the image to be filtered.
+   * @param kernels  the kernels of the filters in the order they run.
+   * @param edgeMode the way all filters treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null or there is no
+   *                                  kernel or one is not a square of odd size of finite
+   *                                  weights.
+   */
+  public FilterFusion(Raster image, List<List<List<Double>>> kernels, EdgeMode edgeMode)
+          throws IllegalArgumentException {
+    if (image == null || edgeMode == null || kernels == null || kernels.isEmpty()) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    this.image = image;
+    this.edgeMode = edgeMode;
+    this.kernels = new ArrayList<double[][]>();
+    for (List<List<Double>> kernel : kernels) {
+      CompiledKernel.validate(kernel);
+      this.kernels.add(toArray(kernel));
+    }
+    this.passes = new ArrayList<Integer>();
+    this.errors = new ArrayList<Double>();
+    this.refusals = new ArrayList<Double>();
+    double limit = getTolerance();
+    int first = 0;
+    while (first < this.kernels.size()) {
+      int last = first + 1;
+      double error = 0.0;
+      double refusal = 0.0;
+      while (last < this.kernels.size()) {
+        if (!isBounded(this.kernels.get(last - 1))) {
+          refusal = -1.0;
+          break;
+        }
+        double extended = levels(first, last + 1);
+        if (extended > limit) {
+          refusal = extended;
+          break;
+        }
+        error = extended;
+        last++;
+      }
+      this.passes.add(first);
+      this.errors.add(error);
+      this.refusals.add(refusal);
+      first = last;
+    }
+    this.passes.add(this.kernels.size());
+  }
+
+  /**
+   * Sets the largest change of a channel of a pixel combining filters may cause.
+   *
+   * @param levels the tolerance in levels of a channel, not negative.
+   * @throws IllegalArgumentException if the tolerance is negative or not a number.
+   */
+  public static synchronized void setTolerance(double levels) throws IllegalArgumentException {
+    if (!(levels >= 0)) {
+      throw new IllegalArgumentException("Tolerance should not be negative");
+    }
+    tolerance = levels;
+  }
+
+  /**
+   * Gets the largest change of a channel of a pixel combining filters may cause.
+   *
+   * @return the tolerance in levels of a channel.
+   */
+  public static synchronized double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Gets the number of passes over the image the filters take.
+   *
+   * @return the number of passes.
+   */
+  public int getPassCount() {
+    return this.passes.size() - 1;
+  }
+
+  /**
+   * Describes which filters are combined into one pass and how much that may change the image.
+   *
+   * @return the description of the passes.
+   */
+  public String describe() {
+    String filters = this.kernels.size() + (this.kernels.size() == 1 ? " filter" : " filters");
+    StringBuilder description = new StringBuilder();
+    if (this.kernels.size() > 1 && getPassCount() == this.kernels.size()) {
+      description.append("Left ").append(filters).append(" unfused.");
+    } else {
+      description.append("Fused ").append(filters).append(" into ").append(getPassCount())
+              .append(getPassCount() == 1 ? " pass." : " passes.");
+    }
+    for (int p = 0; p < getPassCount(); p++) {
+      int first = this.passes.get(p);
+      int last = this.passes.get(p + 1);
+      if (p > 0) {
+        double refusal = this.refusals.get(p - 1);
+        description.append(" Filter ").append(first + 1).append(" was not combined with filter ")
+                .append(first).append(", since ");
+        if (refusal < 0) {
+          description.append("the image between them could be clamped.");
+        } else {
+          long levels = Math.round(refusal);
+          description.append("that could change a channel by ").append(levels)
+                  .append(levels == 1 ? " level." : " levels.");
+        }
+      }
+      if (last - first == 1) {
+        description.append(" Filter ").append(first + 1).append(" ran on its own.");
+      } else {
+        int size = combine(first, last).length;
+        long levels = Math.round(this.errors.get(p));
+        description.append(" Filters ").append(first + 1).append(" to ").append(last)
+                .append(" became one ").append(size).append(" by ").append(size)
+                .append(" kernel, ");
+        if (levels == 0) {
+          description.append("the same as running them one by one.");
+        } else {
+          description.append("within ").append(levels).append(levels == 1 ? " level" : " levels")
+                  .append(" of running them one by one.");
+        }
+      }
+    }
+    return description.toString();
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    Raster current = this.image;
+    for (int p = 0; p < getPassCount(); p++) {
+      Raster next = runPass(current, this.passes.get(p), this.passes.get(p + 1));
+      if (current != this.image) {
+        current.release();
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null || target.getWidth() != image.getWidth()
+            || target.getHeight() != image.getHeight()) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    Raster result = applyRaster();
+    int[] row = new int[result.getWidth()];
+    for (int i = 0; i < result.getHeight(); i++) {
+      result.readRow(i, row);
+      target.writeRow(i, row);
+    }
+    result.release();
+  }
+
+  /**
+   * Runs the filters of one pass on the given image. A single filter runs as it is, and
+   * several run as their combined kernel, with the strips along the edges filtered one by one.
+   *
+   * @param source the image to filter.
+   * @param first  the index of the first filter of the pass.
+   * @param last   the index after the last filter of the pass.
+   * @return the filtered image.
+   */
+  private Raster runPass(Raster source, int first, int last) {
+    if (last - first == 1) {
+      return new Convolution(source, toList(this.kernels.get(first)), this.edgeMode)
+              .applyRaster();
+    }
+    int width = source.getWidth();
+    int height = source.getHeight();
+    // the pixels this close to an edge see it in a filter after the first one
+    int strip = 0;
+    int reach = this.kernels.get(first).length / 2;
+    for (int k = first + 1; k < last; k++) {
+      strip = strip + this.kernels.get(k).length / 2;
+    }
+    reach = reach + strip;
+    boolean repaired = this.edgeMode != EdgeMode.WRAP && strip > 0;
+    if (repaired && (width < 2 * (strip + reach) || height < 2 * (strip + reach))) {
+      return runOneByOne(source, first, last);
+    }
+    Raster result = new Convolution(source, toList(combine(first, last)), this.edgeMode)
+            .applyRaster();
+    if (repaired) {
+      int band = strip + reach;
+      copyRegion(runOneByOne(new RasterView(source, 0, 0, width, band), first, last),
+              result, 0, 0, 0, 0, width, strip);
+      copyRegion(runOneByOne(new RasterView(source, height - band, 0, width, band), first,
+              last), result, band - strip, 0, height - strip, 0, width, strip);
+      copyRegion(runOneByOne(new RasterView(source, 0, 0, band, height), first, last),
+              result, 0, 0, 0, 0, strip, height);
+      copyRegion(runOneByOne(new RasterView(source, 0, width - band, band, height), first,
+              last), result, 0, band - strip, 0, width - strip, strip, height);
+    }
+    return result;
+  }
+
+  /**
+   * Runs the given filters one by one on the given image.
+   *
+   * @param source the image to filter.
+   * @param first  the index of the first filter.
+   * @param last   the index after the last filter.
+   * @return the filtered image.
+   */
+  private Raster runOneByOne(Raster source, int first, int last) {
+    Raster current = source;
+    for (int k = first; k < last; k++) {
+      Raster next = new Convolution(current, toList(this.kernels.get(k)), this.edgeMode)
+              .applyRaster();
+      if (current != source) {
+        current.release();
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  /**
+   * Copies a region of one image into another and releases the image copied from.
+   *
+   * @param from       the image to copy from.
+   * @param to         the image to copy into.
+   * @param fromRow    the first row of the region in the image copied from.
+   * @param fromColumn the first column of the region in the image copied from.
+   * @param toRow      the first row of the region in the image copied into.
+   * @param toColumn   the first column of the region in the image copied into.
+   * @param width      the width of the region.
+   * @param height     the height of the region.
+   */
+  private static void copyRegion(Raster from, Raster to, int fromRow, int fromColumn, int toRow,
+                                 int toColumn, int width, int height) {
+    int[] source = new int[from.getWidth()];
+    int[] target = new int[to.getWidth()];
+    for (int i = 0; i < height; i++) {
+      from.readRow(fromRow + i, source);
+      to.readRow(toRow + i, target);
+      System.arraycopy(source, fromColumn, target, toColumn, width);
+      to.writeRow(toRow + i, target);
+    }
+    from.release();
+  }
+
+  /**
+   * Combines the given filters into the kernel of the same filter.
+   *
+   * @param first the index of the first filter.
+   * @param last  the index after the last filter.
+   * @return the combined kernel.
+   */
+  private double[][] combine(int first, int last) {
+    double[][] result = this.kernels.get(first);
+    for (int k = first + 1; k < last; k++) {
+      result = convolve(result, this.kernels.get(k));
+    }
+    return result;
+  }
+
+  /**
+   * Bounds how many levels a channel of a pixel can change when the given filters are
+   * combined. The sums of the combined kernel differ from the ones of the filters one by one by
+   * the rounding between them, and by the rounding of doubles if the combined kernel is not
+   * summed exactly, and the final rounding turns any difference into at most one more level.
+   *
+   * @param first the index of the first filter.
+   * @param last  the index after the last filter.
+   * @return the largest change of a channel in whole levels.
+   */
+  private double levels(int first, int last) {
+    double error = roundingError(first, last);
+    KernelPlan.Strategy strategy = KernelPlan.choose(CompiledKernel.compile(
+            toList(combine(first, last)))).getStrategy();
+    if (strategy == KernelPlan.Strategy.TRANSFORM || strategy == KernelPlan.Strategy.LOW_RANK) {
+      error = error + KernelPlan.TOLERANCE;
+    }
+    return Math.ceil(error);
+  }
+
+  /**
+   * Bounds how much a sum of a channel of a pixel can change when the given filters are
+   * combined, from the rounding after every filter but the last. A filter with integer weights
+   * gives integers, so nothing is rounded after it.
+   *
+   * @param first the index of the first filter.
+   * @param last  the index after the last filter.
+   * @return the largest change of a sum of a channel.
+   */
+  private double roundingError(int first, int last) {
+    double error = 0.0;
+    for (int k = first + 1; k < last; k++) {
+      if (!isInteger(this.kernels.get(k - 1))) {
+        error = error + 0.5 * absoluteSum(combine(k, last));
+      }
+    }
+    return error;
+  }
+
+  /**
+   * Determines whether every weight of a filter is an integer.
+   *
+   * @param kernel the kernel of the filter.
+   * @return whether the weights are integers.
+   */
+  private static boolean isInteger(double[][] kernel) {
+    for (double[] row : kernel) {
+      for (double weight : row) {
+        if (weight != Math.rint(weight)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether a filter keeps every channel between 0 and 255, so the image after it is
+   * never clamped.
+   *
+   * @param kernel the kernel of the filter.
+   * @return whether the weights are not negative and sum to at most one.
+   */
+  private static boolean isBounded(double[][] kernel) {
+    double sum = 0.0;
+    for (double[] row : kernel) {
+      for (double weight : row) {
+        if (weight < 0) {
+          return false;
+        }
+        sum = sum + weight;
+      }
+    }
+    return sum <= 1.0 + 1e-12;
+  }
+
+  /**
+   * Sums the absolute values of the weights of a kernel.
+   *
+   * @param kernel the kernel.
+   * @return the sum of the absolute values of the weights.
+   */
+  private static double absoluteSum(double[][] kernel) {
+    double sum = 0.0;
+    for (double[] row : kernel) {
+      for (double weight : row) {
+        sum = sum + Math.abs(weight);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Convolves two kernels into the kernel of filtering with the first and then the second.
+   *
+   * @param a the kernel of the first filter.
+   * @param b the kernel of the second filter.
+   * @return the combined kernel, as large as both together less one.
+   */
+  private static double[][] convolve(double[][] a, double[][] b) {
+    double[][] result = new double[a.length + b.length - 1][a.length + b.length - 1];
+    for (int p = 0; p < a.length; p++) {
+      for (int q = 0; q < a.length; q++) {
+        for (int r = 0; r < b.length; r++) {
+          for (int s = 0; s < b.length; s++) {
+            result[p + r][q + s] = result[p + r][q + s] + a[p][q] * b[r][s];
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Converts a kernel in matrix form into an array.
+   *
+   * @param kernel the kernel in matrix form.
+   * @return the kernel as an array.
+   */
+  private static double[][] toArray(List<List<Double>> kernel) {
+    double[][] result = new double[kernel.size()][kernel.size()];
+    for (int i = 0; i < kernel.size(); i++) {
+      for (int j = 0; j < kernel.size(); j++) {
+        result[i][j] = kernel.get(i).get(j);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Converts a kernel as an array into matrix form.
+   *
+   * @param kernel the kernel as an array.
+   * @return the kernel in matrix form.
+   */
+  private static List<List<Double>> toList(double[][] kernel) {
+    List<List<Double>> result = new ArrayList<List<Double>>();
+    for (double[] row : kernel) {
+      List<Double> list = new ArrayList<Double>();
+      for (double weight : row) {
+        list.add(weight);
+      }
+      result.add(list);
+    }
+    return result;
+  }
+}
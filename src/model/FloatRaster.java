@@ -0,0 +1,229 @@
+package model;
+
+/**
+ * This class represents an image whose channels are kept as floating point values, three per
+ * pixel, without rounding or clamping. Operations on such an image produce unrounded results,
+ * so a chain of operations quantizes only once, when the packed colors are read to save or
+ * display the image.
+ */
+public final class FloatRaster implements Raster {
+  private final int width;
+  private final int height;
+  private final float[] samples;
+
+  /**
+   * Constructs a black image of the given size.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive or the image
+   *                                  is too large to be stored in one array.
+   */
+  public FloatRaster(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if ((long) width * height * 3 > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    this.width = width;
+    this.height = height;
+    this.samples = new float[width * height * 3];
+  }
+
+  /**
+   * Constructs an image of the given size around an existing array of samples. The array is
+   * used as is, without copying.
+   *
+   * @param width   the width of the image.
+   * @param height  the height of the image.
+   * @param samples the red, green and blue values of every pixel, row after row.
+   */
+  private FloatRaster(int width, int height, float[] samples) {
+    this.width = width;
+    this.height = height;
+    this.samples = samples;
+  }
+
+  /**
+   * Produces the given image with floating point channels. If the image already has floating
+   * point channels, it is returned as is, otherwise its pixels are copied into a new image.
+   *
+   * @param other the image to convert.
+   * @return an image with floating point channels and the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static FloatRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof FloatRaster) {
+      return (FloatRaster) other;
+    }
+    FloatRaster result = new FloatRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the unrounded value of one channel of the pixel at the given position.
+   *
+   * @param row     the row number of the pixel.
+   * @param column  the column number of the pixel.
+   * @param channel the channel, 0 for red, 1 for green and 2 for blue.
+   * @return the value of the channel.
+   * @throws IndexOutOfBoundsException if the position or the channel does not exist.
+   */
+  public float getSample(int row, int column, int channel) {
+    return this.samples[this.index(row, column, channel)];
+  }
+
+  /**
+   * Sets the value of one channel of the pixel at the given position. The value is kept as is,
+   * even outside of the range 0 to 255.
+   *
+   * @param row     the row number of the pixel.
+   * @param column  the column number of the pixel.
+   * @param channel the channel, 0 for red, 1 for green and 2 for blue.
+   * @param value   the value of the channel.
+   * @throws IndexOutOfBoundsException if the position or the channel does not exist.
+   */
+  public void setSample(int row, int column, int channel, float value) {
+    this.samples[this.index(row, column, channel)] = value;
+  }
+
+  /**
+   * Gets the samples of this image, three per pixel, row after row.
+   *
+   * @return the array that holds the samples of this image.
+   */
+  float[] getSamples() {
+    return this.samples;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.FLOAT;
+  }
+
+  /**
+   * Gets the packed color of the pixel at the given position. Every channel is rounded and
+   * clamped to a range 0 to 255.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @return the color of the pixel as 0xRRGGBB.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  @Override
+  public int getRGB(int row, int column) {
+    return this.pack(this.index(row, column, 0));
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.unpack(this.index(row, column, 0), rgb);
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    int offset = this.index(row, 0, 0);
+    for (int j = 0; j < this.width; j++) {
+      dest[j] = this.pack(offset);
+      offset += 3;
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    int offset = this.index(row, 0, 0);
+    for (int j = 0; j < this.width; j++) {
+      this.unpack(offset, src[j]);
+      offset += 3;
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new FloatRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    return new FloatRaster(this.width, this.height, this.samples.clone());
+  }
+
+  @Override
+  public void release() {
+    // the array is released by the garbage collector
+  }
+
+  /**
+   * Rounds one channel value to a range 0 to 255.
+   *
+   * @param value the unrounded channel value.
+   * @return the rounded and clamped channel value.
+   */
+  static int quantize(float value) {
+    return ColorPixel.setValue(Math.round(value));
+  }
+
+  /**
+   * Rounds the three samples of one pixel into a packed color.
+   *
+   * @param offset the index of the red sample of the pixel.
+   * @return the packed color of the pixel.
+   */
+  private int pack(int offset) {
+    return (quantize(this.samples[offset]) << 16) | (quantize(this.samples[offset + 1]) << 8)
+            | quantize(this.samples[offset + 2]);
+  }
+
+  /**
+   * Stores a packed color into the three samples of one pixel.
+   *
+   * @param offset the index of the red sample of the pixel.
+   * @param rgb    the packed color.
+   */
+  private void unpack(int offset, int rgb) {
+    this.samples[offset] = (rgb >> 16) & 0xFF;
+    this.samples[offset + 1] = (rgb >> 8) & 0xFF;
+    this.samples[offset + 2] = rgb & 0xFF;
+  }
+
+  /**
+   * Computes the index of one sample.
+   *
+   * @param row     the row number of the pixel.
+   * @param column  the column number of the pixel.
+   * @param channel the channel of the sample.
+   * @return the index of the sample.
+   * @throws IndexOutOfBoundsException if the position or the channel does not exist.
+   */
+  private int index(int row, int column, int channel) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    if (channel < 0 || channel > 2) {
+      throw new IndexOutOfBoundsException("No channel " + channel);
+    }
+    return 3 * (row * this.width + column) + channel;
+  }
+}
@@ -0,0 +1,252 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This class represents one of the operations for filtering. It blurs the image with a Gaussian
+ * of any standard deviation through the recursive filter of Young and van Vliet. Every row is
+ * filtered forward and then backward by a recursion of third order, and then every column is,
+ * so a pixel costs the same few multiplications whatever the standard deviation is.
+ *
+ * <p>The recursion runs on doubles and starts a few standard deviations before the image, on
+ * the pixels past the edges the edge mode gives, so the edges are treated like in the other
+ * filters.</p>
+ */
+public class GaussianBlur implements ImageOperation {
+  /**
+   * The smallest standard deviation the recursive filter approximates well.
+   */
+  public static final double MIN_SIGMA = 0.5;
+
+  /**
+   * The largest standard deviation.
+   */
+  public static final double MAX_SIGMA = 1024.0;
+
+  // the number of standard deviations the recursion starts before the image
+  private static final double SETTLING_SIGMAS = 3.0;
+
+  private final Raster image;
+  private final double sigma;
+  private final EdgeMode edgeMode;
+  private final double scale;
+  private final double[] feedback;
+
+  /**
+   * Constructs a Gaussian blur with the given standard deviation, treating the pixels past the
+   * edges as black.
+   *
+   * @param image the image to be blurred.
+   * @param sigma the standard deviation of the Gaussian in pixels.
+   * @throws IllegalArgumentException if the image is null or the standard deviation is not
+   *                                  between {@link #MIN_SIGMA} and {@link #MAX_SIGMA}.
+   */
+  public GaussianBlur(Raster image, double sigma) throws IllegalArgumentException {
+    this(image, sigma, EdgeMode.ZERO);
+  }
+
+  /**
+   * Constructs a Gaussian blur with the given standard deviation, treating the pixels past the
+   * edges of the image as the given edge mode says.
+   *
+   * @param image    the image to be blurred.
+   * @param sigma    the standard deviation of the Gaussian in pixels.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null or the standard
+   *                                  deviation is not between {@link #MIN_SIGMA} and
+   *                                  {@link #MAX_SIGMA}.
+   */
+  public GaussianBlur(Raster image, double sigma, EdgeMode edgeMode)
+          throws IllegalArgumentException {
+    if (image == null || edgeMode == null || !(sigma >= MIN_SIGMA && sigma <= MAX_SIGMA)) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    this.image = image;
+    this.sigma = sigma;
+    this.edgeMode = edgeMode;
+    double q = sigma >= 2.5 ? 0.98711 * sigma - 0.96330
+            : 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+    double b0 = 1.57825 + 2.44413 * q + 1.4281 * q * q + 0.422205 * q * q * q;
+    double b1 = 2.44413 * q + 2.85619 * q * q + 1.26661 * q * q * q;
+    double b2 = -(1.4281 * q * q + 1.26661 * q * q * q);
+    double b3 = 0.422205 * q * q * q;
+    this.feedback = new double[]{b1 / b0, b2 / b0, b3 / b0};
+    this.scale = 1 - (b1 + b2 + b3) / b0;
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    Raster blurred = image.newRaster(image.getWidth(), image.getHeight());
+    blur(blurred);
+    return blurred;
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null || target.getWidth() != image.getWidth()
+            || target.getHeight() != image.getHeight()) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    blur(target);
+  }
+
+  /**
+   * Blurs the image into the given image. The channels are unpacked into one array per channel
+   * first, so the image may also be the one written into.
+   *
+   * @param target the image of the same size to write into.
+   */
+  private void blur(final Raster target) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final double[][] planes = new double[3][width * height];
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          image.readRow(i, line);
+          for (int j = 0; j < width; j++) {
+            planes[0][i * width + j] = (line[j] >> 16) & 0xFF;
+            planes[1][i * width + j] = (line[j] >> 8) & 0xFF;
+            planes[2][i * width + j] = line[j] & 0xFF;
+          }
+        }
+      }
+    });
+    final int border = (int) Math.ceil(SETTLING_SIGMAS * sigma) + 3;
+    final int[] rowTable = edgeMode.table(height, border);
+    final int[] columnTable = edgeMode.table(width, border);
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        double[] line = new double[width + 2 * border];
+        for (int c = 0; c < 3; c++) {
+          for (int i = first; i < last; i++) {
+            filterRow(planes[c], i * width, width, border, columnTable, line);
+          }
+        }
+      }
+    });
+    Parallelism.forEachBand(width, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        double[] columns = new double[(height + 2 * border) * (last - first)];
+        for (int c = 0; c < 3; c++) {
+          filterColumns(planes[c], width, height, border, first, last, rowTable, columns);
+        }
+      }
+    });
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          for (int j = 0; j < width; j++) {
+            line[j] = ColorPixel.packRGB((int) Math.round(planes[0][i * width + j]),
+                    (int) Math.round(planes[1][i * width + j]),
+                    (int) Math.round(planes[2][i * width + j]));
+          }
+          Parallelism.writeRow(target, i, line);
+        }
+      }
+    });
+  }
+
+  /**
+   * Filters one row of a channel forward and backward. The row is first copied with the
+   * pixels past its edges, so the recursion has settled when it reaches the image.
+   *
+   * @param channel     the channel to filter in place.
+   * @param offset      the index of the first pixel of the row.
+   * @param width       the number of pixels of a row.
+   * @param border      the number of pixels past each edge the recursion starts at.
+   * @param columnTable the columns used for every column from {@code -border} on.
+   * @param line        the array to copy the row with its borders into.
+   */
+  private void filterRow(double[] channel, int offset, int width, int border, int[] columnTable,
+                         double[] line) {
+    for (int k = 0; k < line.length; k++) {
+      line[k] = columnTable[k] < 0 ? 0.0 : channel[offset + columnTable[k]];
+    }
+    double a1 = feedback[0];
+    double a2 = feedback[1];
+    double a3 = feedback[2];
+    double w1 = line[0];
+    double w2 = w1;
+    double w3 = w1;
+    for (int k = 0; k < line.length; k++) {
+      double w = scale * line[k] + a1 * w1 + a2 * w2 + a3 * w3;
+      line[k] = w;
+      w3 = w2;
+      w2 = w1;
+      w1 = w;
+    }
+    w1 = line[line.length - 1];
+    w2 = w1;
+    w3 = w1;
+    for (int k = line.length - 1; k >= 0; k--) {
+      double w = scale * line[k] + a1 * w1 + a2 * w2 + a3 * w3;
+      line[k] = w;
+      w3 = w2;
+      w2 = w1;
+      w1 = w;
+    }
+    System.arraycopy(line, border, channel, offset, width);
+  }
+
+  /**
+   * Filters a band of columns of a channel forward and backward down the columns. The rows are
+   * read in order and all columns of the band are filtered together, so the image is swept
+   * row by row like in the other passes.
+   *
+   * @param channel  the channel to filter in place.
+   * @param width    the number of pixels of a row.
+   * @param height   the number of rows.
+   * @param border   the number of rows past each edge the recursion starts at.
+   * @param first    the first column of the band.
+   * @param last     the column after the last column of the band.
+   * @param rowTable the rows used for every row from {@code -border} on.
+   * @param columns  the array to keep the band of columns with their borders in.
+   */
+  private void filterColumns(double[] channel, int width, int height, int border, int first,
+                             int last, int[] rowTable, double[] columns) {
+    int count = last - first;
+    int rows = rowTable.length;
+    for (int k = 0; k < rows; k++) {
+      int row = rowTable[k];
+      for (int j = 0; j < count; j++) {
+        columns[k * count + j] = row < 0 ? 0.0 : channel[row * width + first + j];
+      }
+    }
+    double a1 = feedback[0];
+    double a2 = feedback[1];
+    double a3 = feedback[2];
+    for (int k = 0; k < rows; k++) {
+      int previous1 = Math.max(k - 1, 0) * count;
+      int previous2 = Math.max(k - 2, 0) * count;
+      int previous3 = Math.max(k - 3, 0) * count;
+      for (int j = 0; j < count; j++) {
+        columns[k * count + j] = scale * columns[k * count + j] + a1 * columns[previous1 + j]
+                + a2 * columns[previous2 + j] + a3 * columns[previous3 + j];
+      }
+    }
+    for (int k = rows - 1; k >= 0; k--) {
+      int next1 = Math.min(k + 1, rows - 1) * count;
+      int next2 = Math.min(k + 2, rows - 1) * count;
+      int next3 = Math.min(k + 3, rows - 1) * count;
+      for (int j = 0; j < count; j++) {
+        columns[k * count + j] = scale * columns[k * count + j] + a1 * columns[next1 + j]
+                + a2 * columns[next2 + j] + a3 * columns[next3 + j];
+      }
+    }
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(columns, (i + border) * count, channel, i * width + first, count);
+    }
+  }
+}
@@ -13,4 +13,11 @@ public interface ImageModel {
    * @return a created image as a sequence of pixels.
    */
   List<List<Pixel>> createImageProgram();
+
+  /**
+   * Creates an image of different pattern programmatically.
+   *
+   * @return a created image as a raster.
+   */
+  Raster createImageRaster();
 }
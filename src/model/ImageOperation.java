@@ -15,4 +15,21 @@ public interface ImageOperation {
    * @return a new image (which is represented as a 2D list of pixels) with operations applied.
    */
   List<List<Pixel>> apply();
+
+  /**
+   * Returns a new image which some image operation was applied on, without converting it to
+   * the sequence of pixel form.
+   *
+   * @return a new image (which is represented as a raster) with operations applied.
+   */
+  Raster applyRaster();
+
+  /**
+   * Applies the image operation and writes the result into the given image instead of a new
+   * one, for example a view of a region of a larger image.
+   *
+   * @param target the image to write into, of the same size as the image of the operation.
+   * @throws IllegalArgumentException if the target is null or has a different size.
+   */
+  void applyInto(Raster target) throws IllegalArgumentException;
 }
@@ -1,20 +1,26 @@
 package model;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.util.Scanner;
+import java.io.Reader;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.io.File;
 import java.io.IOException;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.BufferedWriter;
-import java.util.ArrayList;
 
+import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class contains utility methods to create an image (import) from PPM, JPEG, and PNG files,
@@ -35,7 +41,21 @@ public class ImageUtil {
           throws IllegalArgumentException {
     checkForArgumentException((filename == null || filename.length() < 1),
             "Invalid filename");
-    ColorTransformation.validate(image); // to check that image is valid
+    writePPMRaster(RasterAdapter.toRaster(image), filename); // to check that image is valid
+  }
+
+  /**
+   * Writes a ppm file with given image raster and a file directory/name.
+   *
+   * @param image    the raster that represents an image.
+   * @param filename a file name of the ppm file
+   * @throws IllegalArgumentException if an image is null or a filename is null or empty
+   */
+  public static void writePPMRaster(Raster image, String filename)
+          throws IllegalArgumentException {
+    checkForArgumentException((filename == null || filename.length() < 1),
+            "Invalid filename");
+    checkForArgumentException(image == null, "Invalid image");
     File file = new File(filename);
     try {
       FileOutputStream res = new FileOutputStream(file);
@@ -43,18 +63,19 @@ public class ImageUtil {
       BufferedWriter writer = new BufferedWriter(w);
       writer.write("P3");
       writer.newLine();
-      int height = image.size();
-      int width = image.get(0).size();
+      int height = image.getHeight();
+      int width = image.getWidth();
       writer.write(width + " " + height);
       writer.newLine();
       writer.write("255");
       writer.newLine();
+      int[] row = new int[width];
       for (int i = 0; i < height; i++) {
+        image.readRow(i, row);
         for (int j = 0; j < width; j++) {
-          ColorPixel p = image.get(i).get(j).getColor();
-          writer.write(p.getRedChannel() + " ");
-          writer.write(p.getGreenChannel() + " ");
-          writer.write(p.getBlueChannel() + " ");
+          writer.write(((row[j] >> 16) & 0xFF) + " ");
+          writer.write(((row[j] >> 8) & 0xFF) + " ");
+          writer.write((row[j] & 0xFF) + " ");
           if (j < width - 1) {
             writer.write(" ");
           }
@@ -78,48 +99,136 @@ public class ImageUtil {
    */
   public static List<List<Pixel>> createImage(String fileName)
           throws IllegalArgumentException {
+    return new RasterAdapter(createRaster(fileName));
+  }
+
+  /**
+   * Returns a raster from the given PPM file.
+   *
+   * @param fileName the given PPM file's name.
+   * @return a raster that represents an image.
+   * @throws IllegalArgumentException if the given file is an invalid ppm file or filename is null
+   *                                  or empty or width or height is invalid or the file cannot
+   *                                  be found or max color value or color values are invalid.
+   */
+  public static Raster createRaster(String fileName)
+          throws IllegalArgumentException {
+    return createRaster(fileName, RasterLayout.INTERLEAVED);
+  }
+
+  /**
+   * Returns a raster in the given layout from the given PPM file. The file is read token by
+   * token straight into the raster, so no other copy of the image is kept in memory.
+   *
+   * @param fileName the given PPM file's name.
+   * @param layout   the layout of the raster to create.
+   * @return a raster that represents an image.
+   * @throws IllegalArgumentException if the given file is an invalid ppm file or filename is null
+   *                                  or empty or width or height is invalid or the file cannot
+   *                                  be found or max color value or color values are invalid
+   *                                  or the layout is null.
+   */
+  public static Raster createRaster(String fileName, RasterLayout layout)
+          throws IllegalArgumentException {
     checkForArgumentException((fileName == null || fileName.length() < 1),
             "Invalid filename");
-    Scanner sc;
+    checkForArgumentException(layout == null, "Invalid layout");
+    Reader reader;
     try {
-      sc = new Scanner(new FileInputStream(fileName));
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
     } catch (FileNotFoundException e) {
       throw new IllegalArgumentException("File " + fileName + " not found!");
     }
-    StringBuilder builder = new StringBuilder();
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
+    Raster image = null;
+    try {
+      checkForArgumentException(!nextToken(reader).equals("P3"),
+              "Invalid PPM file: plain RAW file should begin with P3");
+      int width = nextInt(reader);
+      int height = nextInt(reader);
+      checkForArgumentException((width <= 0 || height <= 0),
+              "Width and height should be positive");
+      int maxValue = nextInt(reader);
+      checkForArgumentException((maxValue != 255), "The maximum value should be 255.");
+      image = layout.create(width, height);
+      int[] row = new int[width];
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          int r = nextInt(reader);
+          int g = nextInt(reader);
+          int b = nextInt(reader);
+          if (r > maxValue || g > maxValue || b > maxValue) {
+            throw new IllegalArgumentException("The rgb value should be less or equal"
+                    + "than the max value provided in ppm file.");
+          }
+          row[j] = ColorPixel.packRGB(r, g, b);
+        }
+        image.writeRow(i, row);
+      }
+      return image;
+    } catch (IllegalArgumentException e) {
+      if (image != null) {
+        image.release();
+      }
+      throw e;
+    } catch (IOException e) {
+      if (image != null) {
+        image.release();
+      }
+      throw new IllegalArgumentException("Cannot read file " + fileName);
+    } finally {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // nothing was written, so there is nothing to lose
       }
     }
-    sc = new Scanner(builder.toString());
-    String token;
-    token = sc.next();
-    checkForArgumentException(!token.equals("P3"),
-            "Invalid PPM file: plain RAW file should begin with P3");
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    checkForArgumentException((width <= 0 || height <= 0), "Width and height should be positive");
-    int maxValue = sc.nextInt();
-    checkForArgumentException((maxValue != 255), "The maximum value should be 255.");
-    List<List<Pixel>> image = new ArrayList<List<Pixel>>();
-    for (int i = 0; i < height; i++) {
-      List<Pixel> row = new ArrayList<Pixel>();
-      for (int j = 0; j < width; j++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        if (r > maxValue || g > maxValue || b > maxValue) {
-          throw new IllegalArgumentException("The rgb value should be less or equal"
-                  + "than the max value provided in ppm file.");
+  }
+
+  /**
+   * Reads the next token of a PPM file. Tokens are separated by white space, and everything
+   * from a '#' at the start of a token to the end of the line is a comment.
+   *
+   * @param reader the reader of the file.
+   * @return the next token.
+   * @throws IOException              if reading fails.
+   * @throws IllegalArgumentException if the file has no more tokens.
+   */
+  private static String nextToken(Reader reader) throws IOException, IllegalArgumentException {
+    StringBuilder token = new StringBuilder();
+    int c = reader.read();
+    while (c != -1) {
+      if (c == '#' && token.length() == 0) {
+        while (c != -1 && c != '\n' && c != '\r') {
+          c = reader.read();
+        }
+      } else if (Character.isWhitespace(c)) {
+        if (token.length() > 0) {
+          return token.toString();
         }
-        Pixel pixel = new Pixel(new PositionPixel(i, j), new ColorPixel(r, g, b));
-        row.add(pixel);
+      } else {
+        token.append((char) c);
       }
-      image.add(row);
+      c = reader.read();
+    }
+    checkForArgumentException(token.length() == 0, "Invalid PPM file: unexpected end of file");
+    return token.toString();
+  }
+
+  /**
+   * Reads the next integer of a PPM file.
+   *
+   * @param reader the reader of the file.
+   * @return the next integer.
+   * @throws IOException              if reading fails.
+   * @throws IllegalArgumentException if the next token is not an integer.
+   */
+  private static int nextInt(Reader reader) throws IOException, IllegalArgumentException {
+    String token = nextToken(reader);
+    try {
+      return Integer.parseInt(token);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid PPM file: " + token + " is not an integer");
     }
-    return image;
   }
 
   /**
@@ -146,22 +255,80 @@ public class ImageUtil {
    */
   public static List<List<Pixel>> importImage(String fileName) throws IOException,
           IllegalArgumentException {
+    return new RasterAdapter(importRaster(fileName));
+  }
+
+  /**
+   * Imports an image as a raster from the given filename (for png and jpeg).
+   *
+   * @param fileName the name of the file to take image from
+   * @return an image as a raster
+   * @throws IOException              if reading fails
+   * @throws IllegalArgumentException if a filename is illegal, if read image is null
+   */
+  public static Raster importRaster(String fileName) throws IOException,
+          IllegalArgumentException {
+    return importRaster(fileName, RasterLayout.INTERLEAVED);
+  }
+
+  /**
+   * Imports an image as a raster in the given layout from the given filename (for png and jpeg).
+   * Images with red, green and blue channels are decoded straight into the raster, so no other
+   * copy of the image is kept in memory. Other images are decoded first and then copied.
+   *
+   * @param fileName the name of the file to take image from
+   * @param layout   the layout of the raster to create
+   * @return an image as a raster
+   * @throws IOException              if reading fails
+   * @throws IllegalArgumentException if a filename is illegal, if read image is null, if the
+   *                                  layout is null
+   */
+  public static Raster importRaster(String fileName, RasterLayout layout) throws IOException,
+          IllegalArgumentException {
     checkForArgumentException((fileName == null || fileName.length() < 1),
             "Invalid filename");
-    BufferedImage img = ImageIO.read(new File(fileName));
+    checkForArgumentException(layout == null, "Invalid layout");
+    File file = new File(fileName);
+    if (!file.canRead()) {
+      throw new IIOException("Can't read input file!");
+    }
+    ImageInputStream stream = ImageIO.createImageInputStream(file);
+    checkForArgumentException((stream == null), "Invalid file - cannot be read");
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+      checkForArgumentException((!readers.hasNext()), "Invalid file - cannot be read");
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type != null && type.getNumBands() == 3
+                && type.getColorModel().getColorSpace().isCS_sRGB()) {
+          Raster result = layout.create(reader.getWidth(0), reader.getHeight(0));
+          ImageReadParam param = reader.getDefaultReadParam();
+          param.setDestination(RasterDataBuffer.wrap(result));
+          try {
+            reader.read(0, param);
+            return result;
+          } catch (IOException | RuntimeException e) {
+            result.release();
+            throw e;
+          }
+        }
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      stream.close();
+    }
+    BufferedImage img = ImageIO.read(file);
     checkForArgumentException((img == null),
             "Invalid file - cannot be read");
-    List<List<Pixel>> result = new ArrayList<List<Pixel>>();
+    int width = img.getWidth();
+    Raster result = layout.create(width, img.getHeight());
+    int[] row = new int[width];
     for (int r = 0; r < img.getHeight(); r++) {
-      List<Pixel> row = new ArrayList<Pixel>();
-      for (int c = 0; c < img.getWidth(); c++) {
-        Color color = new Color(img.getRGB(c, r));
-        ColorPixel colorForPixel =
-                new ColorPixel(color.getRed(), color.getGreen(), color.getBlue());
-        Pixel pixel = new Pixel(new PositionPixel(r, c), colorForPixel);
-        row.add(pixel);
-      }
-      result.add(row);
+      img.getRGB(0, r, width, 1, row, 0, width);
+      result.writeRow(r, row);
     }
     return result;
   }
@@ -181,10 +348,29 @@ public class ImageUtil {
             "Invalid format");
     checkForArgumentException((filename == null || filename.length() < 1),
             "Invalid filename");
+    exportRaster(RasterAdapter.toRaster(image), filename, format);
+  }
+
+  /**
+   * Exports an image raster to a new file of a given format.
+   *
+   * @param image    an image to save and export
+   * @param filename a name of a file where to export to
+   * @param format   a format of an image (png or jpeg)
+   * @throws IOException              if an error occurs with output stream or writing an image
+   * @throws IllegalArgumentException if any argument supplied is invalid
+   */
+  public static void exportRaster(Raster image, String filename, String format)
+          throws IOException, IllegalArgumentException {
+    checkForArgumentException((format == null || format.length() < 3),
+            "Invalid format");
+    checkForArgumentException((filename == null || filename.length() < 1),
+            "Invalid filename");
     checkForArgumentException((!(format.equals("PNG") || format.equals("png")
                     || format.equals("jpeg") || format.equals("JPEG"))),
             "Invalid image format");
-    BufferedImage img = ImageUtil.produceImage(image);
+    checkForArgumentException(image == null, "Invalid image");
+    BufferedImage img = RasterDataBuffer.wrap(image);
     OutputStream output = new FileOutputStream(filename);
     ImageIO.write(img, format, output);
     output.close();
@@ -198,19 +384,26 @@ public class ImageUtil {
    */
   public static BufferedImage produceImage(List<List<Pixel>> image)
           throws IllegalArgumentException {
-    ColorTransformation.validate(image);
-    int width = image.get(0).size();
-    int height = image.size();
+    return produceImageFromRaster(RasterAdapter.toRaster(image));
+  }
+
+  /**
+   * Produces a buffered image with provided layer's image raster.
+   * @param image the image of provided layer as a raster.
+   * @return the buffered image of layer image.
+   * @throws IllegalArgumentException if the provided layer image is null.
+   */
+  public static BufferedImage produceImageFromRaster(Raster image)
+          throws IllegalArgumentException {
+    checkForArgumentException(image == null, "Invalid image");
+    int width = image.getWidth();
+    int height = image.getHeight();
     BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
     for (int r = 0; r < height; r++) {
-      for (int c = 0; c < width; c++) {
-        Pixel pixel = image.get(r).get(c);
-        java.awt.Color color = new Color(pixel.getColor().getRedChannel(),
-                pixel.getColor().getGreenChannel(), pixel.getColor().getBlueChannel());
-        img.setRGB(c, r, color.getRGB());
-      }
+      image.readRow(r, row);
+      img.setRGB(0, r, width, 1, row, 0, width);
     }
     return img;
   }
 }
-
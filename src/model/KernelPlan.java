@@ -0,0 +1,300 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class represents the way the filters convolve an image with a kernel, chosen from the
+ * estimated number of multiplications per channel of a pixel. A kernel with exact integer
+ * weights is always summed exactly, in two passes if it is the outer product of a column and a
+ * row and directly otherwise. Any other kernel is summed directly, convolved through the fast
+ * Fourier transform when it is at least {@link FftConvolution#getThreshold()} large, or split
+ * by its singular value decomposition into a sum of a few columns times rows, each filtered in
+ * two passes.
+ *
+ * <p>The decomposition keeps the fewest terms whose sum differs from the kernel by so little
+ * that no channel of a pixel can move by more than {@link #TOLERANCE}, so the image is the one
+ * of the full kernel up to the rounding of doubles.</p>
+ */
+final class KernelPlan {
+  /**
+   * The largest change of a channel of a pixel the terms left out of a decomposition may cause.
+   */
+  static final double TOLERANCE = 1e-6;
+
+  // a multiplication of the transform was measured to take about twice the time of a direct one
+  private static final double TRANSFORM_WEIGHT = 2.0;
+
+  // the most sweeps of rotations before the decomposition is taken as it is
+  private static final int MAX_SWEEPS = 60;
+
+  /**
+   * This enum represents the ways to convolve an image with a kernel.
+   */
+  enum Strategy {
+    DIRECT("direct"), SEPARABLE("separable"), LOW_RANK("low-rank"), TRANSFORM("fft");
+
+    private final String name;
+
+    /**
+     * Constructs a strategy with the name used for it in the reports.
+     *
+     * @param name the name of the strategy.
+     */
+    Strategy(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Gets the name of this strategy as it is used in the reports.
+     *
+     * @return the name of this strategy.
+     */
+    String getName() {
+      return this.name;
+    }
+  }
+
+  private final Strategy strategy;
+  private final double cost;
+  private final int size;
+  private final double[][] columns;
+  private final double[][] rows;
+
+  /**
+   * Constructs a plan from its chosen parts.
+   *
+   * @param strategy the chosen strategy.
+   * @param cost     the estimated multiplications per channel of a pixel.
+   * @param size     the number of rows and columns of the kernel.
+   * @param columns  the columns of the terms of a low-rank plan, or null.
+   * @param rows     the rows of the terms of a low-rank plan, or null.
+   */
+  private KernelPlan(Strategy strategy, double cost, int size, double[][] columns,
+                     double[][] rows) {
+    this.strategy = strategy;
+    this.cost = cost;
+    this.size = size;
+    this.columns = columns;
+    this.rows = rows;
+  }
+
+  /**
+   * Chooses the cheapest way to convolve with the given kernel.
+   *
+   * @param kernel the prepared kernel.
+   * @return the chosen plan.
+   */
+  static KernelPlan choose(CompiledKernel kernel) {
+    int size = kernel.size();
+    KernelPlan best = direct(kernel);
+    // integer weights are summed exactly, which neither the doubles of the transform nor the
+    // terms of a decomposition do
+    if (kernel.isSeparable() || kernel.getFixed() != null) {
+      return best;
+    }
+    if (size >= FftConvolution.getThreshold()) {
+      double transform = transformCost(size);
+      if (transform < best.cost) {
+        best = new KernelPlan(Strategy.TRANSFORM, transform, size, null, null);
+      }
+    }
+    if (size > 1) {
+      double[][][] terms = decompose(kernel.getWeights());
+      if (terms != null && 2.0 * size * terms[0].length < best.cost) {
+        best = new KernelPlan(Strategy.LOW_RANK, 2.0 * size * terms[0].length, size,
+                terms[0], terms[1]);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Makes the plan that sums the given kernel directly, or in two passes if it is separable.
+   *
+   * @param kernel the prepared kernel.
+   * @return the direct plan.
+   */
+  static KernelPlan direct(CompiledKernel kernel) {
+    int size = kernel.size();
+    if (kernel.isSeparable()) {
+      return new KernelPlan(Strategy.SEPARABLE, 2.0 * size, size, null, null);
+    }
+    return new KernelPlan(Strategy.DIRECT, (double) size * size, size, null, null);
+  }
+
+  /**
+   * Gets the chosen strategy.
+   *
+   * @return the strategy of this plan.
+   */
+  Strategy getStrategy() {
+    return this.strategy;
+  }
+
+  /**
+   * Gets the columns of the terms of a low-rank plan, each already scaled by its singular
+   * value.
+   *
+   * @return the columns of the terms, or null if this plan is not low-rank.
+   */
+  double[][] getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Gets the rows of the terms of a low-rank plan.
+   *
+   * @return the rows of the terms, or null if this plan is not low-rank.
+   */
+  double[][] getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Describes the chosen strategy and its estimated cost.
+   *
+   * @return the description of this plan.
+   */
+  String describe() {
+    StringBuilder description = new StringBuilder("Strategy: " + this.strategy.getName());
+    if (this.strategy == Strategy.LOW_RANK) {
+      description.append(" with ").append(this.columns.length).append(" separable term")
+              .append(this.columns.length == 1 ? "" : "s");
+    } else if (this.strategy == Strategy.TRANSFORM) {
+      description.append(" with tiles of ").append(FftConvolution.transformSize(this.size));
+    }
+    description.append(", about ").append(Math.round(this.cost))
+            .append(" multiplications per channel of a pixel");
+    if (this.strategy != Strategy.DIRECT) {
+      description.append(" instead of ").append(this.size * this.size);
+    }
+    return description.append(".").toString();
+  }
+
+  /**
+   * Estimates the multiplications per channel of a pixel of the transform, with four
+   * transforms of every tile for the three channels and the products with the kernel.
+   *
+   * @param size the number of rows and columns of the kernel.
+   * @return the estimated cost of the transform.
+   */
+  private static double transformCost(int size) {
+    int transformSize = FftConvolution.transformSize(size);
+    double area = (double) transformSize * transformSize;
+    double kept = transformSize - size + 1;
+    double multiplications = 4 * 4 * area * Integer.numberOfTrailingZeros(transformSize)
+            + 2 * 4 * area;
+    return TRANSFORM_WEIGHT * multiplications / (3 * kept * kept);
+  }
+
+  /**
+   * Splits the kernel by its singular value decomposition into the fewest columns times rows
+   * whose sum is within {@link #TOLERANCE} of it. The decomposition is computed by one-sided
+   * Jacobi rotations, which are accurate for the small matrices kernels are.
+   *
+   * @param kernel the square kernel.
+   * @return the columns and the rows of the terms, or null if the kernel is zero.
+   */
+  private static double[][][] decompose(double[][] kernel) {
+    int size = kernel.length;
+    double[][] u = new double[size][];
+    for (int i = 0; i < size; i++) {
+      u[i] = kernel[i].clone();
+    }
+    double[][] v = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      v[i][i] = 1.0;
+    }
+    for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+      boolean rotated = false;
+      for (int p = 0; p < size - 1; p++) {
+        for (int q = p + 1; q < size; q++) {
+          double alpha = 0.0;
+          double beta = 0.0;
+          double gamma = 0.0;
+          for (int i = 0; i < size; i++) {
+            alpha = alpha + u[i][p] * u[i][p];
+            beta = beta + u[i][q] * u[i][q];
+            gamma = gamma + u[i][p] * u[i][q];
+          }
+          if (Math.abs(gamma) <= 1e-15 * Math.sqrt(alpha * beta)) {
+            continue;
+          }
+          rotated = true;
+          double zeta = (beta - alpha) / (2 * gamma);
+          double t = (zeta >= 0 ? 1.0 : -1.0) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+          double c = 1 / Math.sqrt(1 + t * t);
+          double s = c * t;
+          rotate(u, p, q, c, s);
+          rotate(v, p, q, c, s);
+        }
+      }
+      if (!rotated) {
+        break;
+      }
+    }
+    // the columns of u are now the left singular vectors times the singular values
+    Integer[] order = new Integer[size];
+    final double[] norms = new double[size];
+    for (int j = 0; j < size; j++) {
+      order[j] = j;
+      for (int i = 0; i < size; i++) {
+        norms[j] = norms[j] + u[i][j] * u[i][j];
+      }
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Double.compare(norms[b], norms[a]);
+      }
+    });
+    double[][] residual = new double[size][];
+    for (int i = 0; i < size; i++) {
+      residual[i] = kernel[i].clone();
+    }
+    for (int rank = 1; rank <= size; rank++) {
+      int term = order[rank - 1];
+      if (norms[term] == 0.0) {
+        return null;
+      }
+      double error = 0.0;
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          residual[i][j] = residual[i][j] - u[i][term] * v[j][term];
+          error = error + Math.abs(residual[i][j]);
+        }
+      }
+      if (error * 255 <= TOLERANCE) {
+        double[][] columns = new double[rank][size];
+        double[][] rows = new double[rank][size];
+        for (int k = 0; k < rank; k++) {
+          for (int i = 0; i < size; i++) {
+            columns[k][i] = u[i][order[k]];
+            rows[k][i] = v[i][order[k]];
+          }
+        }
+        return new double[][][]{columns, rows};
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Rotates two columns of a matrix by the given cosine and sine.
+   *
+   * @param matrix the matrix to rotate.
+   * @param p      the first column.
+   * @param q      the second column.
+   * @param c      the cosine of the rotation.
+   * @param s      the sine of the rotation.
+   */
+  private static void rotate(double[][] matrix, int p, int q, double c, double s) {
+    for (int i = 0; i < matrix.length; i++) {
+      double first = matrix[i][p];
+      double second = matrix[i][q];
+      matrix[i][p] = c * first - s * second;
+      matrix[i][q] = s * first + c * second;
+    }
+  }
+}
@@ -9,7 +9,11 @@ import java.util.List;
  * image in the program like Photoshop, where it is based on layers of images.
  */
 public class Layer {
-  private List<List<Pixel>> image;
+  private CopyOnWriteRaster image;
+  private RasterLayout layout;
+  // the layout the image of this layer could not be converted into, if any
+  private RasterLayout unreachable;
+  private boolean scratch;
   private boolean isVisible;
   private final String name;
 
@@ -23,7 +27,9 @@ public class Layer {
     if (name == null) {
       throw new IllegalArgumentException("Invalid name for a layer");
     }
-    this.image = new ArrayList<List<Pixel>>();
+    this.image = null;
+    this.layout = RasterLayout.INTERLEAVED;
+    this.scratch = false;
     this.isVisible = true;
     this.name = name;
   }
@@ -41,9 +47,9 @@ public class Layer {
     }
     try {
       if (format.equals("ppm")) {
-        ImageUtil.writePPM(image, fileName);
+        ImageUtil.writePPMRaster(image, fileName);
       } else {
-        ImageUtil.exportImage(image, fileName, format);
+        ImageUtil.exportRaster(image, fileName, format);
       }
     } catch (IOException e) {
       throw new IllegalStateException("Transmits fails.");
@@ -64,11 +70,20 @@ public class Layer {
       throw new IllegalArgumentException("Invalid null arguments");
     }
     try {
+      Raster loaded;
       if (format.equals("ppm")) {
-        this.image = ImageUtil.createImage(fileName);
+        loaded = ImageUtil.createRaster(fileName, this.layout);
       } else {
-        this.image = ImageUtil.importImage(fileName);
+        loaded = ImageUtil.importRaster(fileName, this.layout);
       }
+      if (this.layout == RasterLayout.INTERLEAVED) {
+        Raster compact = RasterCompactor.compact(loaded);
+        if (compact != loaded) {
+          loaded.release();
+          loaded = compact;
+        }
+      }
+      this.replaceImage(loaded);
     } catch (IOException e) {
       throw new IllegalStateException("Transmits fails.");
     }
@@ -81,8 +96,57 @@ public class Layer {
    * @throws IllegalArgumentException if the provided image is invalid.
    */
   public void setLayerImageToAnotherImage(List<List<Pixel>> image) throws IllegalArgumentException {
-    ColorTransformation.validate(image); // check the image
-    this.image = image;
+    Raster raster = RasterAdapter.toRaster(image); // check the image
+    if (image instanceof RasterAdapter) {
+      // the given list keeps reading its own snapshot
+      raster = raster.copy();
+    }
+    this.replaceImage(raster);
+  }
+
+  /**
+   * Sets this layer's image to the provided raster. The layer takes over the raster and
+   * releases it when the image of the layer is replaced or released.
+   *
+   * @param image the provided image as a raster.
+   * @throws IllegalArgumentException if the provided image is null.
+   */
+  public void setLayerRaster(Raster image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Invalid image");
+    }
+    this.replaceImage(image);
+  }
+
+  /**
+   * Releases the image of this layer right away, so the layer does not have an image anymore.
+   */
+  public void releaseImage() {
+    this.replaceImage(null);
+  }
+
+  /**
+   * Replaces the image of this layer and releases the previous image. The layer keeps the new
+   * image as a snapshot, so it can hand out further snapshots without copying any pixels.
+   *
+   * @param newImage the new image of this layer, or null.
+   */
+  private void replaceImage(Raster newImage) {
+    Raster previous = this.image;
+    this.image = newImage == null ? null : CopyOnWriteRaster.share(newImage);
+    this.unreachable = null;
+    if (previous != null && previous != newImage) {
+      previous.release();
+    }
+  }
+
+  /**
+   * Determines whether this layer has an image.
+   *
+   * @return whether an image was set to this layer.
+   */
+  public boolean hasImage() {
+    return this.image != null;
   }
 
   /**
@@ -95,26 +159,113 @@ public class Layer {
   }
 
   /**
-   * Determines the image of this layer.
+   * Determines the image of this layer. An image on the heap is shared with the layer, so no
+   * pixels are copied, and it is never changed since the layer only replaces its image. An
+   * image outside of the heap is copied onto the heap, since it is freed when the layer
+   * replaces it. Either way the image holds no reference to the layer's image, so nothing has
+   * to be released.
    *
    * @return the image of this layer in sequence of pixel form.
    */
   public List<List<Pixel>> layerImage() {
-    List<List<Pixel>> imageLayer = new ArrayList<List<Pixel>>();
-    for (int i = 0; i < this.image.size(); i++) {
-      List<Pixel> row = new ArrayList<Pixel>();
-      for (int j = 0; j < this.image.get(i).size(); j++) {
-        Pixel current = this.image.get(i).get(j);
-        ColorPixel currentColor = current.getColor();
-        PositionPixel pos = new PositionPixel(i, j);
-        ColorPixel color = new ColorPixel(currentColor.getRedChannel(),
-                currentColor.getGreenChannel(), currentColor.getBlueChannel());
-        Pixel pixelNew = new Pixel(pos, color);
-        row.add(pixelNew);
+    if (this.image == null) {
+      return new ArrayList<List<Pixel>>();
+    }
+    Raster snapshot = this.layerRaster();
+    try {
+      Raster stored = CopyOnWriteRaster.unwrap(snapshot);
+      if (stored instanceof OffHeapRaster || stored instanceof MappedRaster) {
+        return new RasterAdapter(RasterLayout.INTERLEAVED.convert(stored));
+      }
+      return new RasterAdapter(stored);
+    } finally {
+      snapshot.release();
+    }
+  }
+
+  /**
+   * Determines the image of this layer as a raster. The raster is a copy-on-write snapshot, so
+   * taking it does not copy any pixels, and changing it copies only the changed rows and never
+   * changes the layer.
+   *
+   * @return a snapshot of the image of this layer, or null if the layer does not have an image.
+   *         The snapshot should be released when it is not needed anymore.
+   */
+  public Raster layerRaster() {
+    if (this.image == null) {
+      return null;
+    }
+    RasterLayout current = this.scratchLayout();
+    RasterLayout stored = this.image.getLayout();
+    if (stored != current && current != this.unreachable
+            && (this.scratch || current.isCompact() || !stored.isCompact())) {
+      Raster converted = current.convert(this.image);
+      this.replaceImage(converted);
+      if (converted.getLayout() != current) {
+        // an image with too many colors for a palette, for example, is not tried again
+        this.unreachable = current;
       }
-      imageLayer.add(row);
     }
-    return imageLayer;
+    return this.image.copy();
+  }
+
+  /**
+   * Sets the layout in which this layer keeps its image. The image is not converted right away,
+   * but the next time it is needed by an operation.
+   *
+   * @param layout the layout for the image of this layer.
+   * @throws IllegalArgumentException if the layout is null.
+   */
+  public void setLayout(RasterLayout layout) throws IllegalArgumentException {
+    if (layout == null) {
+      throw new IllegalArgumentException("Invalid layout");
+    }
+    this.layout = layout;
+  }
+
+  /**
+   * Gets the layout in which this layer keeps its image.
+   *
+   * @return the layout of this layer.
+   */
+  public RasterLayout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Sets whether this layer keeps its image in a scratch file instead of in its own layout. An
+   * image is moved into a scratch file right away, and back into the layout of this layer the
+   * next time it is needed by an operation. A layer with a compact layout keeps its image
+   * compact instead.
+   *
+   * @param scratch whether this layer should keep its image in a scratch file.
+   * @throws IllegalStateException if the scratch file cannot be created.
+   */
+  public void setScratch(boolean scratch) throws IllegalStateException {
+    this.scratch = scratch;
+    if (scratch && this.image != null && this.scratchLayout() == RasterLayout.MAPPED
+            && this.image.getLayout() != RasterLayout.MAPPED) {
+      this.replaceImage(RasterLayout.MAPPED.convert(this.image));
+    }
+  }
+
+  /**
+   * Gets the layout the image of this layer is kept in. A layer kept in a scratch file keeps its
+   * image there, unless the layout of the layer is a compact one, which is smaller still.
+   *
+   * @return the layout for the image of this layer.
+   */
+  private RasterLayout scratchLayout() {
+    return this.scratch && !this.layout.isCompact() ? RasterLayout.MAPPED : this.layout;
+  }
+
+  /**
+   * Determines whether this layer keeps its image in a scratch file.
+   *
+   * @return whether this layer is kept in a scratch file.
+   */
+  public boolean isScratch() {
+    return this.scratch;
   }
 
   /**
@@ -153,4 +304,4 @@ public class Layer {
     return this.name;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This interface represents a filter that is a convolution with one kernel. Consecutive linear
+ * filters compose into one kernel, so they can be run as one filter.
+ */
+public interface LinearFilter {
+  /**
+   * Gets the kernel of this filter.
+   *
+   * @return a copy of the square kernel of odd size in matrix form.
+   */
+  List<List<Double>> getKernel();
+
+  /**
+   * Gets the way this filter treats the pixels past the edges of the image.
+   *
+   * @return the edge mode of this filter.
+   */
+  EdgeMode getEdgeMode();
+}
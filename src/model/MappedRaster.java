@@ -0,0 +1,281 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class represents an image stored in a temporary scratch file that is mapped into memory,
+ * three bytes per pixel. The operating system decides which parts of the image stay in memory,
+ * so images that are not used often do not take space on the heap.
+ *
+ * <p>The scratch file is deleted when the image is released, or when the program exits if the
+ * image was never released. Any access to a released image throws an
+ * {@code IllegalStateException}. Every access holds a read lock while it touches the mapping,
+ * and releasing takes the write lock, so the mapping is only removed once the accesses under
+ * way on other threads are done.</p>
+ */
+public final class MappedRaster implements Raster {
+  private static final long CHUNK_BYTES = 1L << 30;
+
+  private final int width;
+  private final int height;
+  private final int rowsPerChunk;
+  private final Path file;
+  private volatile MappedByteBuffer[] chunks;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs a black image of the given size in a new scratch file.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   * @throws IllegalStateException    if the scratch file cannot be created.
+   */
+  public MappedRaster(int width, int height)
+          throws IllegalArgumentException, IllegalStateException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if (3L * width > CHUNK_BYTES) {
+      throw new IllegalArgumentException("Image is too wide");
+    }
+    this.width = width;
+    this.height = height;
+    this.rowsPerChunk = (int) Math.min(height, CHUNK_BYTES / (3L * width));
+    int count = (height + this.rowsPerChunk - 1) / this.rowsPerChunk;
+    MappedByteBuffer[] buffers = new MappedByteBuffer[count];
+    Path scratch = null;
+    try {
+      scratch = Files.createTempFile("layer", ".raster");
+      scratch.toFile().deleteOnExit();
+      try (FileChannel channel = FileChannel.open(scratch, StandardOpenOption.READ,
+              StandardOpenOption.WRITE)) {
+        for (int i = 0; i < count; i++) {
+          int rows = Math.min(this.rowsPerChunk, height - i * this.rowsPerChunk);
+          buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                  3L * width * this.rowsPerChunk * i, 3L * width * rows);
+        }
+      }
+    } catch (IOException e) {
+      for (MappedByteBuffer buffer : buffers) {
+        if (buffer != null) {
+          OffHeapRaster.free(buffer);
+        }
+      }
+      if (scratch != null) {
+        scratch.toFile().delete();
+      }
+      throw new IllegalStateException("Cannot create scratch file");
+    }
+    this.file = scratch;
+    this.chunks = buffers;
+  }
+
+  /**
+   * Produces the given image in a scratch file. If the image is already stored in a scratch
+   * file, it is returned as is, otherwise its pixels are copied into a new image.
+   *
+   * @param other the image to convert.
+   * @return a mapped image with the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   * @throws IllegalStateException    if the scratch file cannot be created.
+   */
+  public static MappedRaster of(Raster other)
+          throws IllegalArgumentException, IllegalStateException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof MappedRaster) {
+      return (MappedRaster) other;
+    }
+    MappedRaster result = new MappedRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the scratch file of this image.
+   *
+   * @return the scratch file of this image.
+   */
+  public File getFile() {
+    return this.file.toFile();
+  }
+
+  /**
+   * Determines whether this image was released and its scratch file deleted.
+   *
+   * @return whether this image was released.
+   */
+  public boolean isReleased() {
+    return this.chunks == null;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.MAPPED;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    this.lock.readLock().lock();
+    try {
+      if (column < 0 || column >= this.width) {
+        throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+      }
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * ((row % this.rowsPerChunk) * this.width + column);
+      return ((chunk.get(offset) & 0xFF) << 16) | ((chunk.get(offset + 1) & 0xFF) << 8)
+              | (chunk.get(offset + 2) & 0xFF);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.lock.readLock().lock();
+    try {
+      if (column < 0 || column >= this.width) {
+        throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+      }
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * ((row % this.rowsPerChunk) * this.width + column);
+      chunk.put(offset, (byte) (rgb >> 16));
+      chunk.put(offset + 1, (byte) (rgb >> 8));
+      chunk.put(offset + 2, (byte) rgb);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.lock.readLock().lock();
+    try {
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * (row % this.rowsPerChunk) * this.width;
+      for (int j = 0; j < this.width; j++) {
+        dest[j] = ((chunk.get(offset) & 0xFF) << 16) | ((chunk.get(offset + 1) & 0xFF) << 8)
+                | (chunk.get(offset + 2) & 0xFF);
+        offset += 3;
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.lock.readLock().lock();
+    try {
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * (row % this.rowsPerChunk) * this.width;
+      for (int j = 0; j < this.width; j++) {
+        chunk.put(offset, (byte) (src[j] >> 16));
+        chunk.put(offset + 1, (byte) (src[j] >> 8));
+        chunk.put(offset + 2, (byte) src[j]);
+        offset += 3;
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new MappedRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    MappedRaster result = new MappedRaster(this.width, this.height);
+    this.lock.readLock().lock();
+    try {
+      MappedByteBuffer[] source = this.chunks();
+      for (int i = 0; i < source.length; i++) {
+        ByteBuffer target = result.chunks()[i].duplicate();
+        target.put(source[i].duplicate());
+      }
+      return result;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Unmaps this image and deletes its scratch file right away. Releasing an image more than
+   * once does nothing.
+   */
+  @Override
+  public void release() {
+    MappedByteBuffer[] buffers;
+    // the write lock waits for the reads and writes under way, so none of them touches the
+    // memory after it is freed
+    this.lock.writeLock().lock();
+    try {
+      buffers = this.chunks;
+      this.chunks = null;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+    if (buffers == null) {
+      return;
+    }
+    for (MappedByteBuffer buffer : buffers) {
+      OffHeapRaster.free(buffer);
+    }
+    this.file.toFile().delete();
+  }
+
+  /**
+   * Gets the buffers of this image.
+   *
+   * @return the buffers of this image.
+   * @throws IllegalStateException if this image was released.
+   */
+  private MappedByteBuffer[] chunks() {
+    MappedByteBuffer[] buffers = this.chunks;
+    if (buffers == null) {
+      throw new IllegalStateException("Image has been released");
+    }
+    return buffers;
+  }
+
+  /**
+   * Gets the buffer that holds the given row.
+   *
+   * @param row the row number.
+   * @return the buffer that holds the row.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   * @throws IllegalStateException     if this image was released.
+   */
+  private ByteBuffer chunk(int row) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    return this.chunks()[row / this.rowsPerChunk];
+  }
+}
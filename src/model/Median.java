@@ -0,0 +1,253 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents one of the operations for filtering. It replaces every channel of a
+ * pixel with the median of that channel over the square around the pixel, which removes
+ * isolated specks like salt and pepper noise and keeps the edges sharp.
+ *
+ * <p>The medians are found with the histograms of Perreault and Hebert. Every column keeps the
+ * histogram of its pixels in the square, which moves down one row at a time, and the histogram
+ * of the square is the sum of the histograms of its columns, which moves along the row one
+ * column at a time. Each histogram has 16 coarse buckets of 16 values, and only the bucket of
+ * the median is brought up to date, so a pixel costs the same whatever the radius is.</p>
+ */
+public class Median implements ImageOperation {
+  /**
+   * The largest radius of the square.
+   */
+  public static final int MAX_RADIUS = 1 << 12;
+
+  private final Raster image;
+  private final int radius;
+  private final EdgeMode edgeMode;
+
+  /**
+   * Constructs a median operation with a square of the given radius, treating the pixels past
+   * the edges as black.
+   *
+   * @param image  the image to be filtered.
+   * @param radius the number of pixels on each side of a pixel in its square.
+   * @throws IllegalArgumentException if the image is null or the radius is not between 1 and
+   *                                  {@link #MAX_RADIUS}.
+   */
+  public Median(Raster image, int radius) throws IllegalArgumentException {
+    this(image, radius, EdgeMode.ZERO);
+  }
+
+  /**
+   * Constructs a median operation with a square of the given radius, treating the pixels past
+   * the edges of the image as the given edge mode says.
+   *
+   * @param image    the image to be filtered.
+   * @param radius   the number of pixels on each side of a pixel in its square.
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the image or the edge mode is null or the radius is not
+   *                                  between 1 and {@link #MAX_RADIUS}.
+   */
+  public Median(Raster image, int radius, EdgeMode edgeMode) throws IllegalArgumentException {
+    if (image == null || edgeMode == null || radius < 1 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    this.image = image;
+    this.radius = radius;
+    this.edgeMode = edgeMode;
+  }
+
+  @Override
+  public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
+    Raster filtered = image.newRaster(image.getWidth(), image.getHeight());
+    filter(filtered);
+    return filtered;
+  }
+
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null || target.getWidth() != image.getWidth()
+            || target.getHeight() != image.getHeight()) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    filter(target);
+  }
+
+  /**
+   * Filters the image into the given image. The channels are unpacked into one array per
+   * channel first, so the image may also be the one written into.
+   *
+   * @param target the image of the same size to write into.
+   */
+  private void filter(final Raster target) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[][] planes = new int[3][width * height];
+    final int[][] medians = new int[3][width * height];
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          image.readRow(i, line);
+          for (int j = 0; j < width; j++) {
+            planes[0][i * width + j] = (line[j] >> 16) & 0xFF;
+            planes[1][i * width + j] = (line[j] >> 8) & 0xFF;
+            planes[2][i * width + j] = line[j] & 0xFF;
+          }
+        }
+      }
+    });
+    final int[] rowTable = edgeMode.table(height, radius);
+    final int[] columnTable = edgeMode.table(width, radius);
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int columns = columnTable.length;
+        int[] fine = new int[columns * 256];
+        int[] coarse = new int[columns * 16];
+        for (int c = 0; c < 3; c++) {
+          filterBand(planes[c], medians[c], width, first, last, rowTable, columnTable, fine,
+                  coarse);
+        }
+      }
+    });
+    Parallelism.forEachBand(height, width, height, new Parallelism.Band() {
+      @Override
+      public void run(int first, int last) {
+        int[] line = new int[width];
+        for (int i = first; i < last; i++) {
+          for (int j = 0; j < width; j++) {
+            line[j] = ColorPixel.packRGB(medians[0][i * width + j], medians[1][i * width + j],
+                    medians[2][i * width + j]);
+          }
+          Parallelism.writeRow(target, i, line);
+        }
+      }
+    });
+  }
+
+  /**
+   * Finds the medians of a band of rows of a channel. The histograms of the columns start with
+   * the square of the first row of the band and move down one row after every row.
+   *
+   * @param source      the channel to read.
+   * @param destination the channel to write.
+   * @param width       the number of pixels of a row.
+   * @param first       the first row of the band.
+   * @param last        the row after the last row of the band.
+   * @param rowTable    the rows used for every row from {@code -radius} on.
+   * @param columnTable the columns used for every column from {@code -radius} on.
+   * @param fine        the 256 counts of every column, cleared here.
+   * @param coarse      the 16 counts of the buckets of every column, cleared here.
+   */
+  private void filterBand(int[] source, int[] destination, int width, int first, int last,
+                          int[] rowTable, int[] columnTable, int[] fine, int[] coarse) {
+    int size = 2 * radius + 1;
+    Arrays.fill(fine, 0);
+    Arrays.fill(coarse, 0);
+    for (int k = 0; k < size; k++) {
+      countRow(source, width, rowTable[first + k], columnTable, fine, coarse, 1);
+    }
+    for (int i = first; i < last; i++) {
+      medianRow(destination, i * width, width, fine, coarse);
+      if (i + 1 < last) {
+        countRow(source, width, rowTable[i + size], columnTable, fine, coarse, 1);
+        countRow(source, width, rowTable[i], columnTable, fine, coarse, -1);
+      }
+    }
+  }
+
+  /**
+   * Adds a row to the histograms of the columns, or takes it away.
+   *
+   * @param source      the channel to read.
+   * @param width       the number of pixels of a row.
+   * @param row         the row to count, or -1 for a black row.
+   * @param columnTable the columns used for every column from {@code -radius} on.
+   * @param fine        the 256 counts of every column.
+   * @param coarse      the 16 counts of the buckets of every column.
+   * @param change      1 to add the row, or -1 to take it away.
+   */
+  private static void countRow(int[] source, int width, int row, int[] columnTable, int[] fine,
+                               int[] coarse, int change) {
+    int offset = row * width;
+    for (int k = 0; k < columnTable.length; k++) {
+      int column = columnTable[k];
+      int value = row < 0 || column < 0 ? 0 : source[offset + column];
+      fine[k * 256 + value] += change;
+      coarse[k * 16 + (value >> 4)] += change;
+    }
+  }
+
+  /**
+   * Finds the medians of one row from the histograms of its columns. The coarse histogram of
+   * the square moves along the row with every column, and a bucket of the fine histogram is
+   * only moved to the column when the median falls into it.
+   *
+   * @param destination the channel to write.
+   * @param offset      the index of the first pixel of the row.
+   * @param width       the number of pixels of a row.
+   * @param fine        the 256 counts of every column.
+   * @param coarse      the 16 counts of the buckets of every column.
+   */
+  private void medianRow(int[] destination, int offset, int width, int[] fine, int[] coarse) {
+    int size = 2 * radius + 1;
+    int rank = size * size / 2;
+    int[] squareCoarse = new int[16];
+    int[] squareFine = new int[256];
+    // the column each bucket of the fine histogram of the square was last moved to
+    int[] moved = new int[16];
+    Arrays.fill(moved, -1);
+    for (int k = 0; k < size; k++) {
+      for (int b = 0; b < 16; b++) {
+        squareCoarse[b] += coarse[k * 16 + b];
+      }
+    }
+    for (int j = 0; j < width; j++) {
+      if (j > 0) {
+        int entering = (j + size - 1) * 16;
+        int leaving = (j - 1) * 16;
+        for (int b = 0; b < 16; b++) {
+          squareCoarse[b] += coarse[entering + b] - coarse[leaving + b];
+        }
+      }
+      int count = 0;
+      int bucket = 0;
+      while (count + squareCoarse[bucket] <= rank) {
+        count = count + squareCoarse[bucket];
+        bucket++;
+      }
+      int base = bucket * 16;
+      if (moved[bucket] < 0 || j - moved[bucket] >= size) {
+        for (int v = 0; v < 16; v++) {
+          squareFine[base + v] = 0;
+        }
+        for (int k = j; k < j + size; k++) {
+          for (int v = 0; v < 16; v++) {
+            squareFine[base + v] += fine[k * 256 + base + v];
+          }
+        }
+      } else {
+        for (int p = moved[bucket]; p < j; p++) {
+          int entering = (p + size) * 256 + base;
+          int leaving = p * 256 + base;
+          for (int v = 0; v < 16; v++) {
+            squareFine[base + v] += fine[entering + v] - fine[leaving + v];
+          }
+        }
+      }
+      moved[bucket] = j;
+      int value = base;
+      while (count + squareFine[value] <= rank) {
+        count = count + squareFine[value];
+        value++;
+      }
+      destination[offset + j] = value;
+    }
+  }
+}
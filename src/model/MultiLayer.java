@@ -9,12 +9,14 @@ import java.util.List;
  */
 public class MultiLayer {
   private List<Layer> layers;
+  private ScratchPolicy scratchPolicy;
 
   /**
    * Constructs the multilayer by initializing an empty list of layers.
    */
   public MultiLayer() {
     this.layers = new ArrayList<Layer>();
+    this.scratchPolicy = ScratchPolicy.NONE;
   }
 
   /**
@@ -117,4 +119,40 @@ public class MultiLayer {
     }
     this.layers.add(l);
   }
+
+  /**
+   * Sets the policy that decides which layers keep their images in scratch files. The policy
+   * takes effect the next time it is applied.
+   *
+   * @param policy the scratch policy.
+   * @throws IllegalArgumentException if the policy is null.
+   */
+  public void setScratchPolicy(ScratchPolicy policy) throws IllegalArgumentException {
+    if (policy == null) {
+      throw new IllegalArgumentException("Scratch policy is null");
+    }
+    this.scratchPolicy = policy;
+  }
+
+  /**
+   * Gets the policy that decides which layers keep their images in scratch files.
+   *
+   * @return the scratch policy.
+   */
+  public ScratchPolicy getScratchPolicy() {
+    return this.scratchPolicy;
+  }
+
+  /**
+   * Moves the images of the layers chosen by the scratch policy into scratch files, and lets the
+   * other layers move their images back into their own layouts.
+   *
+   * @throws IllegalStateException if a scratch file cannot be created.
+   */
+  public void applyScratchPolicy() throws IllegalStateException {
+    Layer topMost = this.isAllInvisibleLayer() ? null : this.getTopMostLayer();
+    for (Layer layer : this.layers) {
+      layer.setScratch(this.scratchPolicy.selects(layer, layer == topMost));
+    }
+  }
 }
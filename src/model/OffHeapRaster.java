@@ -0,0 +1,308 @@
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class represents an image stored outside of the Java heap, three bytes per pixel. The
+ * pixels are kept in direct buffers of at most one gigabyte each, a band of whole rows per
+ * buffer, so the image can be larger than the heap and larger than a single buffer.
+ *
+ * <p>The memory is released right away when {@link #release()} is called, either directly or
+ * by closing the {@code RasterArena} the image was allocated in. Any access to a released image
+ * throws an {@code IllegalStateException}. Every access holds a read lock while it touches the
+ * memory, and releasing takes the write lock, so the memory is only freed once the accesses
+ * under way on other threads are done.</p>
+ */
+public final class OffHeapRaster implements Raster {
+  private static final long CHUNK_BYTES = 1L << 30;
+  private static final Method INVOKE_CLEANER;
+  private static final Object UNSAFE;
+
+  static {
+    Method invokeCleaner = null;
+    Object unsafe = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // the memory is then released by the garbage collector instead
+      invokeCleaner = null;
+      unsafe = null;
+    }
+    INVOKE_CLEANER = invokeCleaner;
+    UNSAFE = unsafe;
+  }
+
+  private final int width;
+  private final int height;
+  private final int rowsPerChunk;
+  private final RasterArena arena;
+  private volatile ByteBuffer[] chunks;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs a black image of the given size outside of the heap. The image is not owned by
+   * any arena and lives until it is released.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  public OffHeapRaster(int width, int height) throws IllegalArgumentException {
+    this(width, height, null);
+  }
+
+  /**
+   * Constructs a black image of the given size outside of the heap, owned by the given arena.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @param arena  the arena that owns the image, or null.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  OffHeapRaster(int width, int height, RasterArena arena) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if (3L * width > CHUNK_BYTES) {
+      throw new IllegalArgumentException("Image is too wide");
+    }
+    this.width = width;
+    this.height = height;
+    this.rowsPerChunk = (int) Math.min(height, CHUNK_BYTES / (3L * width));
+    this.arena = arena;
+    int count = (height + this.rowsPerChunk - 1) / this.rowsPerChunk;
+    ByteBuffer[] buffers = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      int rows = Math.min(this.rowsPerChunk, height - i * this.rowsPerChunk);
+      buffers[i] = ByteBuffer.allocateDirect(3 * width * rows);
+    }
+    this.chunks = buffers;
+  }
+
+  /**
+   * Produces the given image outside of the heap. If the image is already stored outside of
+   * the heap, it is returned as is, otherwise its pixels are copied into a new image.
+   *
+   * @param other the image to convert.
+   * @return an off-heap image with the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static OffHeapRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof OffHeapRaster) {
+      return (OffHeapRaster) other;
+    }
+    OffHeapRaster result = new OffHeapRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Determines whether the memory of this image was released.
+   *
+   * @return whether this image was released.
+   */
+  public boolean isReleased() {
+    return this.chunks == null;
+  }
+
+  /**
+   * Gets the number of bytes this image holds outside of the heap.
+   *
+   * @return the number of bytes of this image, or 0 if it was released.
+   */
+  public long getByteSize() {
+    return this.isReleased() ? 0 : 3L * this.width * this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.OFF_HEAP;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    this.lock.readLock().lock();
+    try {
+      if (column < 0 || column >= this.width) {
+        throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+      }
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * ((row % this.rowsPerChunk) * this.width + column);
+      return ((chunk.get(offset) & 0xFF) << 16) | ((chunk.get(offset + 1) & 0xFF) << 8)
+              | (chunk.get(offset + 2) & 0xFF);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.lock.readLock().lock();
+    try {
+      if (column < 0 || column >= this.width) {
+        throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+      }
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * ((row % this.rowsPerChunk) * this.width + column);
+      chunk.put(offset, (byte) (rgb >> 16));
+      chunk.put(offset + 1, (byte) (rgb >> 8));
+      chunk.put(offset + 2, (byte) rgb);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.lock.readLock().lock();
+    try {
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * (row % this.rowsPerChunk) * this.width;
+      for (int j = 0; j < this.width; j++) {
+        dest[j] = ((chunk.get(offset) & 0xFF) << 16) | ((chunk.get(offset + 1) & 0xFF) << 8)
+                | (chunk.get(offset + 2) & 0xFF);
+        offset += 3;
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.lock.readLock().lock();
+    try {
+      ByteBuffer chunk = this.chunk(row);
+      int offset = 3 * (row % this.rowsPerChunk) * this.width;
+      for (int j = 0; j < this.width; j++) {
+        chunk.put(offset, (byte) (src[j] >> 16));
+        chunk.put(offset + 1, (byte) (src[j] >> 8));
+        chunk.put(offset + 2, (byte) src[j]);
+        offset += 3;
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    if (this.arena != null) {
+      return this.arena.allocate(width, height);
+    }
+    return new OffHeapRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    OffHeapRaster result = (OffHeapRaster) this.newRaster(this.width, this.height);
+    this.lock.readLock().lock();
+    try {
+      ByteBuffer[] source = this.chunks();
+      for (int i = 0; i < source.length; i++) {
+        ByteBuffer target = result.chunks()[i].duplicate();
+        target.put(source[i].duplicate());
+      }
+      return result;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Releases the memory of this image right away, without waiting for the garbage collector.
+   * Releasing an image more than once does nothing.
+   */
+  @Override
+  public void release() {
+    ByteBuffer[] buffers;
+    // the write lock waits for the reads and writes under way, so none of them touches the
+    // memory after it is freed
+    this.lock.writeLock().lock();
+    try {
+      buffers = this.chunks;
+      this.chunks = null;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+    if (buffers == null) {
+      return;
+    }
+    if (this.arena != null) {
+      this.arena.forget(this);
+    }
+    for (ByteBuffer buffer : buffers) {
+      free(buffer);
+    }
+  }
+
+  /**
+   * Gets the buffers of this image.
+   *
+   * @return the buffers of this image.
+   * @throws IllegalStateException if this image was released.
+   */
+  private ByteBuffer[] chunks() {
+    ByteBuffer[] buffers = this.chunks;
+    if (buffers == null) {
+      throw new IllegalStateException("Image has been released");
+    }
+    return buffers;
+  }
+
+  /**
+   * Gets the buffer that holds the given row.
+   *
+   * @param row the row number.
+   * @return the buffer that holds the row.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   * @throws IllegalStateException     if this image was released.
+   */
+  private ByteBuffer chunk(int row) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    return this.chunks()[row / this.rowsPerChunk];
+  }
+
+  /**
+   * Frees the memory of a direct buffer if the platform allows it. Otherwise the memory is freed
+   * when the buffer is collected.
+   *
+   * @param buffer the direct buffer to free.
+   */
+  static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (ReflectiveOperationException e) {
+      // the memory is then released by the garbage collector instead
+    }
+  }
+}
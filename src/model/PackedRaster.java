@@ -0,0 +1,162 @@
+package model;
+
+/**
+ * This class represents an image stored in one array of packed colors. Every pixel takes one
+ * integer in the form 0xRRGGBB, and the pixels are stored row after row, so the position of the
+ * pixel is implicit and does not need its own object.
+ */
+public final class PackedRaster implements Raster {
+  private final int width;
+  private final int height;
+  private final int[] pixels;
+
+  /**
+   * Constructs a black image of the given size.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive or the image
+   *                                  is too large to be stored in one array.
+   */
+  public PackedRaster(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if ((long) width * height > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    this.width = width;
+    this.height = height;
+    this.pixels = new int[width * height];
+  }
+
+  /**
+   * Constructs an image of the given size around an existing array of packed colors. The array
+   * is used as is, without copying.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param pixels the packed colors, row after row.
+   */
+  private PackedRaster(int width, int height, int[] pixels) {
+    this.width = width;
+    this.height = height;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Produces the given image in packed form. If the image is already packed, it is returned as
+   * is, otherwise its pixels are copied into a new packed image.
+   *
+   * @param other the image to convert.
+   * @return a packed image with the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static PackedRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof PackedRaster) {
+      return (PackedRaster) other;
+    }
+    PackedRaster result = new PackedRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the packed colors of this image, row after row.
+   *
+   * @return the array that holds the pixels of this image.
+   */
+  int[] getPixels() {
+    return this.pixels;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.INTERLEAVED;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    return this.pixels[this.index(row, column)];
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.pixels[this.index(row, column)] = rgb & 0xFFFFFF;
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.checkRow(row);
+    System.arraycopy(this.pixels, row * this.width, dest, 0, this.width);
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.checkRow(row);
+    int offset = row * this.width;
+    for (int j = 0; j < this.width; j++) {
+      this.pixels[offset + j] = src[j] & 0xFFFFFF;
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new PackedRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    return new PackedRaster(this.width, this.height, this.pixels.clone());
+  }
+
+  @Override
+  public void release() {
+    // the array is released by the garbage collector
+  }
+
+  /**
+   * Computes the index of the pixel in the array of packed colors.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @return the index of the pixel in the array.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  private int index(int row, int column) {
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    this.checkRow(row);
+    return row * this.width + column;
+  }
+
+  /**
+   * Checks that the given row is inside of the image.
+   *
+   * @param row the row number to check.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   */
+  private void checkRow(int row) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+  }
+}
@@ -0,0 +1,329 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents an image with at most 256 distinct colors. Every pixel is stored as an
+ * index into a palette of packed colors, using 1, 2, 4 or 8 bits per pixel depending on the
+ * size of the palette. Writing a color that does not fit into the palette anymore expands the
+ * image into true color, one packed integer per pixel.
+ */
+public final class PaletteRaster implements Raster {
+  /**
+   * The largest number of colors a palette can hold.
+   */
+  public static final int MAX_COLORS = 256;
+
+  private final int width;
+  private final int height;
+  private int[] palette;
+  private int colorCount;
+  private final Map<Integer, Integer> indexes;
+  private int bits;
+  private int[] words;
+  private int[] expanded;
+
+  /**
+   * Constructs a black image of the given size. The palette starts with black only.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive or the image
+   *                                  is too large.
+   */
+  public PaletteRaster(int width, int height) throws IllegalArgumentException {
+    this(width, height, new int[]{0});
+  }
+
+  /**
+   * Constructs an image of the given size with the given palette, filled with the first color
+   * of the palette.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @param colors the packed colors the palette starts with.
+   * @throws IllegalArgumentException if the width or the height is not positive, the image is
+   *                                  too large, or the number of colors is not between 1 and
+   *                                  256.
+   */
+  public PaletteRaster(int width, int height, int[] colors) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if ((long) width * height > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    if (colors == null || colors.length < 1 || colors.length > MAX_COLORS) {
+      throw new IllegalArgumentException("Invalid palette");
+    }
+    this.width = width;
+    this.height = height;
+    this.indexes = new HashMap<Integer, Integer>();
+    this.colorCount = 0;
+    this.bits = 1;
+    while ((1 << this.bits) < colors.length) {
+      this.bits *= 2;
+    }
+    this.palette = new int[1 << this.bits];
+    this.words = new int[wordCount(width, height, this.bits)];
+    this.expanded = null;
+    for (int color : colors) {
+      if (!this.indexes.containsKey(color & 0xFFFFFF)) {
+        this.addColor(color & 0xFFFFFF);
+      }
+    }
+  }
+
+  /**
+   * Produces the given image with a palette. If the image already has a palette, it is
+   * returned as is, otherwise its pixels are copied into a new image, which is expanded into
+   * true color if the image has more than 256 colors.
+   *
+   * @param other the image to convert.
+   * @return an image with a palette and the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static PaletteRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof PaletteRaster) {
+      return (PaletteRaster) other;
+    }
+    PaletteRaster result = new PaletteRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of distinct colors in the palette of this image.
+   *
+   * @return the number of colors in the palette, or 0 if the image was expanded.
+   */
+  public int getColorCount() {
+    return this.isExpanded() ? 0 : this.colorCount;
+  }
+
+  /**
+   * Gets the number of bits used for every pixel.
+   *
+   * @return the bits per pixel, 1, 2, 4 or 8, or 32 if the image was expanded.
+   */
+  public int getBitsPerPixel() {
+    return this.isExpanded() ? 32 : this.bits;
+  }
+
+  /**
+   * Determines whether this image was expanded into true color because it has too many colors.
+   *
+   * @return whether this image was expanded.
+   */
+  public boolean isExpanded() {
+    return this.expanded != null;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.PALETTE;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    int position = this.position(row, column);
+    if (this.expanded != null) {
+      return this.expanded[position];
+    }
+    return this.palette[this.indexAt(position)];
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    int position = this.position(row, column);
+    this.store(position, rgb & 0xFFFFFF);
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    int position = this.position(row, 0);
+    if (this.expanded != null) {
+      System.arraycopy(this.expanded, position, dest, 0, this.width);
+      return;
+    }
+    for (int j = 0; j < this.width; j++) {
+      dest[j] = this.palette[this.indexAt(position + j)];
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    int position = this.position(row, 0);
+    for (int j = 0; j < this.width; j++) {
+      this.store(position + j, src[j] & 0xFFFFFF);
+    }
+  }
+
+  /**
+   * Constructs a black image of the given size in true color, since the results of operations
+   * usually have many more colors than their input.
+   *
+   * @param width  the positive width of the new image.
+   * @param height the positive height of the new image.
+   * @return a new black packed image.
+   */
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new PackedRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    PaletteRaster result = new PaletteRaster(this.width, this.height);
+    result.palette = this.palette.clone();
+    result.colorCount = this.colorCount;
+    result.indexes.clear();
+    result.indexes.putAll(this.indexes);
+    result.bits = this.bits;
+    result.words = this.words == null ? null : this.words.clone();
+    result.expanded = this.expanded == null ? null : this.expanded.clone();
+    return result;
+  }
+
+  @Override
+  public void release() {
+    // the arrays are released by the garbage collector
+  }
+
+  /**
+   * Stores the color of one pixel, adding the color to the palette or expanding the image if
+   * needed.
+   *
+   * @param position the position of the pixel, row after row.
+   * @param rgb      the packed color.
+   */
+  private void store(int position, int rgb) {
+    if (this.expanded != null) {
+      this.expanded[position] = rgb;
+      return;
+    }
+    Integer index = this.indexes.get(rgb);
+    if (index == null) {
+      if (this.colorCount == MAX_COLORS) {
+        this.expand();
+        this.expanded[position] = rgb;
+        return;
+      }
+      index = this.addColor(rgb);
+    }
+    int perWord = 32 / this.bits;
+    int shift = (position % perWord) * this.bits;
+    int mask = ((1 << this.bits) - 1) << shift;
+    this.words[position / perWord] = (this.words[position / perWord] & ~mask) | (index << shift);
+  }
+
+  /**
+   * Adds a color to the palette, using more bits per pixel if the palette does not fit anymore.
+   *
+   * @param rgb the packed color to add.
+   * @return the index of the new color.
+   */
+  private int addColor(int rgb) {
+    if (this.colorCount == this.palette.length) {
+      this.widen(this.bits * 2);
+    }
+    int index = this.colorCount;
+    this.palette[index] = rgb;
+    this.indexes.put(rgb, index);
+    this.colorCount++;
+    return index;
+  }
+
+  /**
+   * Stores every pixel again with the given number of bits per pixel.
+   *
+   * @param newBits the new number of bits per pixel.
+   */
+  private void widen(int newBits) {
+    int[] newWords = new int[wordCount(this.width, this.height, newBits)];
+    int perWord = 32 / newBits;
+    int size = this.width * this.height;
+    for (int position = 0; position < size; position++) {
+      newWords[position / perWord] |= this.indexAt(position) << ((position % perWord) * newBits);
+    }
+    this.words = newWords;
+    this.bits = newBits;
+    this.palette = Arrays.copyOf(this.palette, 1 << newBits);
+  }
+
+  /**
+   * Replaces the indexes with one packed color per pixel.
+   */
+  private void expand() {
+    int size = this.width * this.height;
+    int[] pixels = new int[size];
+    for (int position = 0; position < size; position++) {
+      pixels[position] = this.palette[this.indexAt(position)];
+    }
+    this.expanded = pixels;
+    this.words = null;
+    this.indexes.clear();
+  }
+
+  /**
+   * Gets the palette index of one pixel.
+   *
+   * @param position the position of the pixel, row after row.
+   * @return the palette index of the pixel.
+   */
+  private int indexAt(int position) {
+    int perWord = 32 / this.bits;
+    return (this.words[position / perWord] >>> ((position % perWord) * this.bits))
+            & ((1 << this.bits) - 1);
+  }
+
+  /**
+   * Computes the position of a pixel, row after row.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @return the position of the pixel.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  private int position(int row, int column) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    return row * this.width + column;
+  }
+
+  /**
+   * Computes the number of integers needed for the indexes of an image.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param bits   the number of bits per pixel.
+   * @return the number of integers needed.
+   */
+  private static int wordCount(int width, int height, int bits) {
+    int perWord = 32 / bits;
+    return (int) (((long) width * height + perWord - 1) / perWord);
+  }
+}
@@ -0,0 +1,224 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class holds how many threads the image operations use. An operation splits its image
+ * into bands of rows, or of tile rows, and runs the bands on a fork/join pool, where idle
+ * threads steal the bands that are left. Every pixel is computed the same way in every band, so
+ * the result does not depend on the number of threads.
+ *
+ * <p>Images with fewer pixels than the cutoff are processed on the calling thread, because
+ * starting the bands would take longer than processing them.</p>
+ */
+public final class Parallelism {
+  /**
+   * The number of pixels below which an image is processed on the calling thread.
+   */
+  public static final long DEFAULT_CUTOFF = 1L << 18;
+
+  // every thread gets several bands, so the threads that finish early can steal some
+  private static final int BANDS_PER_THREAD = 4;
+
+  private static int threads = Runtime.getRuntime().availableProcessors();
+  private static long cutoff = DEFAULT_CUTOFF;
+  private static ForkJoinPool pool = null;
+
+  /**
+   * This interface represents the work on a range of rows of an image.
+   */
+  interface Band {
+    /**
+     * Processes the rows in the given range.
+     *
+     * @param first the first row of the band.
+     * @param last  the row after the last row of the band.
+     */
+    void run(int first, int last);
+  }
+
+  /**
+   * Prevents this class from being instantiated.
+   */
+  private Parallelism() {
+  }
+
+  /**
+   * Sets the number of threads the image operations use. One thread processes every image on
+   * the calling thread.
+   *
+   * @param count the positive number of threads.
+   * @throws IllegalArgumentException if the number of threads is not positive.
+   */
+  public static synchronized void setParallelism(int count) throws IllegalArgumentException {
+    if (count < 1) {
+      throw new IllegalArgumentException("Number of threads should be positive");
+    }
+    if (count != threads && pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    threads = count;
+  }
+
+  /**
+   * Gets the number of threads the image operations use.
+   *
+   * @return the number of threads.
+   */
+  public static synchronized int getParallelism() {
+    return threads;
+  }
+
+  /**
+   * Sets the number of pixels below which an image is processed on the calling thread.
+   *
+   * @param pixels the number of pixels, not negative.
+   * @throws IllegalArgumentException if the number of pixels is negative.
+   */
+  public static synchronized void setCutoff(long pixels) throws IllegalArgumentException {
+    if (pixels < 0) {
+      throw new IllegalArgumentException("Cutoff cannot be negative");
+    }
+    cutoff = pixels;
+  }
+
+  /**
+   * Gets the number of pixels below which an image is processed on the calling thread.
+   *
+   * @return the number of pixels.
+   */
+  public static synchronized long getCutoff() {
+    return cutoff;
+  }
+
+  /**
+   * Determines whether an image of the given size is processed by more than one thread.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return whether the image is split into bands for several threads.
+   */
+  static synchronized boolean isParallel(int width, int height) {
+    return threads > 1 && height > 1 && (long) width * height >= cutoff;
+  }
+
+  /**
+   * Runs the given work over the rows from 0 to the given count. If the image is large enough,
+   * the rows are split into bands that run on the pool, otherwise all rows run as one band on
+   * the calling thread. This returns after every band has finished.
+   *
+   * @param count  the number of rows, or of tile rows.
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param band   the work on a range of rows.
+   */
+  static void forEachBand(int count, int width, int height, Band band) {
+    forEachBand(count, width, height, 1, band);
+  }
+
+  /**
+   * Runs the given work over the rows from 0 to the given count like
+   * {@link #forEachBand(int, int, int, Band)}, but in bands of at least the given number of
+   * rows, for work that has to read a number of rows before the first row of every band.
+   *
+   * @param count   the number of rows, or of tile rows.
+   * @param width   the width of the image.
+   * @param height  the height of the image.
+   * @param minimum the smallest number of rows of a band.
+   * @param band    the work on a range of rows.
+   */
+  static void forEachBand(int count, int width, int height, int minimum, Band band) {
+    ForkJoinPool bandPool;
+    int bandSize;
+    synchronized (Parallelism.class) {
+      if (!isParallel(width, height) || count < 2) {
+        bandPool = null;
+        bandSize = count;
+      } else {
+        if (pool == null) {
+          pool = new ForkJoinPool(threads);
+        }
+        bandPool = pool;
+        bandSize = Math.max(Math.max(1, minimum), count / (threads * BANDS_PER_THREAD));
+      }
+    }
+    if (bandPool == null) {
+      band.run(0, count);
+    } else {
+      bandPool.invoke(new BandAction(band, 0, count, bandSize));
+    }
+  }
+
+  /**
+   * Writes a row computed by a band into the given image. Some images keep several rows in one
+   * structure, like the tiles of a tiled image, the palette of a palette image or the row table
+   * of a snapshot, so the bands write one row at a time into those. All other images keep every
+   * row apart and are written without waiting.
+   *
+   * @param image the image to write into.
+   * @param row   the row number.
+   * @param src   the packed colors of the row.
+   */
+  static void writeRow(Raster image, int row, int[] src) {
+    if (sharesRows(image)) {
+      synchronized (image) {
+        image.writeRow(row, src);
+      }
+    } else {
+      image.writeRow(row, src);
+    }
+  }
+
+  /**
+   * Tells whether writing one row of the given image may change a structure used by other rows.
+   *
+   * @param image the image to write into.
+   * @return true if the rows must be written one at a time.
+   */
+  private static boolean sharesRows(Raster image) {
+    RasterLayout layout = image.getLayout();
+    return layout == RasterLayout.TILED || layout.isCompact()
+            || image instanceof CopyOnWriteRaster;
+  }
+
+  /**
+   * This class represents a range of rows that is split in halves until the halves are no
+   * larger than a band.
+   */
+  private static final class BandAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Band band;
+    private final int first;
+    private final int last;
+    private final int bandSize;
+
+    /**
+     * Constructs the work on a range of rows.
+     *
+     * @param band     the work on a range of rows.
+     * @param first    the first row of the range.
+     * @param last     the row after the last row of the range.
+     * @param bandSize the largest number of rows that runs without being split.
+     */
+    BandAction(Band band, int first, int last, int bandSize) {
+      this.band = band;
+      this.first = first;
+      this.last = last;
+      this.bandSize = bandSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.last - this.first <= this.bandSize) {
+        this.band.run(this.first, this.last);
+        return;
+      }
+      int middle = (this.first + this.last) >>> 1;
+      invokeAll(new BandAction(this.band, this.first, middle, this.bandSize),
+              new BandAction(this.band, middle, this.last, this.bandSize));
+    }
+  }
+}
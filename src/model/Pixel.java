@@ -1,6 +1,5 @@
 package model;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -26,26 +25,6 @@ public class Pixel {
     this.colorPixel = colorPixel;
   }
 
-  /**
-   * Constructs a new pixel with updated channel.
-   *
-   * @param matrix the color transformation in matrix format.
-   * @return a new pixel with updated channel.
-   */
-  protected Pixel transformColor(List<List<Double>> matrix) {
-    return new Pixel(this.pos, this.colorPixel.updateRGB(matrix));
-  }
-
-  /**
-   * Computes a new RGB value by multipying each RGB value to given value.
-   *
-   * @param value the given value to compute new RGB values.
-   * @return a sequence of RGB value.
-   */
-  protected List<Double> calculateNewColor(Double value) {
-    return this.colorPixel.getNewColor(value);
-  }
-
   /**
    * Returns a color of the pixel.
    *
@@ -0,0 +1,180 @@
+package model;
+
+/**
+ * This class represents an image stored as three planes of bytes, one for each color channel.
+ * All red values come first, then all green values and then all blue values, every plane row
+ * after row. The image takes three bytes per pixel and every channel can be processed with unit
+ * stride.
+ */
+public final class PlanarRaster implements Raster {
+  private final int width;
+  private final int height;
+  private final byte[] planes;
+
+  /**
+   * Constructs a black image of the given size.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive or the image
+   *                                  is too large to be stored in one array.
+   */
+  public PlanarRaster(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if ((long) width * height * 3 > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    this.width = width;
+    this.height = height;
+    this.planes = new byte[width * height * 3];
+  }
+
+  /**
+   * Constructs an image of the given size around existing planes. The array is used as is,
+   * without copying.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param planes the red, green and blue planes one after another.
+   */
+  private PlanarRaster(int width, int height, byte[] planes) {
+    this.width = width;
+    this.height = height;
+    this.planes = planes;
+  }
+
+  /**
+   * Produces the given image in planar form. If the image is already planar, it is returned as
+   * is, otherwise its pixels are copied into a new planar image.
+   *
+   * @param other the image to convert.
+   * @return a planar image with the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static PlanarRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof PlanarRaster) {
+      return (PlanarRaster) other;
+    }
+    PlanarRaster result = new PlanarRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the planes of this image. The red plane starts at index 0, the green plane at
+   * {@code width * height} and the blue plane at {@code 2 * width * height}.
+   *
+   * @return the array that holds the planes of this image.
+   */
+  byte[] getPlanes() {
+    return this.planes;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.PLANAR;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    int index = this.index(row, column);
+    int size = this.width * this.height;
+    return ((this.planes[index] & 0xFF) << 16) | ((this.planes[size + index] & 0xFF) << 8)
+            | (this.planes[2 * size + index] & 0xFF);
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    int index = this.index(row, column);
+    int size = this.width * this.height;
+    this.planes[index] = (byte) (rgb >> 16);
+    this.planes[size + index] = (byte) (rgb >> 8);
+    this.planes[2 * size + index] = (byte) rgb;
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.checkRow(row);
+    int size = this.width * this.height;
+    int offset = row * this.width;
+    for (int j = 0; j < this.width; j++) {
+      dest[j] = ((this.planes[offset + j] & 0xFF) << 16)
+              | ((this.planes[size + offset + j] & 0xFF) << 8)
+              | (this.planes[2 * size + offset + j] & 0xFF);
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.checkRow(row);
+    int size = this.width * this.height;
+    int offset = row * this.width;
+    for (int j = 0; j < this.width; j++) {
+      this.planes[offset + j] = (byte) (src[j] >> 16);
+      this.planes[size + offset + j] = (byte) (src[j] >> 8);
+      this.planes[2 * size + offset + j] = (byte) src[j];
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new PlanarRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    return new PlanarRaster(this.width, this.height, this.planes.clone());
+  }
+
+  @Override
+  public void release() {
+    // the array is released by the garbage collector
+  }
+
+  /**
+   * Computes the index of the pixel inside of one plane.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @return the index of the pixel in the plane.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  private int index(int row, int column) {
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    this.checkRow(row);
+    return row * this.width + column;
+  }
+
+  /**
+   * Checks that the given row is inside of the image.
+   *
+   * @param row the row number to check.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   */
+  private void checkRow(int row) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+  }
+}
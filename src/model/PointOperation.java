@@ -0,0 +1,18 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This interface represents an operation that changes every pixel by its own color through a
+ * color transformation matrix. Consecutive point operations compose into one matrix, so they
+ * can be run in one pass over the image.
+ */
+public interface PointOperation {
+  /**
+   * Gets the color transformation matrix of this operation.
+   *
+   * @return a copy of the three rows of three weights, each with an optional fourth number
+   *         added to its channel.
+   */
+  List<List<Double>> getMatrix();
+}
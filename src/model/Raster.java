@@ -0,0 +1,96 @@
+package model;
+
+/**
+ * This interface represents an image as a rectangular grid of colors with implicit coordinates.
+ * Each color is a packed RGB integer in the form 0xRRGGBB, where every channel is in a range
+ * 0 to 255. Rows are counted from the top of the image and columns from the left.
+ *
+ * <p>Every raster is a valid image by construction: it is never empty, every row has the same
+ * width, and no pixel can be missing or out of range. Code that is handed a raster therefore
+ * does not need to check the image again.</p>
+ */
+public interface Raster {
+  /**
+   * Gets the width of the image (the number of columns).
+   *
+   * @return the width of the image.
+   */
+  int getWidth();
+
+  /**
+   * Gets the height of the image (the number of rows).
+   *
+   * @return the height of the image.
+   */
+  int getHeight();
+
+  /**
+   * Gets the layout in which the pixels of this image are stored.
+   *
+   * @return the layout of this image.
+   */
+  RasterLayout getLayout();
+
+  /**
+   * Gets the packed color of the pixel at the given position.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @return the color of the pixel as 0xRRGGBB.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  int getRGB(int row, int column);
+
+  /**
+   * Sets the packed color of the pixel at the given position. Only the lowest 24 bits of the
+   * color are used.
+   *
+   * @param row    the row number of the pixel.
+   * @param column the column number of the pixel.
+   * @param rgb    the color of the pixel as 0xRRGGBB.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  void setRGB(int row, int column, int rgb);
+
+  /**
+   * Copies one row of the image into the given array of packed colors.
+   *
+   * @param row  the row number to read.
+   * @param dest the array to copy into, at least as long as the width of the image.
+   * @throws IndexOutOfBoundsException if the row is outside of the image or the array is short.
+   */
+  void readRow(int row, int[] dest);
+
+  /**
+   * Replaces one row of the image with the given array of packed colors.
+   *
+   * @param row the row number to write.
+   * @param src the packed colors of the row, at least as long as the width of the image.
+   * @throws IndexOutOfBoundsException if the row is outside of the image or the array is short.
+   */
+  void writeRow(int row, int[] src);
+
+  /**
+   * Constructs a black image of the given size that is stored the same way as this image.
+   *
+   * @param width  the positive width of the new image.
+   * @param height the positive height of the new image.
+   * @return a new black image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  Raster newRaster(int width, int height);
+
+  /**
+   * Constructs an independent copy of this image. Changing the copy never changes this image
+   * and the other way around.
+   *
+   * @return a copy of this image.
+   */
+  Raster copy();
+
+  /**
+   * Releases the memory of this image that is not managed by the garbage collector. The image
+   * cannot be used after it was released. For images stored on the heap this does nothing.
+   */
+  void release();
+}
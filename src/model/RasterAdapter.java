@@ -0,0 +1,123 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * This class adapts a {@code Raster} to the sequence of pixels form (a list of rows of pixels)
+ * used by the earlier versions of the program. The adapter does not copy the image: the pixel
+ * objects are created only when they are asked for, and they always reflect the colors of the
+ * underlying raster. The adapter itself cannot be modified.
+ */
+public final class RasterAdapter extends AbstractList<List<Pixel>> {
+  private final Raster raster;
+
+  /**
+   * Constructs a sequence of pixels view of the given raster.
+   *
+   * @param raster the raster to adapt.
+   * @throws IllegalArgumentException if the raster is null.
+   */
+  public RasterAdapter(Raster raster) throws IllegalArgumentException {
+    if (raster == null) {
+      throw new IllegalArgumentException("Raster cannot be null");
+    }
+    this.raster = raster;
+  }
+
+  /**
+   * Produces the raster that holds the pixels of the given image. If the image is an adapter,
+   * its raster is returned without copying or checking, since a raster is always a valid
+   * image. Otherwise the image is checked and its colors are copied into a new packed raster in
+   * the same pass.
+   *
+   * @param image the image in sequence of pixel form.
+   * @return the raster with the colors of the image.
+   * @throws IllegalArgumentException if the image is null, empty, contains null or its rows are
+   *                                  not of the same length.
+   */
+  public static Raster toRaster(List<List<Pixel>> image) throws IllegalArgumentException {
+    if (image instanceof RasterAdapter) {
+      return ((RasterAdapter) image).raster;
+    }
+    if (image == null || image.size() < 1) {
+      throw new IllegalArgumentException("Invalid argument");
+    }
+    if (image.get(0) == null || image.get(0).size() < 1) {
+      throw new IllegalArgumentException("Invalid row");
+    }
+    int width = image.get(0).size();
+    PackedRaster result = new PackedRaster(width, image.size());
+    int[] row = new int[width];
+    for (int i = 0; i < image.size(); i++) {
+      List<Pixel> pixels = image.get(i);
+      if (pixels == null || pixels.size() < 1) {
+        throw new IllegalArgumentException("Invalid row");
+      }
+      if (pixels.size() != width) {
+        throw new IllegalArgumentException("Rows of the image should be of the same length");
+      }
+      for (int j = 0; j < width; j++) {
+        Pixel pixel = pixels.get(j);
+        if (pixel == null) {
+          throw new IllegalArgumentException("Invalid null pixel");
+        }
+        row[j] = pixel.getColor().getRGB();
+      }
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the raster this adapter is a view of.
+   *
+   * @return the adapted raster.
+   */
+  public Raster getRaster() {
+    return this.raster;
+  }
+
+  @Override
+  public List<Pixel> get(int index) {
+    if (index < 0 || index >= this.raster.getHeight()) {
+      throw new IndexOutOfBoundsException("Row " + index + " is outside of the image");
+    }
+    return new RowAdapter(index);
+  }
+
+  @Override
+  public int size() {
+    return this.raster.getHeight();
+  }
+
+  /**
+   * This class represents one row of the adapted raster as a list of pixels.
+   */
+  private final class RowAdapter extends AbstractList<Pixel> {
+    private final int row;
+
+    /**
+     * Constructs a view of the given row of the raster.
+     *
+     * @param row the row number in the raster.
+     */
+    private RowAdapter(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Pixel get(int index) {
+      if (index < 0 || index >= raster.getWidth()) {
+        throw new IndexOutOfBoundsException("Column " + index + " is outside of the image");
+      }
+      return new Pixel(new PositionPixel(this.row, index),
+              ColorPixel.fromRGB(raster.getRGB(this.row, index)));
+    }
+
+    @Override
+    public int size() {
+      return raster.getWidth();
+    }
+  }
+}
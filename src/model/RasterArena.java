@@ -0,0 +1,89 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a scope for images stored outside of the heap. Every image allocated in
+ * the arena, and every image made from it with {@code newRaster} or {@code copy}, is released
+ * when the arena is closed, unless it was released earlier on its own.
+ */
+public final class RasterArena implements AutoCloseable {
+  private final Set<OffHeapRaster> rasters;
+  private boolean closed;
+
+  /**
+   * Constructs an open arena without any images.
+   */
+  public RasterArena() {
+    this.rasters = new LinkedHashSet<OffHeapRaster>();
+    this.closed = false;
+  }
+
+  /**
+   * Allocates a black image of the given size outside of the heap, owned by this arena.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @return the new image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   * @throws IllegalStateException    if this arena was closed.
+   */
+  public OffHeapRaster allocate(int width, int height)
+          throws IllegalArgumentException, IllegalStateException {
+    synchronized (this) {
+      if (this.closed) {
+        throw new IllegalStateException("Arena has been closed");
+      }
+    }
+    OffHeapRaster raster = new OffHeapRaster(width, height, this);
+    synchronized (this) {
+      if (this.closed) {
+        raster.release();
+        throw new IllegalStateException("Arena has been closed");
+      }
+      this.rasters.add(raster);
+    }
+    return raster;
+  }
+
+  /**
+   * Gets the number of bytes held by the images of this arena that were not released.
+   *
+   * @return the number of bytes held by this arena.
+   */
+  public synchronized long getByteSize() {
+    long size = 0;
+    for (OffHeapRaster raster : this.rasters) {
+      size += raster.getByteSize();
+    }
+    return size;
+  }
+
+  /**
+   * Releases all the images of this arena. Closing an arena more than once does nothing.
+   */
+  @Override
+  public void close() {
+    List<OffHeapRaster> toRelease;
+    synchronized (this) {
+      this.closed = true;
+      toRelease = new ArrayList<OffHeapRaster>(this.rasters);
+      this.rasters.clear();
+    }
+    for (OffHeapRaster raster : toRelease) {
+      raster.release();
+    }
+  }
+
+  /**
+   * Stops tracking an image that was released on its own.
+   *
+   * @param raster the released image.
+   */
+  synchronized void forget(OffHeapRaster raster) {
+    this.rasters.remove(raster);
+  }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class chooses a compact way to store images with few distinct colors or long runs of
+ * equal colors, such as checkerboards and other graphics made by the program.
+ */
+public final class RasterCompactor {
+  /**
+   * Prevents creating instances, since the class only has static methods.
+   */
+  private RasterCompactor() {
+  }
+
+  /**
+   * Produces the given image in the smallest of the palette and the run-length forms, if that
+   * form takes at most half the memory of a packed image. Otherwise the image is returned as
+   * is.
+   *
+   * @param image the image to compact.
+   * @return the image in a compact form, or the image itself.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public static Raster compact(Raster image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    long pixels = (long) width * height;
+    long packedBytes = 4 * pixels;
+    Set<Integer> distinct = new HashSet<Integer>();
+    long runs = 0;
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      image.readRow(i, row);
+      runs += RunLengthRaster.countRuns(row, width);
+      if (distinct.size() <= PaletteRaster.MAX_COLORS) {
+        for (int j = 0; j < width; j++) {
+          // only the first pixel of a run can bring a new color
+          if (j == 0 || row[j] != row[j - 1]) {
+            distinct.add(row[j] & 0xFFFFFF);
+          }
+        }
+      } else if (runBytes(runs, height) * 2 > packedBytes) {
+        return image;
+      }
+    }
+    long paletteBytes = Long.MAX_VALUE;
+    if (distinct.size() <= PaletteRaster.MAX_COLORS) {
+      paletteBytes = pixels * bitsFor(distinct.size()) / 8 + 4L * distinct.size();
+    }
+    long runLengthBytes = runBytes(runs, height);
+    if (Math.min(paletteBytes, runLengthBytes) * 2 > packedBytes) {
+      return image;
+    }
+    if (runLengthBytes < paletteBytes) {
+      return RunLengthRaster.of(image);
+    }
+    return PaletteRaster.of(image);
+  }
+
+  /**
+   * Estimates the memory taken by the runs of an image.
+   *
+   * @param runs   the total number of runs.
+   * @param height the number of rows.
+   * @return the estimated number of bytes.
+   */
+  private static long runBytes(long runs, int height) {
+    // every run takes a color and an end, and every row takes two array headers
+    return 8 * runs + 32L * height;
+  }
+
+  /**
+   * Finds the number of bits per pixel a palette of the given size needs.
+   *
+   * @param colors the number of colors in the palette.
+   * @return 1, 2, 4 or 8 bits per pixel.
+   */
+  private static int bitsFor(int colors) {
+    if (colors <= 2) {
+      return 1;
+    } else if (colors <= 4) {
+      return 2;
+    } else if (colors <= 16) {
+      return 4;
+    }
+    return 8;
+  }
+}
@@ -0,0 +1,60 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * This class lets a {@code Raster} be used as the storage of a {@code BufferedImage}, so image
+ * readers and writers can work on the pixels of the raster directly, without a second copy of
+ * the image on the heap.
+ */
+final class RasterDataBuffer extends DataBuffer {
+  private final Raster raster;
+  private final int width;
+
+  /**
+   * Constructs a data buffer over the pixels of the given raster.
+   *
+   * @param raster the raster that stores the pixels.
+   */
+  private RasterDataBuffer(Raster raster) {
+    super(DataBuffer.TYPE_INT, raster.getWidth() * raster.getHeight());
+    this.raster = raster;
+    this.width = raster.getWidth();
+  }
+
+  /**
+   * Produces an RGB buffered image whose pixels are the pixels of the given raster. Reading the
+   * buffered image reads the raster and writing it writes the raster.
+   *
+   * @param raster the raster to wrap.
+   * @return the buffered image backed by the raster.
+   * @throws IllegalArgumentException if the raster has more pixels than a buffered image can
+   *                                  hold.
+   */
+  static BufferedImage wrap(Raster raster) throws IllegalArgumentException {
+    if ((long) raster.getWidth() * raster.getHeight() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    int[] masks = {0xFF0000, 0xFF00, 0xFF};
+    SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(
+            DataBuffer.TYPE_INT, raster.getWidth(), raster.getHeight(), masks);
+    WritableRaster pixels = java.awt.image.Raster.createWritableRaster(sampleModel,
+            new RasterDataBuffer(raster), null);
+    return new BufferedImage(new DirectColorModel(24, masks[0], masks[1], masks[2]), pixels,
+            false, null);
+  }
+
+  @Override
+  public int getElem(int bank, int i) {
+    return this.raster.getRGB(i / this.width, i % this.width);
+  }
+
+  @Override
+  public void setElem(int bank, int i, int val) {
+    this.raster.setRGB(i / this.width, i % this.width, val);
+  }
+}
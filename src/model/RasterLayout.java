@@ -0,0 +1,215 @@
+package model;
+
+/**
+ * This enum represents the ways the pixels of a raster can be laid out in memory. Each layer
+ * chooses one layout for its image, and the operations process the image in that layout.
+ */
+public enum RasterLayout {
+  /**
+   * All channels of a pixel are packed together into one integer, pixel after pixel.
+   */
+  INTERLEAVED("interleaved") {
+    @Override
+    public Raster create(int width, int height) {
+      return new PackedRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return PackedRaster.of(image);
+    }
+  },
+
+  /**
+   * Every channel is stored in its own plane of bytes, so each channel can be processed with
+   * unit stride.
+   */
+  PLANAR("planar") {
+    @Override
+    public Raster create(int width, int height) {
+      return new PlanarRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return PlanarRaster.of(image);
+    }
+  },
+
+  /**
+   * The channels of a pixel are stored together in direct memory outside of the Java heap,
+   * which is released as soon as the image is released.
+   */
+  OFF_HEAP("offheap") {
+    @Override
+    public Raster create(int width, int height) {
+      return new OffHeapRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return OffHeapRaster.of(image);
+    }
+  },
+
+  /**
+   * The image is split into square tiles of packed colors, and black tiles are not allocated
+   * until something is written to them.
+   */
+  TILED("tiled") {
+    @Override
+    public Raster create(int width, int height) {
+      return new TiledRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return TiledRaster.of(image);
+    }
+  },
+
+  /**
+   * The channels of a pixel are stored together as floating point values that are not rounded
+   * or clamped, so a chain of operations rounds only when the image is saved or shown.
+   */
+  FLOAT("float") {
+    @Override
+    public Raster create(int width, int height) {
+      return new FloatRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return FloatRaster.of(image);
+    }
+  },
+
+  /**
+   * The channels of a pixel are stored together in a temporary scratch file mapped into memory,
+   * so the operating system decides which parts of the image stay in memory.
+   */
+  MAPPED("mapped") {
+    @Override
+    public Raster create(int width, int height) {
+      return new MappedRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return MappedRaster.of(image);
+    }
+  },
+
+  /**
+   * Every pixel is an index of 1, 2, 4 or 8 bits into a palette of at most 256 colors. An image
+   * with more colors is expanded into true color, and converting one gives an interleaved image.
+   */
+  PALETTE("palette") {
+    @Override
+    public Raster create(int width, int height) {
+      return new PaletteRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      PaletteRaster palette = PaletteRaster.of(image);
+      if (palette != image && palette.isExpanded()) {
+        Raster packed = PackedRaster.of(palette);
+        palette.release();
+        return packed;
+      }
+      return palette;
+    }
+
+    @Override
+    public boolean isCompact() {
+      return true;
+    }
+  },
+
+  /**
+   * Every row is stored as runs of equal colors.
+   */
+  RUN_LENGTH("runlength") {
+    @Override
+    public Raster create(int width, int height) {
+      return new RunLengthRaster(width, height);
+    }
+
+    @Override
+    public Raster convert(Raster image) {
+      return RunLengthRaster.of(image);
+    }
+
+    @Override
+    public boolean isCompact() {
+      return true;
+    }
+  };
+
+  private final String name;
+
+  /**
+   * Constructs a layout with the name used for it in the commands.
+   *
+   * @param name the name of the layout.
+   */
+  RasterLayout(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Creates a black image of the given size in this layout.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @return a new image in this layout.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  public abstract Raster create(int width, int height);
+
+  /**
+   * Produces the given image in this layout. If the image is already in this layout, it is
+   * returned as is.
+   *
+   * @param image the image to convert.
+   * @return the image in this layout.
+   * @throws IllegalArgumentException if the image is null.
+   */
+  public abstract Raster convert(Raster image);
+
+  /**
+   * Determines whether this layout is a compact form for images with few colors or long runs.
+   * Layers keep compact images as they are until an operation replaces them with true color.
+   *
+   * @return whether this layout is compact.
+   */
+  public boolean isCompact() {
+    return false;
+  }
+
+  /**
+   * Gets the name of this layout as it is used in the commands.
+   *
+   * @return the name of this layout.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Finds the layout with the given name.
+   *
+   * @param name the name of the layout.
+   * @return the layout with the given name.
+   * @throws IllegalArgumentException if there is no layout with the given name.
+   */
+  public static RasterLayout fromName(String name) throws IllegalArgumentException {
+    for (RasterLayout layout : values()) {
+      if (layout.name.equals(name)) {
+        return layout;
+      }
+    }
+    throw new IllegalArgumentException("No such layout: " + name);
+  }
+}
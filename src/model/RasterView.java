@@ -0,0 +1,176 @@
+package model;
+
+/**
+ * This class represents a rectangular window of another image. The view does not copy any
+ * pixels: reading the view reads the image under it, and writing the view writes that image.
+ * Operations can read a view to process only a region of an image, and write their result into
+ * a view to replace only that region.
+ */
+public final class RasterView implements Raster {
+  private final Raster parent;
+  private final int rowOffset;
+  private final int columnOffset;
+  private final int width;
+  private final int height;
+
+  /**
+   * Constructs a view of the given region of an image.
+   *
+   * @param parent       the image under the view.
+   * @param rowOffset    the row of the image where the view starts.
+   * @param columnOffset the column of the image where the view starts.
+   * @param width        the positive width of the view.
+   * @param height       the positive height of the view.
+   * @throws IllegalArgumentException if the image is null or the region is empty or does not
+   *                                  fit inside of the image.
+   */
+  public RasterView(Raster parent, int rowOffset, int columnOffset, int width, int height)
+          throws IllegalArgumentException {
+    if (parent == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (width < 1 || height < 1 || rowOffset < 0 || columnOffset < 0
+            || (long) rowOffset + height > parent.getHeight()
+            || (long) columnOffset + width > parent.getWidth()) {
+      throw new IllegalArgumentException("Region is outside of the image");
+    }
+    if (parent instanceof RasterView) {
+      RasterView view = (RasterView) parent;
+      this.parent = view.parent;
+      this.rowOffset = view.rowOffset + rowOffset;
+      this.columnOffset = view.columnOffset + columnOffset;
+    } else {
+      this.parent = parent;
+      this.rowOffset = rowOffset;
+      this.columnOffset = columnOffset;
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Gets the row of the underlying image where this view starts.
+   *
+   * @return the row offset of this view.
+   */
+  public int getRowOffset() {
+    return this.rowOffset;
+  }
+
+  /**
+   * Gets the column of the underlying image where this view starts.
+   *
+   * @return the column offset of this view.
+   */
+  public int getColumnOffset() {
+    return this.columnOffset;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return this.parent.getLayout();
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    this.check(row, column);
+    return this.parent.getRGB(this.rowOffset + row, this.columnOffset + column);
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.check(row, column);
+    this.parent.setRGB(this.rowOffset + row, this.columnOffset + column, rgb);
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.check(row, 0);
+    Raster stored = CopyOnWriteRaster.unwrap(this.parent);
+    if (stored instanceof PackedRaster) {
+      // the window starts at the offset and every row is a stride of the image width away
+      int offset = (this.rowOffset + row) * stored.getWidth() + this.columnOffset;
+      System.arraycopy(((PackedRaster) stored).getPixels(), offset, dest, 0, this.width);
+    } else if (this.columnOffset == 0 && this.width == this.parent.getWidth()) {
+      this.parent.readRow(this.rowOffset + row, dest);
+    } else {
+      for (int j = 0; j < this.width; j++) {
+        dest[j] = this.parent.getRGB(this.rowOffset + row, this.columnOffset + j);
+      }
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.check(row, 0);
+    if (this.parent instanceof PackedRaster) {
+      int[] pixels = ((PackedRaster) this.parent).getPixels();
+      int offset = (this.rowOffset + row) * this.parent.getWidth() + this.columnOffset;
+      for (int j = 0; j < this.width; j++) {
+        pixels[offset + j] = src[j] & 0xFFFFFF;
+      }
+    } else if (this.columnOffset == 0 && this.width == this.parent.getWidth()) {
+      this.parent.writeRow(this.rowOffset + row, src);
+    } else {
+      for (int j = 0; j < this.width; j++) {
+        this.parent.setRGB(this.rowOffset + row, this.columnOffset + j, src[j]);
+      }
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return this.parent.newRaster(width, height);
+  }
+
+  /**
+   * Copies the pixels of this view into a new image of the size of the view, stored the same
+   * way as the image under the view. Only the pixels inside of the window are copied.
+   *
+   * @return a copy of the region of this view.
+   */
+  @Override
+  public Raster copy() {
+    Raster result = this.parent.newRaster(this.width, this.height);
+    int[] row = new int[this.width];
+    for (int i = 0; i < this.height; i++) {
+      this.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Does nothing, since the view does not own the image under it.
+   */
+  @Override
+  public void release() {
+    // the image under the view is released by its owner
+  }
+
+  /**
+   * Checks that the given position is inside of the view.
+   *
+   * @param row    the row number to check.
+   * @param column the column number to check.
+   * @throws IndexOutOfBoundsException if the position is outside of the view.
+   */
+  private void check(int row, int column) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+  }
+}
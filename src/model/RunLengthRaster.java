@@ -0,0 +1,204 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an image whose rows are stored as runs of equal colors. Every run takes
+ * a packed color and the column where it ends, so images made of large flat areas take a few
+ * integers per row no matter how wide they are.
+ */
+public final class RunLengthRaster implements Raster {
+  private final int width;
+  private final int height;
+  private final int[][] colors;
+  private final int[][] ends;
+
+  /**
+   * Constructs a black image of the given size, one run per row.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  public RunLengthRaster(int width, int height) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    this.width = width;
+    this.height = height;
+    this.colors = new int[height][];
+    this.ends = new int[height][];
+    int[] black = {0};
+    int[] end = {width};
+    for (int i = 0; i < height; i++) {
+      // rows with the same runs can share their arrays, since a row is replaced as a whole
+      this.colors[i] = black;
+      this.ends[i] = end;
+    }
+  }
+
+  /**
+   * Produces the given image with runs of colors. If the image already has runs, it is returned
+   * as is, otherwise its pixels are copied into a new image.
+   *
+   * @param other the image to convert.
+   * @return an image with runs of colors and the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static RunLengthRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof RunLengthRaster) {
+      return (RunLengthRaster) other;
+    }
+    RunLengthRaster result = new RunLengthRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Counts the runs in the given row of packed colors.
+   *
+   * @param row   the packed colors.
+   * @param width the number of colors to look at.
+   * @return the number of runs of equal colors.
+   */
+  static int countRuns(int[] row, int width) {
+    int runs = 1;
+    for (int j = 1; j < width; j++) {
+      if ((row[j] & 0xFFFFFF) != (row[j - 1] & 0xFFFFFF)) {
+        runs++;
+      }
+    }
+    return runs;
+  }
+
+  /**
+   * Gets the number of runs in all rows of this image.
+   *
+   * @return the total number of runs.
+   */
+  public long getRunCount() {
+    long count = 0;
+    for (int[] rowColors : this.colors) {
+      count += rowColors.length;
+    }
+    return count;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.RUN_LENGTH;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    this.checkRow(row);
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    // the run that holds the column is the first one that ends after it
+    int run = Arrays.binarySearch(this.ends[row], column + 1);
+    if (run < 0) {
+      run = -run - 1;
+    }
+    return this.colors[row][run];
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.checkRow(row);
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+    if (this.getRGB(row, column) == (rgb & 0xFFFFFF)) {
+      return;
+    }
+    int[] pixels = new int[this.width];
+    this.readRow(row, pixels);
+    pixels[column] = rgb;
+    this.writeRow(row, pixels);
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.checkRow(row);
+    int start = 0;
+    for (int run = 0; run < this.colors[row].length; run++) {
+      Arrays.fill(dest, start, this.ends[row][run], this.colors[row][run]);
+      start = this.ends[row][run];
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.checkRow(row);
+    int runs = countRuns(src, this.width);
+    int[] rowColors = new int[runs];
+    int[] rowEnds = new int[runs];
+    int run = 0;
+    for (int j = 1; j <= this.width; j++) {
+      if (j == this.width || (src[j] & 0xFFFFFF) != (src[j - 1] & 0xFFFFFF)) {
+        rowColors[run] = src[j - 1] & 0xFFFFFF;
+        rowEnds[run] = j;
+        run++;
+      }
+    }
+    this.colors[row] = rowColors;
+    this.ends[row] = rowEnds;
+  }
+
+  /**
+   * Constructs a black image of the given size in true color, since the results of operations
+   * usually have much shorter runs than their input.
+   *
+   * @param width  the positive width of the new image.
+   * @param height the positive height of the new image.
+   * @return a new black packed image.
+   */
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new PackedRaster(width, height);
+  }
+
+  @Override
+  public Raster copy() {
+    RunLengthRaster result = new RunLengthRaster(this.width, this.height);
+    // the rows are never changed in place, so they can be shared
+    System.arraycopy(this.colors, 0, result.colors, 0, this.height);
+    System.arraycopy(this.ends, 0, result.ends, 0, this.height);
+    return result;
+  }
+
+  @Override
+  public void release() {
+    // the runs are released by the garbage collector
+  }
+
+  /**
+   * Checks that the given row is inside of the image.
+   *
+   * @param row the row number to check.
+   * @throws IndexOutOfBoundsException if the row is outside of the image.
+   */
+  private void checkRow(int row) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package model;
+
+/**
+ * This enum represents the rules that decide which layers keep their images in scratch files
+ * instead of in memory. Layers that are not chosen keep their images in their own layout.
+ */
+public enum ScratchPolicy {
+  /**
+   * No layer is kept in a scratch file.
+   */
+  NONE("none") {
+    @Override
+    public boolean selects(Layer layer, boolean topMost) {
+      return false;
+    }
+  },
+
+  /**
+   * The invisible layers are kept in scratch files.
+   */
+  INVISIBLE("invisible") {
+    @Override
+    public boolean selects(Layer layer, boolean topMost) {
+      return !layer.isTopMostVisible();
+    }
+  },
+
+  /**
+   * Every layer except the top most visible one is kept in a scratch file.
+   */
+  BACKGROUND("background") {
+    @Override
+    public boolean selects(Layer layer, boolean topMost) {
+      return !topMost;
+    }
+  },
+
+  /**
+   * Every layer is kept in a scratch file.
+   */
+  ALL("all") {
+    @Override
+    public boolean selects(Layer layer, boolean topMost) {
+      return true;
+    }
+  };
+
+  private final String name;
+
+  /**
+   * Constructs a policy with the name used for it in the commands.
+   *
+   * @param name the name of the policy.
+   */
+  ScratchPolicy(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Determines whether the given layer should keep its image in a scratch file.
+   *
+   * @param layer   the layer to decide for.
+   * @param topMost whether the layer is the top most visible layer.
+   * @return whether the layer should be kept in a scratch file.
+   */
+  public abstract boolean selects(Layer layer, boolean topMost);
+
+  /**
+   * Gets the name of this policy as it is used in the commands.
+   *
+   * @return the name of this policy.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Finds the policy with the given name.
+   *
+   * @param name the name of the policy.
+   * @return the policy with the given name.
+   * @throws IllegalArgumentException if there is no policy with the given name.
+   */
+  public static ScratchPolicy fromName(String name) throws IllegalArgumentException {
+    for (ScratchPolicy policy : values()) {
+      if (policy.name.equals(name)) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException("No such scratch policy: " + name);
+  }
+}
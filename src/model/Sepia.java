@@ -8,7 +8,7 @@ import java.util.List;
  * This class represents one of the color transformations methods. It contains a method that
  * changes the color of the image to sepia tone.
  */
-public class Sepia extends ColorTransformation implements ImageOperation {
+public class Sepia extends ColorTransformation implements ImageOperation, PointOperation {
   private final List<List<Double>> matrix;
 
   /**
@@ -22,11 +22,44 @@ public class Sepia extends ColorTransformation implements ImageOperation {
     this.matrix = createMatrix();
   }
 
+  /**
+   * Constructs a sepia tone operation with a specific matrix and an image.
+   *
+   * @param image the image to be colored in sepia tone
+   * @throws IllegalArgumentException if the provided image is null.
+   */
+  public Sepia(Raster image) throws IllegalArgumentException {
+    super(image);
+    this.matrix = createMatrix();
+  }
+
+  @Override
+  public List<List<Double>> getMatrix() {
+    List<List<Double>> copy = new ArrayList<List<Double>>();
+    for (List<Double> row : matrix) {
+      copy.add(new ArrayList<Double>(row));
+    }
+    return copy;
+  }
+
   @Override
   public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
     return transformingImage(matrix);
   }
 
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    transformingImage(matrix, target);
+  }
+
   /**
    * Creates a specific matrix for sepia tone image color transformation operation.
    *
@@ -8,7 +8,7 @@ import java.util.List;
  * This class represents one of the operations for filtering. It contains the method that filters
  * the image by sharpening it.
  */
-public class Sharpen extends Filter implements ImageOperation {
+public class Sharpen extends Filter implements ImageOperation, LinearFilter {
   private final List<List<Double>> kernel;
 
   /**
@@ -22,11 +22,57 @@ public class Sharpen extends Filter implements ImageOperation {
     this.kernel = createKernel();
   }
 
+  /**
+   * Constructs a sharpen filter operation with a specific kernel and an image.
+   *
+   * @param image the image to sharpen
+   * @throws IllegalArgumentException if the provided image is null.
+   */
+  public Sharpen(Raster image) throws IllegalArgumentException {
+    super(image);
+    this.kernel = createKernel();
+  }
+
+  /**
+   * Constructs a sharpen filter operation with a specific kernel and an image, treating the
+   * pixels past the edges of the image as the given edge mode says.
+   *
+   * @param image    the image to sharpen
+   * @param edgeMode the way to treat the pixels past the edges.
+   * @throws IllegalArgumentException if the provided image or edge mode is null.
+   */
+  public Sharpen(Raster image, EdgeMode edgeMode) throws IllegalArgumentException {
+    super(image, edgeMode);
+    this.kernel = createKernel();
+  }
+
+  @Override
+  public List<List<Double>> getKernel() {
+    List<List<Double>> copy = new ArrayList<List<Double>>();
+    for (List<Double> row : kernel) {
+      copy.add(new ArrayList<Double>(row));
+    }
+    return copy;
+  }
+
   @Override
   public List<List<Pixel>> apply() {
+    return new RasterAdapter(applyRaster());
+  }
+
+  @Override
+  public Raster applyRaster() {
     return filter(kernel);
   }
 
+  @Override
+  public void applyInto(Raster target) throws IllegalArgumentException {
+    if (target == null) {
+      throw new IllegalArgumentException("Invalid target");
+    }
+    filter(kernel, target);
+  }
+
   /**
    * Creates a specific kernel for sharpening.
    *
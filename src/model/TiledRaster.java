@@ -0,0 +1,383 @@
+package model;
+
+/**
+ * This class represents an image split into square tiles of packed colors, 256 by 256 pixels
+ * unless another size is given. The tiles on the right and bottom edges are cut to the size of
+ * the image. A tile is allocated only when a pixel other than black is written to it, so the
+ * black parts of the image do not take any memory.
+ */
+public final class TiledRaster implements Raster {
+  /**
+   * The number of pixels on each side of a tile unless another size is given.
+   */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  private final int width;
+  private final int height;
+  private final int tileSize;
+  private final int tilesAcross;
+  private final int tilesDown;
+  private final int[][] tiles;
+
+  /**
+   * Constructs a black image of the given size with tiles of the default size.
+   *
+   * @param width  the positive width of the image.
+   * @param height the positive height of the image.
+   * @throws IllegalArgumentException if the width or the height is not positive.
+   */
+  public TiledRaster(int width, int height) throws IllegalArgumentException {
+    this(width, height, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Constructs a black image of the given size with tiles of the given size.
+   *
+   * @param width    the positive width of the image.
+   * @param height   the positive height of the image.
+   * @param tileSize the positive number of pixels on each side of a tile.
+   * @throws IllegalArgumentException if any of the sizes is not positive or there are too many
+   *                                  tiles.
+   */
+  public TiledRaster(int width, int height, int tileSize) throws IllegalArgumentException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height should be positive");
+    }
+    if (tileSize < 1 || tileSize > 46340) {
+      throw new IllegalArgumentException("Invalid tile size");
+    }
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+    this.tilesAcross = (width + tileSize - 1) / tileSize;
+    this.tilesDown = (height + tileSize - 1) / tileSize;
+    if ((long) this.tilesAcross * this.tilesDown > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Image is too large");
+    }
+    this.tiles = new int[this.tilesAcross * this.tilesDown][];
+  }
+
+  /**
+   * Produces the given image in tiled form. If the image is already tiled, it is returned as is,
+   * otherwise its pixels are copied into a new tiled image with tiles of the default size.
+   *
+   * @param other the image to convert.
+   * @return a tiled image with the same pixels as the given image.
+   * @throws IllegalArgumentException if the given image is null.
+   */
+  public static TiledRaster of(Raster other) throws IllegalArgumentException {
+    if (other == null) {
+      throw new IllegalArgumentException("Image cannot be null");
+    }
+    if (other instanceof TiledRaster) {
+      return (TiledRaster) other;
+    }
+    TiledRaster result = new TiledRaster(other.getWidth(), other.getHeight());
+    int[] row = new int[result.width];
+    for (int i = 0; i < result.height; i++) {
+      other.readRow(i, row);
+      result.writeRow(i, row);
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of pixels on each side of a tile.
+   *
+   * @return the size of the tiles.
+   */
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  /**
+   * Gets the number of tiles in every row of tiles.
+   *
+   * @return the number of tiles across the image.
+   */
+  public int getTilesAcross() {
+    return this.tilesAcross;
+  }
+
+  /**
+   * Gets the number of tiles in every column of tiles.
+   *
+   * @return the number of tiles down the image.
+   */
+  public int getTilesDown() {
+    return this.tilesDown;
+  }
+
+  /**
+   * Gets the number of tiles that hold pixels. All other tiles are black.
+   *
+   * @return the number of allocated tiles.
+   */
+  public int getAllocatedTileCount() {
+    int count = 0;
+    for (int[] tile : this.tiles) {
+      if (tile != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Determines whether the tile at the given position holds pixels.
+   *
+   * @param tileRow    the row of the tile.
+   * @param tileColumn the column of the tile.
+   * @return whether the tile is allocated.
+   * @throws IndexOutOfBoundsException if there is no such tile.
+   */
+  public boolean isTileAllocated(int tileRow, int tileColumn) {
+    return this.tiles[this.tileIndex(tileRow, tileColumn)] != null;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public RasterLayout getLayout() {
+    return RasterLayout.TILED;
+  }
+
+  @Override
+  public int getRGB(int row, int column) {
+    this.check(row, column);
+    int[] tile = this.tiles[(row / this.tileSize) * this.tilesAcross + column / this.tileSize];
+    if (tile == null) {
+      return 0;
+    }
+    int tileColumn = column / this.tileSize;
+    return tile[(row % this.tileSize) * this.tileWidth(tileColumn) + column % this.tileSize];
+  }
+
+  @Override
+  public void setRGB(int row, int column, int rgb) {
+    this.check(row, column);
+    int tileColumn = column / this.tileSize;
+    int index = (row / this.tileSize) * this.tilesAcross + tileColumn;
+    if (this.tiles[index] == null && (rgb & 0xFFFFFF) == 0) {
+      return;
+    }
+    int[] tile = this.tile(row / this.tileSize, tileColumn);
+    tile[(row % this.tileSize) * this.tileWidth(tileColumn) + column % this.tileSize] =
+            rgb & 0xFFFFFF;
+  }
+
+  @Override
+  public void readRow(int row, int[] dest) {
+    this.readRowSegment(row, 0, this.width, dest, 0);
+  }
+
+  @Override
+  public void writeRow(int row, int[] src) {
+    this.check(row, 0);
+    int tileRow = row / this.tileSize;
+    int offsetInTile = row % this.tileSize;
+    for (int tileColumn = 0; tileColumn < this.tilesAcross; tileColumn++) {
+      int start = tileColumn * this.tileSize;
+      int tileWidth = this.tileWidth(tileColumn);
+      int[] tile = this.tiles[tileRow * this.tilesAcross + tileColumn];
+      if (tile == null) {
+        if (isBlack(src, start, tileWidth)) {
+          continue;
+        }
+        tile = this.tile(tileRow, tileColumn);
+      }
+      for (int j = 0; j < tileWidth; j++) {
+        tile[offsetInTile * tileWidth + j] = src[start + j] & 0xFFFFFF;
+      }
+    }
+  }
+
+  @Override
+  public Raster newRaster(int width, int height) {
+    return new TiledRaster(width, height, this.tileSize);
+  }
+
+  @Override
+  public Raster copy() {
+    TiledRaster result = new TiledRaster(this.width, this.height, this.tileSize);
+    for (int i = 0; i < this.tiles.length; i++) {
+      if (this.tiles[i] != null) {
+        result.tiles[i] = this.tiles[i].clone();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void release() {
+    // the tiles are released by the garbage collector
+  }
+
+  /**
+   * Copies a part of one row into the given array. The parts of the row in black tiles are
+   * filled with black without allocating the tiles.
+   *
+   * @param row    the row number to read.
+   * @param column the first column to read.
+   * @param length the number of pixels to read.
+   * @param dest   the array to copy into.
+   * @param offset the index in the array of the first pixel.
+   * @throws IndexOutOfBoundsException if the part is outside of the image.
+   */
+  void readRowSegment(int row, int column, int length, int[] dest, int offset) {
+    this.check(row, column);
+    if (length < 0 || column + length > this.width) {
+      throw new IndexOutOfBoundsException("Segment is outside of the image");
+    }
+    int tileRow = row / this.tileSize;
+    int offsetInTile = row % this.tileSize;
+    int end = column + length;
+    while (column < end) {
+      int tileColumn = column / this.tileSize;
+      int tileWidth = this.tileWidth(tileColumn);
+      int count = Math.min(end, tileColumn * this.tileSize + tileWidth) - column;
+      int[] tile = this.tiles[tileRow * this.tilesAcross + tileColumn];
+      if (tile == null) {
+        for (int j = 0; j < count; j++) {
+          dest[offset + j] = 0;
+        }
+      } else {
+        System.arraycopy(tile, offsetInTile * tileWidth + column % this.tileSize, dest, offset,
+                count);
+      }
+      column += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * Determines whether every tile that covers a part of the given region is black and not
+   * allocated. The region is clipped to the image.
+   *
+   * @param firstRow    the first row of the region.
+   * @param lastRow     the last row of the region, inclusive.
+   * @param firstColumn the first column of the region.
+   * @param lastColumn  the last column of the region, inclusive.
+   * @return whether the whole region is black without looking at any pixel.
+   */
+  boolean isBlank(int firstRow, int lastRow, int firstColumn, int lastColumn) {
+    int top = Math.max(0, firstRow) / this.tileSize;
+    int bottom = Math.min(this.height - 1, lastRow) / this.tileSize;
+    int left = Math.max(0, firstColumn) / this.tileSize;
+    int right = Math.min(this.width - 1, lastColumn) / this.tileSize;
+    for (int i = top; i <= bottom; i++) {
+      for (int j = left; j <= right; j++) {
+        if (this.tiles[i * this.tilesAcross + j] != null) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the pixels of the tile at the given position, allocating the tile if needed. The
+   * pixels are stored row after row, with rows as wide as the tile.
+   *
+   * @param tileRow    the row of the tile.
+   * @param tileColumn the column of the tile.
+   * @return the pixels of the tile.
+   * @throws IndexOutOfBoundsException if there is no such tile.
+   */
+  int[] tile(int tileRow, int tileColumn) {
+    int index = this.tileIndex(tileRow, tileColumn);
+    if (this.tiles[index] == null) {
+      this.tiles[index] = new int[this.tileWidth(tileColumn) * this.tileHeight(tileRow)];
+    }
+    return this.tiles[index];
+  }
+
+  /**
+   * Gets the pixels of the tile at the given position without allocating it.
+   *
+   * @param tileRow    the row of the tile.
+   * @param tileColumn the column of the tile.
+   * @return the pixels of the tile, or null if the tile is black and not allocated.
+   * @throws IndexOutOfBoundsException if there is no such tile.
+   */
+  int[] existingTile(int tileRow, int tileColumn) {
+    return this.tiles[this.tileIndex(tileRow, tileColumn)];
+  }
+
+  /**
+   * Gets the width of the tiles in the given column of tiles.
+   *
+   * @param tileColumn the column of tiles.
+   * @return the width of the tiles in the column.
+   */
+  int tileWidth(int tileColumn) {
+    return Math.min(this.tileSize, this.width - tileColumn * this.tileSize);
+  }
+
+  /**
+   * Gets the height of the tiles in the given row of tiles.
+   *
+   * @param tileRow the row of tiles.
+   * @return the height of the tiles in the row.
+   */
+  int tileHeight(int tileRow) {
+    return Math.min(this.tileSize, this.height - tileRow * this.tileSize);
+  }
+
+  /**
+   * Computes the index of the tile at the given position.
+   *
+   * @param tileRow    the row of the tile.
+   * @param tileColumn the column of the tile.
+   * @return the index of the tile.
+   * @throws IndexOutOfBoundsException if there is no such tile.
+   */
+  private int tileIndex(int tileRow, int tileColumn) {
+    if (tileRow < 0 || tileRow >= this.tilesDown || tileColumn < 0
+            || tileColumn >= this.tilesAcross) {
+      throw new IndexOutOfBoundsException("No tile at " + tileRow + ", " + tileColumn);
+    }
+    return tileRow * this.tilesAcross + tileColumn;
+  }
+
+  /**
+   * Checks that the given position is inside of the image.
+   *
+   * @param row    the row number to check.
+   * @param column the column number to check.
+   * @throws IndexOutOfBoundsException if the position is outside of the image.
+   */
+  private void check(int row, int column) {
+    if (row < 0 || row >= this.height) {
+      throw new IndexOutOfBoundsException("Row " + row + " is outside of the image");
+    }
+    if (column < 0 || column >= this.width) {
+      throw new IndexOutOfBoundsException("Column " + column + " is outside of the image");
+    }
+  }
+
+  /**
+   * Determines whether the given part of an array holds only black pixels.
+   *
+   * @param pixels the packed colors.
+   * @param start  the first index to look at.
+   * @param length the number of pixels to look at.
+   * @return whether all those pixels are black.
+   */
+  private static boolean isBlack(int[] pixels, int start, int length) {
+    for (int j = start; j < start + length; j++) {
+      if ((pixels[j] & 0xFFFFFF) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
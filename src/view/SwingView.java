@@ -171,12 +171,12 @@ public class SwingView extends JFrame implements ISwingViewer {
   /**
    * Creates a menu of operations related to layers and changing their states. Include layer
    * manipulation (remove and set to current, visibility) and image operations (blur, sepia,
-   * grayscale, and sharpen).
+   * grayscale, sharpen, convolve with a kernel file, and median).
    */
   private void createOperationsMenu() {
     // layer operations combo boxes
     String[] options = {"remove layer", "current", "visible", "invisible", "blur", "sharpen",
-                        "grayscale", "sepia"};
+                        "grayscale", "sepia", "convolve", "median"};
     operationBoxes = new JComboBox<String>();
     operationBoxes.setActionCommand("Operation options");
     for (int i = 0; i < options.length; i++) {
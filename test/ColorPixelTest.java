@@ -0,0 +1,41 @@
+import org.junit.Test;
+
+import model.ColorPixel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the shared colors of {@code ColorPixel}.
+ */
+public class ColorPixelTest {
+
+  // test the same color is shared between calls
+  @Test
+  public void testOfSharesColors() {
+    ColorPixel color = ColorPixel.of(12, 34, 56);
+    assertSame(color, ColorPixel.of(12, 34, 56));
+    assertSame(color, ColorPixel.fromRGB(0x0C2238));
+    assertEquals(new ColorPixel(12, 34, 56), color);
+  }
+
+  // test the factory clamps the channels like the constructor
+  @Test
+  public void testOfClamps() {
+    ColorPixel color = ColorPixel.of(-5, 300, 128);
+    assertEquals(0, color.getRedChannel());
+    assertEquals(255, color.getGreenChannel());
+    assertEquals(128, color.getBlueChannel());
+  }
+
+  // test the cache counts hits and misses
+  @Test
+  public void testCacheStatistics() {
+    ColorPixel.of(1, 2, 3);
+    ColorPixel.resetCacheStatistics();
+    ColorPixel.of(1, 2, 3);
+    ColorPixel.of(1, 2, 3);
+    assertEquals(2, ColorPixel.getCacheHits());
+    assertEquals(0, ColorPixel.getCacheMisses());
+  }
+}
@@ -0,0 +1,78 @@
+import model.Blur;
+import model.CacheBlocking;
+import model.ComputeBackend;
+import model.ImageOperation;
+import model.PackedRaster;
+import model.Parallelism;
+import model.Raster;
+import model.Sharpen;
+
+/**
+ * This class measures how fast the filters are on wide images with and without the cache
+ * tiles. It is run by hand with {@code java ConvolutionBenchmark [width] [height]} and is not
+ * part of the tests.
+ */
+public class ConvolutionBenchmark {
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+
+  /**
+   * Runs the benchmark and prints the time of every filter with and without the cache tiles.
+   *
+   * @param args the width and the height of the image, 16384 by 512 if not given.
+   */
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+    Raster image = new PackedRaster(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        row[j] = (i * 7919 + j * 104729) & 0xFFFFFF;
+      }
+      image.writeRow(i, row);
+    }
+    ComputeBackend.select(ComputeBackend.LANES);
+    Parallelism.setParallelism(1);
+    System.out.println(width + " x " + height + " pixels, " + CacheBlocking.getCacheBytes()
+            + " bytes of cache, tiles of " + CacheBlocking.getTileWidth(5) + " x "
+            + CacheBlocking.getTileHeight() + " for sharpen");
+    for (String filter : new String[]{"sharpen", "blur"}) {
+      for (boolean blocked : new boolean[]{false, true}) {
+        CacheBlocking.setEnabled(blocked);
+        double millis = measure(filter, image);
+        System.out.printf("%-8s %-7s %9.1f ms %9.1f Mpixels/s%n", filter,
+                blocked ? "tiles" : "rows", millis, (double) width * height / millis / 1000);
+      }
+    }
+  }
+
+  /**
+   * Measures the average time of one filter on the image after a few runs to warm up.
+   *
+   * @param filter the name of the filter.
+   * @param image  the image to filter.
+   * @return the average time in milliseconds.
+   */
+  private static double measure(String filter, Raster image) {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      operation(filter, image).applyRaster();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      operation(filter, image).applyRaster();
+    }
+    return (System.nanoTime() - start) / 1e6 / MEASURED_RUNS;
+  }
+
+  /**
+   * Creates the filter with the given name on the image.
+   *
+   * @param filter the name of the filter.
+   * @param image  the image to filter.
+   * @return the filter operation.
+   */
+  private static ImageOperation operation(String filter, Raster image) {
+    return filter.equals("blur") ? new Blur(image) : new Sharpen(image);
+  }
+}
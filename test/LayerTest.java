@@ -9,8 +9,11 @@ import model.CheckerBoardImage;
 import model.ColorPixel;
 import model.ImageUtil;
 import model.Layer;
+import model.OffHeapRaster;
 import model.Pixel;
 import model.PositionPixel;
+import model.Raster;
+import model.RasterLayout;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -429,4 +432,53 @@ public class LayerTest {
     Layer layer = new Layer("first");
     assertEquals("first", layer.getName());
   }
-}
\ No newline at end of file
+
+  // test changing a snapshot of the layer does not change the layer
+  @Test
+  public void testLayerRasterSnapshot() {
+    Layer layer = new Layer("layer1");
+    layer.setLayerImageToAnotherImage(new CheckerBoardImage(1, 2, 2,
+            Arrays.asList(ColorPixel.of(0, 0, 0), ColorPixel.of(255, 255, 255)))
+            .createImageProgram());
+    Raster snapshot = layer.layerRaster();
+    snapshot.setRGB(0, 0, 0x123456);
+    assertEquals(0x123456, snapshot.getRGB(0, 0));
+    assertEquals(0, layer.layerRaster().getRGB(0, 0));
+    snapshot.release();
+    assertEquals(0, layer.layerRaster().getRGB(0, 0));
+  }
+
+  // test reading the image of a layer keeps no reference, so replacing it frees its memory
+  @Test
+  public void testLayerImageKeepsNoReference() {
+    Layer layer = new Layer("layer1");
+    layer.setLayout(RasterLayout.OFF_HEAP);
+    OffHeapRaster offHeap = new OffHeapRaster(3, 2);
+    offHeap.setRGB(1, 2, 0x123456);
+    layer.setLayerRaster(offHeap);
+    List<List<Pixel>> image = layer.layerImage();
+    layer.layerImage();
+    layer.releaseImage();
+    assertTrue(offHeap.isReleased());
+    assertEquals(0x123456, image.get(1).get(2).getColor().getRGB());
+  }
+
+  // test a palette layer keeps an image with too many colors for a palette interleaved
+  @Test
+  public void testPaletteLayoutTooManyColors() {
+    Layer layer = new Layer("layer1");
+    Raster image = RasterLayout.PLANAR.create(20, 20);
+    for (int i = 0; i < 300; i++) {
+      image.setRGB(i / 20, i % 20, i * 7);
+    }
+    layer.setLayerRaster(image);
+    layer.setLayout(RasterLayout.PALETTE);
+    for (int k = 0; k < 2; k++) {
+      Raster snapshot = layer.layerRaster();
+      assertEquals(RasterLayout.INTERLEAVED, snapshot.getLayout());
+      assertEquals(299 * 7, snapshot.getRGB(14, 19));
+      assertEquals(0, snapshot.getRGB(19, 19));
+      snapshot.release();
+    }
+  }
+}
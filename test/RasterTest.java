@@ -0,0 +1,1146 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Blur;
+import model.BoxBlur;
+import model.CacheBlocking;
+import model.CheckerBoardImage;
+import model.ColorChain;
+import model.ColorPixel;
+import model.ComputeBackend;
+import model.Convolution;
+import model.CopyOnWriteRaster;
+import model.EdgeMode;
+import model.FftConvolution;
+import model.FilterFusion;
+import model.Filter;
+import model.FloatRaster;
+import model.GaussianBlur;
+import model.Grayscale;
+import model.MappedRaster;
+import model.Median;
+import model.OffHeapRaster;
+import model.PaletteRaster;
+import model.PackedRaster;
+import model.Parallelism;
+import model.Pixel;
+import model.PlanarRaster;
+import model.PositionPixel;
+import model.Raster;
+import model.RasterAdapter;
+import model.RasterArena;
+import model.RasterCompactor;
+import model.RasterLayout;
+import model.RasterView;
+import model.RunLengthRaster;
+import model.Sepia;
+import model.Sharpen;
+import model.TiledRaster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class is a test class for {@code PackedRaster} and {@code RasterAdapter} classes to ensure
+ * that images stored as rasters behave like images in sequence of pixel form.
+ */
+public class RasterTest {
+
+  // test constructor - invalid width
+  @Test(expected = IllegalArgumentException.class)
+  public void testPackedRasterInvalidWidth() {
+    new PackedRaster(0, 3);
+  }
+
+  // test constructor - invalid height
+  @Test(expected = IllegalArgumentException.class)
+  public void testPackedRasterInvalidHeight() {
+    new PackedRaster(3, -1);
+  }
+
+  // test setRGB and getRGB methods
+  @Test
+  public void testSetAndGetRGB() {
+    Raster raster = new PackedRaster(3, 2);
+    assertEquals(3, raster.getWidth());
+    assertEquals(2, raster.getHeight());
+    assertEquals(0, raster.getRGB(1, 2));
+    raster.setRGB(1, 2, 0x10FF20);
+    assertEquals(0x10FF20, raster.getRGB(1, 2));
+    assertEquals(0, raster.getRGB(0, 2));
+  }
+
+  // test getRGB method - position outside of the image
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetRGBOutside() {
+    new PackedRaster(3, 2).getRGB(0, 3);
+  }
+
+  // test readRow, writeRow and copy methods
+  @Test
+  public void testRowsAndCopy() {
+    Raster raster = new PackedRaster(2, 2);
+    raster.writeRow(1, new int[]{0x010203, 0x040506});
+    Raster copy = raster.copy();
+    raster.setRGB(1, 0, 0);
+    int[] row = new int[2];
+    copy.readRow(1, row);
+    assertArrayEquals(new int[]{0x010203, 0x040506}, row);
+  }
+
+  // test toRaster and the adapter - same pixels in both forms
+  @Test
+  public void testAdapterRoundTrip() {
+    List<List<Pixel>> image = new ArrayList<List<Pixel>>();
+    image.add(Arrays.asList(new Pixel(new PositionPixel(0, 0), new ColorPixel(1, 2, 3)),
+            new Pixel(new PositionPixel(0, 1), new ColorPixel(4, 5, 6))));
+    image.add(Arrays.asList(new Pixel(new PositionPixel(1, 0), new ColorPixel(7, 8, 9)),
+            new Pixel(new PositionPixel(1, 1), new ColorPixel(255, 0, 128))));
+    Raster raster = RasterAdapter.toRaster(image);
+    assertEquals(0xFF0080, raster.getRGB(1, 1));
+    List<List<Pixel>> adapted = new RasterAdapter(raster);
+    assertArrayEquals(image.toArray(), adapted.toArray());
+    assertSame(raster, RasterAdapter.toRaster(adapted));
+  }
+
+  // test toRaster method - rows of different length
+  @Test(expected = IllegalArgumentException.class)
+  public void testToRasterJaggedImage() {
+    List<List<Pixel>> image = new ArrayList<List<Pixel>>();
+    image.add(Arrays.asList(new Pixel(new PositionPixel(0, 0), new ColorPixel(1, 2, 3)),
+            new Pixel(new PositionPixel(0, 1), new ColorPixel(4, 5, 6))));
+    image.add(Arrays.asList(new Pixel(new PositionPixel(1, 0), new ColorPixel(7, 8, 9))));
+    RasterAdapter.toRaster(image);
+  }
+
+  // test checkerboard - raster and sequence of pixels produce the same colors
+  @Test
+  public void testCheckerBoardRaster() {
+    CheckerBoardImage board = new CheckerBoardImage(2, 3, 2,
+            Arrays.asList(new ColorPixel(0, 0, 0), new ColorPixel(255, 255, 255)));
+    Raster raster = board.createImageRaster();
+    List<List<Pixel>> image = board.createImageProgram();
+    assertEquals(6, raster.getWidth());
+    assertEquals(4, raster.getHeight());
+    for (int i = 0; i < raster.getHeight(); i++) {
+      for (int j = 0; j < raster.getWidth(); j++) {
+        assertEquals(raster.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+  }
+
+  // test blur - the operation works the same on both forms of the image
+  @Test
+  public void testBlurOnRaster() {
+    Raster raster = new PackedRaster(3, 3);
+    raster.setRGB(1, 1, 0xFFFFFF);
+    Raster blurred = new Blur(raster).applyRaster();
+    assertEquals(0x404040, blurred.getRGB(1, 1));
+    assertEquals(0x202020, blurred.getRGB(0, 1));
+    assertEquals(0x101010, blurred.getRGB(0, 0));
+    assertArrayEquals(new Blur(new RasterAdapter(raster)).apply().toArray(),
+            new RasterAdapter(blurred).toArray());
+  }
+
+  // test planar raster - conversion keeps the pixels
+  @Test
+  public void testPlanarConversion() {
+    Raster raster = new PackedRaster(2, 2);
+    raster.writeRow(0, new int[]{0x010203, 0xA0B0C0});
+    raster.writeRow(1, new int[]{0xFFFFFF, 0x000080});
+    Raster planar = RasterLayout.PLANAR.convert(raster);
+    assertEquals(RasterLayout.PLANAR, planar.getLayout());
+    assertEquals(0xA0B0C0, planar.getRGB(0, 1));
+    assertSame(planar, PlanarRaster.of(planar));
+    int[] row = new int[2];
+    RasterLayout.INTERLEAVED.convert(planar).readRow(1, row);
+    assertArrayEquals(new int[]{0xFFFFFF, 0x000080}, row);
+  }
+
+  // test planar raster - operations give the same result as on a packed raster
+  @Test
+  public void testPlanarOperations() {
+    Raster raster = pattern(7, 5, 7, 1, 0x050A0F);
+    Raster planar = PlanarRaster.of(raster);
+    assertArrayEquals(new Sharpen(raster).apply().toArray(),
+            new Sharpen(planar).apply().toArray());
+    assertArrayEquals(new Sepia(raster).apply().toArray(),
+            new Sepia(planar).apply().toArray());
+    assertEquals(RasterLayout.PLANAR, new Blur(planar).applyRaster().getLayout());
+  }
+
+  // test operations on an off-heap image give the same result as on the heap
+  @Test
+  public void testOffHeapOperations() {
+    Raster raster = pattern(7, 5, 7, 1, 0x050A0F);
+    OffHeapRaster offHeap = OffHeapRaster.of(raster);
+    assertEquals(raster.getRGB(3, 4), offHeap.getRGB(3, 4));
+    assertArrayEquals(new Blur(raster).apply().toArray(),
+            new Blur(offHeap).apply().toArray());
+    assertArrayEquals(new Sepia(raster).apply().toArray(),
+            new Sepia(offHeap).apply().toArray());
+    assertEquals(RasterLayout.OFF_HEAP, new Sharpen(offHeap).applyRaster().getLayout());
+    offHeap.release();
+    assertTrue(offHeap.isReleased());
+    assertEquals(0, offHeap.getByteSize());
+  }
+
+  // test an image cannot be used after it was released
+  @Test(expected = IllegalStateException.class)
+  public void testOffHeapReleased() {
+    Raster raster = new OffHeapRaster(2, 2);
+    raster.release();
+    raster.getRGB(0, 0);
+  }
+
+  // test an image released while another thread reads it ends the reads with an exception
+  @Test
+  public void testOffHeapReleasedWhileRead() throws InterruptedException {
+    final OffHeapRaster offHeap = new OffHeapRaster(64, 64);
+    final boolean[] stopped = new boolean[1];
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        int[] row = new int[64];
+        try {
+          for (int k = 0; ; k++) {
+            offHeap.readRow(k % 64, row);
+          }
+        } catch (IllegalStateException e) {
+          stopped[0] = true;
+        }
+      }
+    });
+    reader.start();
+    offHeap.release();
+    reader.join(10000);
+    assertTrue(stopped[0]);
+  }
+
+  // test closing an arena releases all of its images
+  @Test
+  public void testArenaClose() {
+    RasterArena arena = new RasterArena();
+    OffHeapRaster first = arena.allocate(4, 3);
+    Raster second = first.copy();
+    assertEquals(72, arena.getByteSize());
+    arena.close();
+    assertTrue(first.isReleased());
+    assertTrue(((OffHeapRaster) second).isReleased());
+    assertEquals(0, arena.getByteSize());
+  }
+
+  // test snapshots share the pixels and copy only the rows that change
+  @Test
+  public void testCopyOnWriteSnapshots() {
+    Raster raster = new PackedRaster(3, 2);
+    raster.setRGB(0, 0, 0x112233);
+    raster.setRGB(1, 2, 0x445566);
+    CopyOnWriteRaster first = CopyOnWriteRaster.share(raster);
+    assertFalse(first.isShared());
+    Raster second = first.copy();
+    assertTrue(first.isShared());
+    second.setRGB(0, 1, 0xFFFFFF);
+    assertEquals(0xFFFFFF, second.getRGB(0, 1));
+    assertEquals(0x112233, second.getRGB(0, 0));
+    assertEquals(0, first.getRGB(0, 1));
+    assertEquals(0, raster.getRGB(0, 1));
+    int[] row = new int[3];
+    second.readRow(1, row);
+    assertArrayEquals(new int[]{0, 0, 0x445566}, row);
+    second.release();
+    assertFalse(first.isShared());
+  }
+
+  // test the shared image is released with the last snapshot
+  @Test
+  public void testCopyOnWriteRelease() {
+    OffHeapRaster offHeap = new OffHeapRaster(2, 2);
+    CopyOnWriteRaster first = CopyOnWriteRaster.share(offHeap);
+    Raster second = first.copy();
+    first.release();
+    assertFalse(offHeap.isReleased());
+    assertEquals(0, second.getRGB(1, 1));
+    second.release();
+    assertTrue(offHeap.isReleased());
+  }
+
+  // test operations on a tiled image give the same result as on a packed image
+  @Test
+  public void testTiledOperations() {
+    Raster raster = new PackedRaster(16, 9);
+    for (int i = 2; i < 6; i++) {
+      for (int j = 3; j < 7; j++) {
+        raster.setRGB(i, j, (i * 16 + j) * 0x050A0F);
+      }
+    }
+    TiledRaster tiled = new TiledRaster(16, 9, 4);
+    for (int i = 0; i < 9; i++) {
+      int[] row = new int[16];
+      raster.readRow(i, row);
+      tiled.writeRow(i, row);
+    }
+    assertEquals(4, tiled.getAllocatedTileCount());
+    assertArrayEquals(new Blur(raster).apply().toArray(),
+            new Blur(tiled).apply().toArray());
+    assertArrayEquals(new Sharpen(raster).apply().toArray(),
+            new Sharpen(tiled).apply().toArray());
+    assertArrayEquals(new Sepia(raster).apply().toArray(),
+            new Sepia(tiled).apply().toArray());
+    TiledRaster blurred = (TiledRaster) new Blur(tiled).applyRaster();
+    assertTrue(blurred.isTileAllocated(1, 1));
+    assertFalse(blurred.isTileAllocated(0, 3));
+  }
+
+  // test black pixels do not allocate tiles
+  @Test
+  public void testTiledLazyAllocation() {
+    TiledRaster tiled = new TiledRaster(600, 300);
+    assertEquals(3, tiled.getTilesAcross());
+    assertEquals(2, tiled.getTilesDown());
+    tiled.setRGB(10, 10, 0);
+    tiled.writeRow(20, new int[600]);
+    assertEquals(0, tiled.getAllocatedTileCount());
+    tiled.setRGB(299, 599, 0xABCDEF);
+    assertEquals(1, tiled.getAllocatedTileCount());
+    assertEquals(0xABCDEF, tiled.getRGB(299, 599));
+    assertEquals(0, tiled.getRGB(0, 0));
+    assertEquals(0xABCDEF, tiled.copy().getRGB(299, 599));
+  }
+
+  // test a float image keeps values outside of the range and rounds them when read
+  @Test
+  public void testFloatSamples() {
+    FloatRaster floats = new FloatRaster(2, 1);
+    floats.setSample(0, 0, 0, 300.5f);
+    floats.setSample(0, 0, 1, -4.0f);
+    floats.setSample(0, 0, 2, 99.5f);
+    assertEquals(300.5f, floats.getSample(0, 0, 0), 0.0);
+    assertEquals(0xFF0064, floats.getRGB(0, 0));
+    floats.setRGB(0, 1, 0x102030);
+    assertEquals(32.0f, floats.getSample(0, 1, 1), 0.0);
+  }
+
+  // test chained operations on a float image round only once
+  @Test
+  public void testFloatChain() {
+    Raster raster = new PackedRaster(1, 1);
+    raster.setRGB(0, 0, 0x010203);
+    FloatRaster floats = FloatRaster.of(raster);
+    Raster blurred = new Blur(floats).applyRaster();
+    assertEquals(RasterLayout.FLOAT, blurred.getLayout());
+    assertEquals(0.25f, ((FloatRaster) blurred).getSample(0, 0, 0), 0.0);
+    assertEquals(new Blur(raster).applyRaster().getRGB(0, 0), blurred.getRGB(0, 0));
+    Raster twice = new Sharpen(new Sharpen(floats).applyRaster()).applyRaster();
+    assertEquals(3.0f, ((FloatRaster) twice).getSample(0, 0, 2), 0.0);
+  }
+
+  // test a mapped image works like a packed image and deletes its file when released
+  @Test
+  public void testMappedRaster() {
+    Raster raster = pattern(5, 4, 5, 1, 0x0A0B0C);
+    MappedRaster mapped = MappedRaster.of(raster);
+    assertTrue(mapped.getFile().exists());
+    assertEquals(raster.getRGB(2, 3), mapped.getRGB(2, 3));
+    assertArrayEquals(new Sharpen(raster).apply().toArray(),
+            new Sharpen(mapped).apply().toArray());
+    mapped.release();
+    assertTrue(mapped.isReleased());
+    assertFalse(mapped.getFile().exists());
+  }
+
+  // test a view reads and writes the image under it without copying
+  @Test
+  public void testRasterView() {
+    Raster raster = pattern(6, 5, 6, 1, 1);
+    RasterView view = new RasterView(raster, 1, 2, 3, 2);
+    assertEquals(8, view.getRGB(0, 0));
+    int[] row = new int[3];
+    view.readRow(1, row);
+    assertArrayEquals(new int[]{14, 15, 16}, row);
+    view.setRGB(1, 2, 0xFFFFFF);
+    assertEquals(0xFFFFFF, raster.getRGB(2, 4));
+    RasterView inner = new RasterView(view, 1, 1, 2, 1);
+    assertEquals(2, inner.getRowOffset());
+    assertEquals(3, inner.getColumnOffset());
+    assertEquals(15, inner.getRGB(0, 0));
+    Raster copy = view.copy();
+    copy.setRGB(0, 0, 0);
+    assertEquals(8, raster.getRGB(1, 2));
+  }
+
+  // test operations can read a view and write their result into it
+  @Test
+  public void testOperationsOnRegion() {
+    Raster raster = pattern(8, 6, 8, 1, 0x030507);
+    RasterView view = new RasterView(raster, 1, 2, 4, 4);
+    Raster expected = new Blur(view.copy()).applyRaster();
+    new Blur(view).applyInto(view);
+    assertArrayEquals(new RasterAdapter(expected).toArray(), new RasterAdapter(view).toArray());
+    assertEquals(7 * 0x030507, raster.getRGB(0, 7));
+    Raster sepia = new Sepia(view.copy()).applyRaster();
+    new Sepia(view).applyInto(view);
+    assertArrayEquals(new RasterAdapter(sepia).toArray(), new RasterAdapter(view).toArray());
+  }
+
+  // test a view cannot reach outside of the image
+  @Test(expected = IllegalArgumentException.class)
+  public void testRasterViewOutside() {
+    new RasterView(new PackedRaster(3, 3), 1, 1, 3, 1);
+  }
+
+  // test a palette image grows its indexes and expands when it has too many colors
+  @Test
+  public void testPaletteRaster() {
+    PaletteRaster palette = new PaletteRaster(20, 20);
+    assertEquals(1, palette.getBitsPerPixel());
+    palette.setRGB(3, 4, 0x123456);
+    assertEquals(2, palette.getColorCount());
+    palette.setRGB(5, 6, 0x654321);
+    assertEquals(2, palette.getBitsPerPixel());
+    assertEquals(0x123456, palette.getRGB(3, 4));
+    assertEquals(0x654321, palette.getRGB(5, 6));
+    for (int i = 0; i < 300; i++) {
+      palette.setRGB(i / 20, i % 20, i * 7);
+    }
+    assertTrue(palette.isExpanded());
+    assertEquals(299 * 7, palette.getRGB(14, 19));
+    assertEquals(106 * 7, palette.getRGB(5, 6));
+    assertEquals(0, palette.getRGB(19, 19));
+  }
+
+  // test a run-length image reads and writes runs of colors
+  @Test
+  public void testRunLengthRaster() {
+    RunLengthRaster runs = new RunLengthRaster(10, 2);
+    runs.writeRow(0, new int[]{1, 1, 1, 2, 2, 3, 3, 3, 3, 3});
+    assertEquals(4, runs.getRunCount());
+    assertEquals(1, runs.getRGB(0, 2));
+    assertEquals(2, runs.getRGB(0, 3));
+    assertEquals(3, runs.getRGB(0, 9));
+    runs.setRGB(1, 5, 9);
+    int[] row = new int[10];
+    runs.readRow(1, row);
+    assertArrayEquals(new int[]{0, 0, 0, 0, 0, 9, 0, 0, 0, 0}, row);
+    Raster copy = runs.copy();
+    copy.setRGB(0, 0, 5);
+    assertEquals(1, runs.getRGB(0, 0));
+  }
+
+  // test compact forms are chosen for images with few colors or long runs
+  @Test
+  public void testCompactor() {
+    Raster board = new CheckerBoardImage(1, 40, 40,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster();
+    assertEquals(RasterLayout.PALETTE, board.getLayout());
+    assertEquals(1, ((PaletteRaster) board).getBitsPerPixel());
+    Raster large = new CheckerBoardImage(1000, 2, 2,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster();
+    assertEquals(RasterLayout.RUN_LENGTH, large.getLayout());
+    Raster noisy = pattern(50, 50, 50, 1, 1);
+    assertSame(noisy, RasterCompactor.compact(noisy));
+    assertArrayEquals(new Blur(PackedRaster.of(board)).apply().toArray(),
+            new Blur(board).apply().toArray());
+  }
+
+  // test converting a list with a null pixel is rejected
+  @Test(expected = IllegalArgumentException.class)
+  public void testToRasterNullPixel() {
+    List<List<Pixel>> image = new ArrayList<List<Pixel>>();
+    image.add(Arrays.asList(new Pixel(new PositionPixel(0, 0), ColorPixel.of(1, 2, 3)), null));
+    RasterAdapter.toRaster(image);
+  }
+
+  // test an adapted raster is handed over without a copy or a scan
+  @Test
+  public void testToRasterAdapter() {
+    Raster raster = new PackedRaster(4, 4);
+    assertSame(raster, RasterAdapter.toRaster(new RasterAdapter(raster)));
+    assertSame(raster, RasterAdapter.toRaster(new Blur(raster).imageObserver()));
+  }
+
+  // test map method of EdgeMode
+  @Test
+  public void testEdgeModeMap() {
+    assertEquals(-1, EdgeMode.ZERO.map(-1, 5));
+    assertEquals(4, EdgeMode.ZERO.map(4, 5));
+    assertEquals(0, EdgeMode.CLAMP.map(-3, 5));
+    assertEquals(4, EdgeMode.CLAMP.map(7, 5));
+    assertEquals(2, EdgeMode.MIRROR.map(-2, 5));
+    assertEquals(3, EdgeMode.MIRROR.map(5, 5));
+    assertEquals(0, EdgeMode.MIRROR.map(-2, 1));
+    assertEquals(4, EdgeMode.WRAP.map(-1, 5));
+    assertEquals(1, EdgeMode.WRAP.map(6, 5));
+    assertEquals(EdgeMode.MIRROR, EdgeMode.fromName("mirror"));
+  }
+
+  // test filter of Blur - only black edges darken a single colored image
+  @Test
+  public void testBlurEdgeModes() {
+    Raster image = filled(5, 4, 0x808080);
+    assertEquals(0x484848, new Blur(image, EdgeMode.ZERO).applyRaster().getRGB(0, 0));
+    for (EdgeMode mode : new EdgeMode[]{EdgeMode.CLAMP, EdgeMode.MIRROR, EdgeMode.WRAP}) {
+      Raster result = new Blur(image, mode).applyRaster();
+      assertEquals(0x808080, result.getRGB(0, 0));
+      assertEquals(0x808080, result.getRGB(3, 4));
+    }
+  }
+
+  // test filter of Sharpen - every layout and the filter in place give the same edges
+  @Test
+  public void testSharpenEdgeModesLayouts() {
+    Raster image = pattern(7, 6, 37, 91, 0x010305);
+    for (EdgeMode mode : EdgeMode.values()) {
+      Raster expected = new Sharpen(image, mode).applyRaster();
+      for (RasterLayout layout : new RasterLayout[]{RasterLayout.PLANAR, RasterLayout.TILED}) {
+        assertRasterEquals(expected, new Sharpen(layout.convert(image), mode).applyRaster());
+      }
+      Raster target = image.copy();
+      new Sharpen(target, mode).applyInto(target);
+      assertRasterEquals(expected, target);
+    }
+    assertRasterEquals(new Sharpen(image).applyRaster(),
+            new Sharpen(image, EdgeMode.ZERO).applyRaster());
+  }
+
+  // test filter of Blur - the separable passes give the same image as the full kernel
+  @Test
+  public void testBlurSeparable() {
+    Raster image = pattern(9, 8, 53, 29, 0x070B0D);
+    Raster expected = new Blur(RasterLayout.TILED.convert(image)).applyRaster();
+    assertRasterEquals(expected, new Blur(image).applyRaster());
+    assertRasterEquals(expected, new Blur(RasterLayout.PLANAR.convert(image)).applyRaster());
+    assertRasterEquals(expected, new Blur(RasterLayout.FLOAT.convert(image)).applyRaster());
+    Raster target = image.copy();
+    new Blur(target).applyInto(target);
+    assertRasterEquals(expected, target);
+  }
+
+  // test filter of Blur - the integer weights round halves up like Math.round
+  @Test
+  public void testBlurFixedPointRounding() {
+    Raster image = new PackedRaster(3, 3);
+    image.setRGB(1, 1, 0x080818);
+    for (RasterLayout layout : new RasterLayout[]{RasterLayout.INTERLEAVED,
+        RasterLayout.PLANAR, RasterLayout.TILED}) {
+      Raster blurred = new Blur(layout.convert(image)).applyRaster();
+      assertEquals(0x020206, blurred.getRGB(1, 1));
+      assertEquals(0x010103, blurred.getRGB(0, 1));
+      assertEquals(0x010102, blurred.getRGB(0, 0));
+    }
+  }
+
+  // test ComputeBackend - the lanes backend gives the same images as the scalar one
+  @Test
+  public void testComputeBackends() {
+    Raster image = pattern(23, 11, 97, 31, 0x0B0503);
+    ComputeBackend backend = ComputeBackend.getSelected();
+    try {
+      for (EdgeMode mode : EdgeMode.values()) {
+        ComputeBackend.select(ComputeBackend.SCALAR);
+        Raster blurred = new Blur(image, mode).applyRaster();
+        Raster sharpened = new Sharpen(image, mode).applyRaster();
+        Raster sepia = new Sepia(image).applyRaster();
+        ComputeBackend.select(ComputeBackend.LANES);
+        assertRasterEquals(blurred, new Blur(image, mode).applyRaster());
+        assertRasterEquals(sharpened, new Sharpen(image, mode).applyRaster());
+        assertRasterEquals(sepia, new Sepia(image).applyRaster());
+      }
+    } finally {
+      ComputeBackend.select(backend);
+    }
+    String report = ComputeBackend.report();
+    assertTrue(report.startsWith("Backend: " + backend.getName() + " (plain Java loops)"));
+    assertTrue(report.contains(ComputeBackend.isVectorModuleAvailable()
+            ? "vector module: detected but not used" : "vector module: not detected"));
+  }
+
+  // test ComputeBackend - the lanes color matrices give the same colors for many colors
+  @Test
+  public void testComputeBackendColors() {
+    Raster image = pattern(512, 256, 512, 1, 0x00403F);
+    ComputeBackend backend = ComputeBackend.getSelected();
+    try {
+      ComputeBackend.select(ComputeBackend.SCALAR);
+      Raster sepia = new Sepia(image).applyRaster();
+      Raster gray = new Grayscale(image).applyRaster();
+      ComputeBackend.select(ComputeBackend.LANES);
+      assertRasterEquals(sepia, new Sepia(image).applyRaster());
+      assertRasterEquals(gray, new Grayscale(image).applyRaster());
+    } finally {
+      ComputeBackend.select(backend);
+    }
+  }
+
+  // test CacheBlocking - the tiles give the same images as whole rows
+  @Test
+  public void testCacheBlocking() {
+    Raster image = pattern(41, 19, 43, 89, 0x050D07);
+    Raster shared = CopyOnWriteRaster.share(image.copy());
+    ComputeBackend backend = ComputeBackend.getSelected();
+    try {
+      ComputeBackend.select(ComputeBackend.LANES);
+      for (EdgeMode mode : EdgeMode.values()) {
+        CacheBlocking.setEnabled(false);
+        Raster blurred = new Blur(image, mode).applyRaster();
+        Raster sharpened = new Sharpen(image, mode).applyRaster();
+        CacheBlocking.setEnabled(true);
+        CacheBlocking.setTileSize(7, 3);
+        assertRasterEquals(blurred, new Blur(image, mode).applyRaster());
+        assertRasterEquals(sharpened, new Sharpen(image, mode).applyRaster());
+        assertRasterEquals(sharpened, new Sharpen(shared, mode).applyRaster());
+      }
+    } finally {
+      ComputeBackend.select(backend);
+      CacheBlocking.setEnabled(true);
+      CacheBlocking.setTileSize(0, CacheBlocking.DEFAULT_TILE_HEIGHT);
+    }
+    assertTrue(CacheBlocking.getTileWidth(5) >= 64);
+  }
+
+  // test Parallelism - the bands give the same images as a single thread
+  @Test
+  public void testParallelBands() {
+    Raster image = pattern(37, 29, 71, 13, 0x030507);
+    RasterLayout[] layouts = {RasterLayout.INTERLEAVED, RasterLayout.PLANAR,
+        RasterLayout.TILED, RasterLayout.FLOAT};
+    int threads = Parallelism.getParallelism();
+    long cutoff = Parallelism.getCutoff();
+    try {
+      for (RasterLayout layout : layouts) {
+        Raster converted = layout.convert(image);
+        Parallelism.setParallelism(1);
+        Raster blurred = new Blur(converted).applyRaster();
+        Raster sharpened = new Sharpen(converted, EdgeMode.MIRROR).applyRaster();
+        Raster sepia = new Sepia(converted).applyRaster();
+        Parallelism.setParallelism(4);
+        Parallelism.setCutoff(0);
+        assertRasterEquals(blurred, new Blur(converted).applyRaster());
+        assertRasterEquals(sharpened, new Sharpen(converted, EdgeMode.MIRROR).applyRaster());
+        assertRasterEquals(sepia, new Sepia(converted).applyRaster());
+        Raster target = converted.copy();
+        new Blur(target).applyInto(target);
+        assertRasterEquals(blurred, target);
+      }
+    } finally {
+      Parallelism.setParallelism(threads);
+      Parallelism.setCutoff(cutoff);
+    }
+  }
+
+  // test FftConvolution - the transform gives the images of the direct sums up to rounding
+  @Test
+  public void testFftConvolution() {
+    Raster image = pattern(41, 37, 97, 31, 0x0B0503);
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    for (int i = 0; i < 17; i++) {
+      List<Double> row = new ArrayList<Double>();
+      for (int j = 0; j < 17; j++) {
+        row.add(((i * 7 + j * 3) % 11 - 2) / 600.0);
+      }
+      kernel.add(row);
+    }
+    int threshold = FftConvolution.getThreshold();
+    try {
+      for (EdgeMode mode : EdgeMode.values()) {
+        FftConvolution.setThreshold(100);
+        Raster direct = new KernelFilter(image, mode, kernel).applyRaster();
+        FftConvolution.setThreshold(17);
+        Raster transformed = new KernelFilter(image, mode, kernel).applyRaster();
+        Raster target = RasterLayout.TILED.convert(image);
+        new KernelFilter(target, mode, kernel).applyInto(target);
+        assertRasterClose(direct, transformed, 1);
+        assertRasterClose(direct, target, 1);
+      }
+    } finally {
+      FftConvolution.setThreshold(threshold);
+    }
+  }
+
+  // test FftConvolution - a large kernel of exact integer weights is still summed exactly
+  @Test
+  public void testFftConvolutionExactKernel() {
+    Raster image = pattern(41, 37, 97, 31, 0x0B0503);
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    for (int i = 0; i < 17; i++) {
+      List<Double> row = new ArrayList<Double>();
+      for (int j = 0; j < 17; j++) {
+        row.add(((i * 7 + j * 3) % 11 - 2) / 1024.0);
+      }
+      kernel.add(row);
+    }
+    int threshold = FftConvolution.getThreshold();
+    try {
+      FftConvolution.setThreshold(100);
+      Raster direct = new Convolution(image, kernel).applyRaster();
+      FftConvolution.setThreshold(17);
+      Convolution convolution = new Convolution(image, kernel);
+      assertEquals("Strategy: direct, about 289 multiplications per channel of a pixel.",
+              convolution.describe());
+      assertRasterEquals(direct, convolution.applyRaster());
+    } finally {
+      FftConvolution.setThreshold(threshold);
+    }
+  }
+
+  // test Convolution - a kernel of two separable terms is filtered in two passes of each
+  @Test
+  public void testConvolutionLowRank() {
+    int[] a = {1, 2, 3, 4, 3, 2, 1};
+    int[] b = {1, 0, -1, 0, -1, 0, 1};
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    for (int i = 0; i < 7; i++) {
+      List<Double> row = new ArrayList<Double>();
+      for (int j = 0; j < 7; j++) {
+        row.add((a[i] * a[j] + b[i] * b[j]) / 257.0);
+      }
+      kernel.add(row);
+    }
+    Raster image = pattern(15, 13, 97, 31, 0x0B0503);
+    Convolution convolution = new Convolution(image, kernel);
+    assertEquals("Strategy: low-rank with 2 separable terms, about 28 multiplications per "
+            + "channel of a pixel instead of 49.", convolution.describe());
+    Raster convolved = convolution.applyRaster();
+    for (int i = 0; i < 13; i++) {
+      for (int j = 0; j < 15; j++) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+          double sum = 0.0;
+          for (int k = 0; k < 7; k++) {
+            for (int l = 0; l < 7; l++) {
+              if (i + k - 3 >= 0 && i + k - 3 < 13 && j + l - 3 >= 0 && j + l - 3 < 15) {
+                sum += ((image.getRGB(i + k - 3, j + l - 3) >> shift) & 0xFF)
+                        * kernel.get(k).get(l);
+              }
+            }
+          }
+          long expected = Math.min(255, Math.round(sum));
+          assertTrue(Math.abs(expected - ((convolved.getRGB(i, j) >> shift) & 0xFF)) <= 1);
+        }
+      }
+    }
+  }
+
+  // test Convolution - a kernel of even size is rejected
+  @Test(expected = IllegalArgumentException.class)
+  public void testConvolutionEvenKernel() {
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    kernel.add(Arrays.asList(0.5, 0.5));
+    kernel.add(Arrays.asList(0.5, 0.5));
+    new Convolution(new PackedRaster(2, 2), kernel);
+  }
+
+  // test BoxBlur - one box averages the square around a pixel and clamped edges keep a color
+  @Test
+  public void testBoxBlur() {
+    Raster image = new PackedRaster(9, 9);
+    image.setRGB(4, 4, 0x5A0000);
+    Raster blurred = new BoxBlur(image, 1, 1, EdgeMode.ZERO).applyRaster();
+    for (int i = 0; i < 9; i++) {
+      for (int j = 0; j < 9; j++) {
+        boolean inside = Math.abs(i - 4) <= 1 && Math.abs(j - 4) <= 1;
+        assertEquals(inside ? 0x0A0000 : 0, blurred.getRGB(i, j));
+      }
+    }
+    Raster plain = filled(20, 7, 0x336699);
+    assertRasterEquals(plain, new BoxBlur(plain, 12, 3, EdgeMode.CLAMP).applyRaster());
+    Raster target = image.copy();
+    new BoxBlur(target, 2).applyInto(target);
+    assertRasterEquals(new BoxBlur(image, 2).applyRaster(), target);
+  }
+
+  // test BoxBlur - bands of a wide box on several threads give the image of one thread
+  @Test
+  public void testBoxBlurBands() {
+    Raster image = new PackedRaster(31, 64);
+    for (int i = 0; i < 64; i++) {
+      for (int j = 0; j < 31; j++) {
+        image.setRGB(i, j, (i * 53 + j * 29) * 0x0D0B07 & 0xFFFFFF | 0x808080);
+      }
+    }
+    int threads = Parallelism.getParallelism();
+    long cutoff = Parallelism.getCutoff();
+    try {
+      Parallelism.setParallelism(1);
+      Raster expected = new BoxBlur(image, 9, 3, EdgeMode.MIRROR).applyRaster();
+      Parallelism.setParallelism(4);
+      Parallelism.setCutoff(0);
+      assertRasterEquals(expected, new BoxBlur(image, 9, 3, EdgeMode.MIRROR).applyRaster());
+    } finally {
+      Parallelism.setParallelism(threads);
+      Parallelism.setCutoff(cutoff);
+    }
+  }
+
+  // test GaussianBlur - the recursive filter is close to a Gaussian kernel on a smooth image
+  @Test
+  public void testGaussianBlur() {
+    Raster image = new PackedRaster(37, 29);
+    for (int i = 0; i < 29; i++) {
+      for (int j = 0; j < 37; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB(i * 8, j * 6, (i + j) * 4));
+      }
+    }
+    double sigma = 2.0;
+    List<List<Double>> kernel = new ArrayList<List<Double>>();
+    for (int i = -8; i <= 8; i++) {
+      List<Double> row = new ArrayList<Double>();
+      for (int j = -8; j <= 8; j++) {
+        row.add(Math.exp(-(i * i + j * j) / (2 * sigma * sigma)) / (2 * Math.PI * sigma * sigma));
+      }
+      kernel.add(row);
+    }
+    for (EdgeMode mode : new EdgeMode[]{EdgeMode.CLAMP, EdgeMode.MIRROR}) {
+      Raster expected = new Convolution(image, kernel, mode).applyRaster();
+      Raster blurred = new GaussianBlur(image, sigma, mode).applyRaster();
+      assertRasterClose(expected, blurred, 3);
+    }
+    Raster plain = filled(20, 7, 0x336699);
+    assertRasterEquals(plain, new GaussianBlur(plain, 40.0, EdgeMode.CLAMP).applyRaster());
+    Raster target = image.copy();
+    new GaussianBlur(target, 3.5).applyInto(target);
+    assertRasterEquals(new GaussianBlur(image, 3.5).applyRaster(), target);
+  }
+
+  // test FilterFusion - fused blurs stay within the tolerance of running them one by one
+  @Test
+  public void testFilterFusion() {
+    Raster image = channels(23, 17);
+    List<List<Double>> blur = new Blur(image).getKernel();
+    List<List<Double>> sharpen = new Sharpen(image).getKernel();
+    for (EdgeMode mode : EdgeMode.values()) {
+      FilterFusion fusion = new FilterFusion(image, Arrays.asList(blur, blur, blur), mode);
+      assertEquals(1, fusion.getPassCount());
+      Raster once = new Convolution(image, blur, mode).applyRaster();
+      Raster twice = new Convolution(once, blur, mode).applyRaster();
+      Raster expected = new Convolution(twice, blur, mode).applyRaster();
+      Raster fused = fusion.applyRaster();
+      assertRasterClose(expected, fused, 1);
+    }
+    try {
+      FilterFusion.setTolerance(0);
+      FilterFusion separate = new FilterFusion(image, Arrays.asList(blur, blur), EdgeMode.ZERO);
+      assertEquals(2, separate.getPassCount());
+      Raster blurredOnce = new Convolution(image, blur).applyRaster();
+      assertRasterEquals(new Convolution(blurredOnce, blur).applyRaster(),
+              separate.applyRaster());
+    } finally {
+      FilterFusion.setTolerance(FilterFusion.DEFAULT_TOLERANCE);
+    }
+    FilterFusion mixed = new FilterFusion(image, Arrays.asList(blur, sharpen), EdgeMode.ZERO);
+    assertEquals(2, mixed.getPassCount());
+    Raster blurred = new Convolution(image, blur).applyRaster();
+    assertRasterEquals(new Convolution(blurred, sharpen).applyRaster(), mixed.applyRaster());
+    assertEquals("Left 2 filters unfused. Filter 1 ran on its own. Filter 2 was not combined "
+            + "with filter 1, since that could change a channel by 3 levels. Filter 2 ran on "
+            + "its own.", mixed.describe());
+  }
+
+  // test FilterFusion - filters are combined by default only when that gives the same image
+  @Test
+  public void testFilterFusionExact() {
+    Raster image = channels(23, 17);
+    List<List<Double>> shift = Arrays.asList(Arrays.asList(0.0, 1.0, 0.0),
+            Arrays.asList(0.0, 0.0, 0.0), Arrays.asList(0.0, 0.0, 0.0));
+    List<List<Double>> blur = new Blur(image).getKernel();
+    FilterFusion fusion = new FilterFusion(image, Arrays.asList(shift, shift, blur),
+            EdgeMode.WRAP);
+    assertEquals(1, fusion.getPassCount());
+    assertEquals("Fused 3 filters into 1 pass. Filters 1 to 3 became one 7 by 7 kernel, "
+            + "the same as running them one by one.", fusion.describe());
+    Raster once = new Convolution(image, shift, EdgeMode.WRAP).applyRaster();
+    Raster twice = new Convolution(once, shift, EdgeMode.WRAP).applyRaster();
+    assertRasterEquals(new Convolution(twice, blur, EdgeMode.WRAP).applyRaster(),
+            fusion.applyRaster());
+  }
+
+  // test Median - the histograms give the medians of the squares and remove specks
+  @Test
+  public void testMedian() {
+    Raster image = new PackedRaster(13, 11);
+    for (int i = 0; i < 11; i++) {
+      for (int j = 0; j < 13; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB((i * 37 + j * 11) % 256, (i * j * 7) % 256,
+                (j * 53 + i * 29) % 256));
+      }
+    }
+    for (EdgeMode mode : EdgeMode.values()) {
+      for (int radius : new int[]{1, 2, 9}) {
+        Raster filtered = new Median(image, radius, mode).applyRaster();
+        for (int i = 0; i < 11; i++) {
+          for (int j = 0; j < 13; j++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+              List<Integer> values = new ArrayList<Integer>();
+              for (int p = i - radius; p <= i + radius; p++) {
+                for (int q = j - radius; q <= j + radius; q++) {
+                  int row = mode.map(p, 11);
+                  int column = mode.map(q, 13);
+                  values.add(row < 0 || column < 0 ? 0 : (image.getRGB(row, column) >> shift)
+                          & 0xFF);
+                }
+              }
+              Collections.sort(values);
+              assertEquals(values.get(values.size() / 2).intValue(),
+                      (filtered.getRGB(i, j) >> shift) & 0xFF);
+            }
+          }
+        }
+      }
+    }
+    Raster specks = new PackedRaster(9, 9);
+    for (int i = 0; i < 9; i++) {
+      for (int j = 0; j < 9; j++) {
+        specks.setRGB(i, j, (i * 9 + j) % 7 == 0 ? 0xFFFFFF : 0x336699);
+      }
+    }
+    Raster plain = filled(9, 9, 0x336699);
+    assertRasterEquals(plain, new Median(specks, 1, EdgeMode.CLAMP).applyRaster());
+    new Median(specks, 1, EdgeMode.CLAMP).applyInto(specks);
+    assertRasterEquals(plain, specks);
+  }
+
+  // test ColorTransformation - the table lookups give the rounding of the matrix as doubles
+  @Test
+  public void testColorMatrixTables() {
+    Raster image = new PackedRaster(256, 256);
+    for (int i = 0; i < 256; i++) {
+      for (int j = 0; j < 256; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB(i, j, (i * 7 + j * 13) % 256));
+      }
+    }
+    double[][] gray = {{0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722},
+        {0.2126, 0.7152, 0.0722}};
+    double[][] sepia = {{0.393, 0.769, 0.189}, {0.349, 0.686, 0.168},
+        {0.272, 0.534, 0.131}};
+    Raster[] results = {new Grayscale(image).applyRaster(), new Sepia(image).applyRaster()};
+    double[][][] matrices = {gray, sepia};
+    for (int m = 0; m < 2; m++) {
+      for (int i = 0; i < 256; i++) {
+        for (int j = 0; j < 256; j++) {
+          int rgb = image.getRGB(i, j);
+          int[] channels = {(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF};
+          int[] expected = new int[3];
+          for (int c = 0; c < 3; c++) {
+            expected[c] = (int) Math.round(channels[0] * matrices[m][c][0]
+                    + channels[1] * matrices[m][c][1] + channels[2] * matrices[m][c][2]);
+          }
+          assertEquals(ColorPixel.packRGB(expected[0], expected[1], expected[2]),
+                  results[m].getRGB(i, j));
+        }
+      }
+    }
+  }
+
+  // test ColorChain - an exact chain gives the images of the transformations one by one
+  @Test
+  public void testColorChain() {
+    Raster image = new PackedRaster(40, 30);
+    for (int i = 0; i < 30; i++) {
+      for (int j = 0; j < 40; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB(i * 8, j * 6, (i * j * 5) % 256));
+      }
+    }
+    List<List<Double>> gray = new Grayscale(image).getMatrix();
+    List<List<Double>> sepia = new Sepia(image).getMatrix();
+    List<List<List<Double>>> matrices = Arrays.asList(sepia, gray, sepia);
+    Raster once = new Sepia(image).applyRaster();
+    Raster twice = new Grayscale(once).applyRaster();
+    Raster expected = new Sepia(twice).applyRaster();
+    assertRasterEquals(expected, new ColorChain(image, matrices, true).applyRaster());
+    Raster planar = new PlanarRaster(40, 30);
+    Raster target = new PackedRaster(40, 30);
+    for (int i = 0; i < 30; i++) {
+      for (int j = 0; j < 40; j++) {
+        planar.setRGB(i, j, image.getRGB(i, j));
+      }
+    }
+    assertRasterEquals(expected, new ColorChain(planar, matrices, true).applyRaster());
+    new ColorChain(image, matrices, true).applyInto(target);
+    assertRasterEquals(expected, target);
+    ColorChain fused = new ColorChain(image, Arrays.asList(gray, gray), false);
+    assertEquals(0.2126 * 0.2126 + 0.7152 * 0.2126 + 0.0722 * 0.2126,
+            fused.getCombinedMatrix().get(0).get(0), 1e-12);
+    assertEquals("Fused 2 color transformations into one 3 by 4 matrix in one pass.",
+            fused.describe());
+    Raster grayTwice = new Grayscale(new Grayscale(image).applyRaster()).applyRaster();
+    Raster result = fused.applyRaster();
+    assertRasterClose(grayTwice, result, 1);
+    List<List<Double>> brighten = Arrays.asList(Arrays.asList(1.0, 0.0, 0.0, 20.0),
+            Arrays.asList(0.0, 1.0, 0.0, 20.0), Arrays.asList(0.0, 0.0, 1.0, 20.0));
+    Raster tiled = new TiledRaster(40, 30, 8);
+    tiled.setRGB(3, 3, 0xFF8000);
+    Raster brightened = new ColorChain(tiled, Arrays.asList(brighten), true).applyRaster();
+    assertEquals(0xFF9414, brightened.getRGB(3, 3));
+    assertEquals(0x141414, brightened.getRGB(29, 39));
+  }
+
+  // test ColorChain - an exact chain that never clamps runs as one matrix with the same images
+  @Test
+  public void testColorChainClampFree() {
+    Raster image = new PackedRaster(256, 64);
+    for (int i = 0; i < 64; i++) {
+      for (int j = 0; j < 256; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB(j, i * 4, (i * j * 5) % 256));
+      }
+    }
+    List<List<Double>> invert = Arrays.asList(Arrays.asList(-1.0, 0.0, 0.0, 255.0),
+            Arrays.asList(0.0, -1.0, 0.0, 255.0), Arrays.asList(0.0, 0.0, -1.0, 255.0));
+    List<List<Double>> sepia = new Sepia(image).getMatrix();
+    ColorChain chain = new ColorChain(image, Arrays.asList(invert, sepia), true);
+    assertEquals("Ran 2 color transformations as one 3 by 4 matrix in one pass, never "
+            + "clamping between them.", chain.describe());
+    Raster inverted = new ColorChain(image, Arrays.asList(invert), true).applyRaster();
+    Raster expected = new Sepia(inverted).applyRaster();
+    assertRasterEquals(expected, chain.applyRaster());
+    ComputeBackend backend = ComputeBackend.getSelected();
+    try {
+      ComputeBackend.select(ComputeBackend.LANES);
+      assertRasterEquals(expected, chain.applyRaster());
+    } finally {
+      ComputeBackend.select(backend);
+    }
+    assertEquals("Ran 2 color transformations in one pass, clamping between them.",
+            new ColorChain(image, Arrays.asList(sepia, invert), true).describe());
+  }
+
+  /**
+   * Builds an image whose pixel in row i and column j has the color
+   * (i * rowStep + j * columnStep) * spread, kept to the lowest 24 bits.
+   *
+   * @param width      the width of the image.
+   * @param height     the height of the image.
+   * @param rowStep    how much the color index grows from one row to the next.
+   * @param columnStep how much the color index grows from one column to the next.
+   * @param spread     the factor that spreads the color index over the three channels.
+   * @return the new image.
+   */
+  private static Raster pattern(int width, int height, int rowStep, int columnStep, int spread) {
+    Raster image = new PackedRaster(width, height);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        image.setRGB(i, j, (i * rowStep + j * columnStep) * spread & 0xFFFFFF);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Builds an image whose channels change apart from each other, the red one along both
+   * directions, the green one with the product of row and column and the blue one along the
+   * columns only.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return the new image.
+   */
+  private static Raster channels(int width, int height) {
+    Raster image = new PackedRaster(width, height);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        image.setRGB(i, j, ColorPixel.packRGB((i * 37 + j * 11) % 256, (i * j * 7) % 256,
+                (j * 53 + 5) % 256));
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Builds an image with every pixel of the same color.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @param rgb    the color of every pixel.
+   * @return the new image.
+   */
+  private static Raster filled(int width, int height, int rgb) {
+    Raster image = new PackedRaster(width, height);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        image.setRGB(i, j, rgb);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Checks that two images have the same size and the same pixels.
+   *
+   * @param expected the expected image.
+   * @param actual   the actual image.
+   */
+  private static void assertRasterEquals(Raster expected, Raster actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), actual.getRGB(i, j));
+      }
+    }
+  }
+
+  /**
+   * Checks that two images have the same size and that no channel of any pixel differs by more
+   * than the given number of levels.
+   *
+   * @param expected  the expected image.
+   * @param actual    the actual image.
+   * @param tolerance the largest difference allowed in a channel.
+   */
+  private static void assertRasterClose(Raster expected, Raster actual, int tolerance) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+          assertTrue(Math.abs(((expected.getRGB(i, j) >> shift) & 0xFF)
+                  - ((actual.getRGB(i, j) >> shift) & 0xFF)) <= tolerance);
+        }
+      }
+    }
+  }
+
+  /**
+   * This class represents a filter with a kernel given by the test.
+   */
+  private static class KernelFilter extends Filter {
+    private final List<List<Double>> kernel;
+
+    /**
+     * Constructs a filter of the given image with the given kernel.
+     *
+     * @param image    the image to filter.
+     * @param edgeMode the way to treat the pixels past the edges.
+     * @param kernel   the square kernel of odd size.
+     */
+    KernelFilter(Raster image, EdgeMode edgeMode, List<List<Double>> kernel) {
+      super(image, edgeMode);
+      this.kernel = kernel;
+    }
+
+    /**
+     * Filters the image into a new image.
+     *
+     * @return the filtered image.
+     */
+    Raster applyRaster() {
+      return filter(kernel);
+    }
+
+    /**
+     * Filters the image into the given image.
+     *
+     * @param target the image to write into.
+     */
+    void applyInto(Raster target) {
+      filter(kernel, target);
+    }
+  }
+}
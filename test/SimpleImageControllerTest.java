@@ -6,12 +6,26 @@ import static org.junit.Assert.assertTrue;
 
 import controller.ImageController;
 import controller.SimpleImageController;
+import model.Blur;
+import model.BoxBlur;
+import model.CacheBlocking;
 import model.CheckerBoardImage;
 import model.ColorPixel;
+import model.ComputeBackend;
+import model.EdgeMode;
+import model.GaussianBlur;
+import model.Grayscale;
 import model.ImageUtil;
+import model.Median;
 import model.MultiLayer;
+import model.Parallelism;
 import model.Pixel;
 import model.PositionPixel;
+import model.Raster;
+import model.RasterLayout;
+import model.ScratchPolicy;
+import model.Sepia;
+import model.Sharpen;
 
 import org.junit.Test;
 
@@ -845,4 +859,394 @@ public class SimpleImageControllerTest {
     assertTrue(model.getTopMostLayer().isCurrentLayer("second"));
     assertEquals(expectedMsg, out.toString());
   }
+
+  // test modelMultiLayers method - layout command keeps the result of operations the same
+  @Test
+  public void testLayoutCommand() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer layout has been successfully set to planar!\n" +
+            "The layer image has been successfully updated!\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nload checkerboard 2 3 3 255 0 0 0 0 255\n"
+            + "layout planar\nblur\nsepia");
+    assertEquals(RasterLayout.PLANAR, model.getTopMostLayer().getLayout());
+    assertEquals(RasterLayout.PLANAR, model.getTopMostLayer().layerRaster().getLayout());
+    List<List<Pixel>> expected = new Sepia(new Blur(new CheckerBoardImage(2, 3, 3,
+            Arrays.asList(new ColorPixel(255, 0, 0),
+                    new ColorPixel(0, 0, 255))).createImageProgram()).apply()).apply();
+    assertArrayEquals(expected.toArray(), model.getTopMostLayer().layerImage().toArray());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - layout command with unknown layout
+  @Test
+  public void testLayoutCommandInvalid() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "No such layout exists. Try again.\n" +
+            "Invalid inputs to set the layout. Try again.\n";
+    createImage("create layer first\nlayout diagonal\nlayout");
+    assertEquals(RasterLayout.INTERLEAVED, model.getTopMostLayer().getLayout());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - scratch command moves background layers to scratch files
+  @Test
+  public void testScratchCommand() {
+    String expectedMsg = "The scratch policy has been successfully set to background!\n" +
+            "The layer has been successfully created!\n" +
+            "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer has been successfully set invisible!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("scratch background\ncreate layer first\ncreate layer second\n"
+            + "load checkerboard 2 3 3 255 0 0 0 0 255\ninvisible first\n"
+            + "load checkerboard 1 2 2 0 0 0 255 255 255\nsepia");
+    assertTrue(model.getLayer(0).isScratch());
+    assertFalse(model.getLayer(1).isScratch());
+    assertEquals(RasterLayout.MAPPED, model.getLayer(0).layerRaster().getLayout());
+    assertEquals(RasterLayout.INTERLEAVED, model.getLayer(1).layerRaster().getLayout());
+    List<List<Pixel>> expected = new CheckerBoardImage(2, 3, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0),
+                    ColorPixel.of(0, 0, 255))).createImageProgram();
+    assertArrayEquals(expected.toArray(), model.getLayer(0).layerImage().toArray());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - scratch layers with a compact layout keep compact images
+  @Test
+  public void testScratchCommandCompactLayout() {
+    String expectedMsg = "The scratch policy has been successfully set to background!\n" +
+            "The layer has been successfully created!\n" +
+            "The layer has been successfully created!\n" +
+            "The layer layout has been successfully set to palette!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer has been successfully set invisible!\n";
+    createImage("scratch background\ncreate layer first\ncreate layer second\n"
+            + "layout palette\nload checkerboard 2 3 3 255 0 0 0 0 255\ninvisible first");
+    assertTrue(model.getLayer(0).isScratch());
+    assertEquals(RasterLayout.PALETTE, model.getLayer(0).layerRaster().getLayout());
+    List<List<Pixel>> expected = new CheckerBoardImage(2, 3, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0),
+                    ColorPixel.of(0, 0, 255))).createImageProgram();
+    assertArrayEquals(expected.toArray(), model.getLayer(0).layerImage().toArray());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - scratch command with unknown policy
+  @Test
+  public void testScratchCommandInvalid() {
+    String expectedMsg = "No such scratch policy exists. Try again.\n" +
+            "Invalid inputs to set the scratch policy. Try again.\n";
+    createImage("scratch sometimes\nscratch");
+    assertEquals(ScratchPolicy.NONE, model.getScratchPolicy());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - crop command
+  @Test
+  public void testCropCommand() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer image has been successfully cropped!\n";
+    createImage("create layer first\nload checkerboard 1 4 3 255 0 0 0 0 255\n"
+            + "crop 1 2 2 2");
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    assertEquals(2, image.size());
+    assertEquals(2, image.get(0).size());
+    assertEquals(ColorPixel.of(255, 0, 0), image.get(0).get(1).getColor());
+    assertEquals(ColorPixel.of(0, 0, 255), image.get(1).get(1).getColor());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - crop command with a region outside of the image
+  @Test
+  public void testCropCommandInvalid() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Layer doesn't have image.\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid inputs to crop the layer image. Try again.\n" +
+            "Invalid inputs to crop the layer image. Try again.\n" +
+            "Invalid inputs to crop the layer image. Try again.\n";
+    createImage("create layer first\ncrop 0 0 1 1\n"
+            + "load checkerboard 1 4 3 255 0 0 0 0 255\ncrop 2 2 2 2\ncrop a 0 1 1\ncrop 0 0");
+    assertEquals(4, model.getTopMostLayer().layerImage().get(0).size());
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - blur command with an edge mode
+  @Test
+  public void testBlurEdgeMode() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "No such edge mode exists. Try again.\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nload checkerboard 1 4 3 255 0 0 0 0 255\n"
+            + "blur edge=sideways\nblur edge=mirror");
+    Raster expected = new Blur(new CheckerBoardImage(1, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster(), EdgeMode.MIRROR).applyRaster();
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - threads command
+  @Test
+  public void testThreadsCommand() {
+    String expectedMsg = "The number of threads has been successfully set to 3!\n" +
+            "Invalid inputs to set the number of threads. Try again.\n" +
+            "Invalid inputs to set the number of threads. Try again.\n";
+    int threads = Parallelism.getParallelism();
+    try {
+      createImage("threads 3\nthreads 0\nthreads many");
+      assertEquals(3, Parallelism.getParallelism());
+      assertEquals(expectedMsg, out.toString());
+    } finally {
+      Parallelism.setParallelism(threads);
+    }
+  }
+
+  // test modelMultiLayers method - backend command
+  @Test
+  public void testBackendCommand() {
+    ComputeBackend backend = ComputeBackend.getSelected();
+    try {
+      createImage("backend scalar\nbackend\nbackend simd\nbackend lanes now");
+      String expectedMsg = "The backend has been successfully set to scalar!\n"
+              + ComputeBackend.report() + "\n"
+              + "No such backend exists. Try again.\n"
+              + "Invalid inputs to set the backend. Try again.\n";
+      assertEquals(ComputeBackend.SCALAR, ComputeBackend.getSelected());
+      assertEquals(expectedMsg, out.toString());
+    } finally {
+      ComputeBackend.select(backend);
+    }
+  }
+
+  // test modelMultiLayers method - blocking command
+  @Test
+  public void testBlockingCommand() {
+    String expectedMsg = "The cache blocking has been successfully set!\n" +
+            "The cache blocking has been successfully set!\n" +
+            "Invalid inputs to set the cache blocking. Try again.\n" +
+            "Invalid inputs to set the cache blocking. Try again.\n" +
+            "The cache blocking has been successfully set!\n";
+    try {
+      createImage("blocking off\nblocking 512 32\nblocking 0 0\nblocking sometimes\n"
+              + "blocking auto");
+      assertTrue(CacheBlocking.isEnabled());
+      assertEquals(CacheBlocking.DEFAULT_TILE_HEIGHT, CacheBlocking.getTileHeight());
+      assertEquals(expectedMsg, out.toString());
+    } finally {
+      CacheBlocking.setEnabled(true);
+      CacheBlocking.setTileSize(0, CacheBlocking.DEFAULT_TILE_HEIGHT);
+    }
+  }
+
+  // test modelMultiLayers method - convolve command
+  @Test
+  public void testConvolveCommand() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid inputs to convolve. Try again.\n" +
+            "File test/images/noKernel.txt not found!\n" +
+            "Invalid kernel file!\n" +
+            "The layer image has been successfully updated! Strategy: low-rank with 2 "
+            + "separable terms, about 28 multiplications per channel of a pixel instead of "
+            + "49.\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\nconvolve\n"
+            + "convolve test/images/noKernel.txt\nconvolve test/images/scriptTest.txt\n"
+            + "convolve test/images/kernelTest.txt edge=clamp");
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - blur command with a radius
+  @Test
+  public void testBlurRadius() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid radius, passes or sigma to blur. Try again.\n" +
+            "Invalid radius, passes or sigma to blur. Try again.\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\n"
+            + "blur radius=0\nblur radius=wide\nblur radius=3 passes=2 edge=mirror");
+    Raster expected = new BoxBlur(new CheckerBoardImage(2, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster(), 3, 2, EdgeMode.MIRROR).applyRaster();
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test modelMultiLayers method - blur command with a standard deviation
+  @Test
+  public void testBlurSigma() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid radius, passes or sigma to blur. Try again.\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\n"
+            + "blur sigma=0.1\nblur sigma=2.5 edge=clamp");
+    Raster expected = new GaussianBlur(new CheckerBoardImage(2, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster(), 2.5, EdgeMode.CLAMP).applyRaster();
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test fusion command - consecutive blurs run as one pass and the report is shown
+  @Test
+  public void testFusionCommand() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid inputs to set the filter fusion. Try again.\n" +
+            "The filter fusion has been successfully set!\n" +
+            "The layer image has been successfully updated!\n" +
+            "The layer image has been successfully updated!\n" +
+            "Fused 2 filters into 1 pass. Filters 1 to 2 became one 5 by 5 kernel, "
+            + "within 1 level of running them one by one.\n" +
+            "The filter fusion has been successfully set!\n";
+    createImage("create layer first\nload checkerboard 4 4 3 255 0 0 0 0 255\n"
+            + "fusion maybe\nfusion verbose\nblur\nblur\nfusion off");
+    Raster image = new CheckerBoardImage(4, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster();
+    Raster blurred = new Blur(image).applyRaster();
+    Raster expected = new Blur(blurred).applyRaster();
+    List<List<Pixel>> result = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+          assertTrue(Math.abs(((expected.getRGB(i, j) >> shift) & 0xFF)
+                  - ((result.get(i).get(j).getColor().getRGB() >> shift) & 0xFF)) <= 1);
+        }
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test fusion command - filters that cannot be combined are reported as left unfused
+  @Test
+  public void testFusionCommandUnfused() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The filter fusion has been successfully set!\n" +
+            "The layer image has been successfully updated!\n" +
+            "The layer image has been successfully updated!\n" +
+            "Left 2 filters unfused. Filter 1 ran on its own. Filter 2 was not combined with "
+            + "filter 1, since that could change a channel by 3 levels. Filter 2 ran on its "
+            + "own.\n";
+    createImage("create layer first\nload checkerboard 4 4 3 255 0 0 0 0 255\n"
+            + "fusion verbose\nblur\nsharpen");
+    Raster image = new CheckerBoardImage(4, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster();
+    Raster expected = new Sharpen(new Blur(image).applyRaster()).applyRaster();
+    List<List<Pixel>> result = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), result.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test fusion command - filters on a layer without image are reported and not kept
+  @Test
+  public void testFusionWithoutImage() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Layer doesn't have image.\n" +
+            "Layer doesn't have image.\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nblur\nsepia\n"
+            + "load checkerboard 2 4 3 255 0 0 0 0 255\nsharpen");
+    Raster expected = new Sharpen(new CheckerBoardImage(2, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster()).applyRaster();
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test median command - the radius is needed and the layer gets the medians
+  @Test
+  public void testMedianCommand() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "Invalid radius to median. Try again.\n" +
+            "Invalid radius to median. Try again.\n" +
+            "The layer image has been successfully updated!\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\n"
+            + "median\nmedian radius=0\nmedian radius=2 edge=mirror");
+    Raster expected = new Median(new CheckerBoardImage(2, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster(), 2, EdgeMode.MIRROR).applyRaster();
+    List<List<Pixel>> image = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), image.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test fusion command - consecutive color transformations run exactly in one pass
+  @Test
+  public void testFusionColors() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The filter fusion has been successfully set!\n" +
+            "Invalid inputs to set the color fusion. Try again.\n" +
+            "The color fusion has been successfully set to exact!\n" +
+            "The layer image has been successfully updated!\n" +
+            "The layer image has been successfully updated!\n" +
+            "Ran 2 color transformations in one pass, clamping between them.\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\n"
+            + "fusion verbose\nfusion colors roughly\nfusion colors exact\nsepia\ngrayscale");
+    Raster image = new CheckerBoardImage(2, 4, 3,
+            Arrays.asList(ColorPixel.of(255, 0, 0), ColorPixel.of(0, 0, 255)))
+            .createImageRaster();
+    Raster expected = new Grayscale(new Sepia(image).applyRaster()).applyRaster();
+    List<List<Pixel>> result = model.getTopMostLayer().layerImage();
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals(expected.getRGB(i, j), result.get(i).get(j).getColor().getRGB());
+      }
+    }
+    assertEquals(expectedMsg, out.toString());
+  }
+
+  // test fusion command - the color chain mode reports its own setting, apart from the filters
+  @Test
+  public void testFusionColorsMessage() {
+    String expectedMsg = "The layer has been successfully created!\n" +
+            "Checkerboard image has been successfully loaded to layer!\n" +
+            "The color fusion has been successfully set to fused!\n" +
+            "The color fusion has been successfully set to exact!\n" +
+            "Invalid inputs to set the color fusion. Try again.\n" +
+            "The filter fusion has been successfully set!\n";
+    createImage("create layer first\nload checkerboard 2 4 3 255 0 0 0 0 255\n"
+            + "fusion colors fused\nfusion colors exact\nfusion colors on\nfusion on");
+    assertEquals(expectedMsg, out.toString());
+  }
 }